@@ -0,0 +1,311 @@
+package edu.uwm.cs351;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How much of its invariant a collection checks in each {@code assert
+ * wellFormed()}. Checking the whole invariant takes time linear in the size of
+ * the collection, which makes every operation linear when assertions are
+ * enabled. A policy can instead check
+ * <ul>
+ * <li>{@link #off()}: nothing,
+ * <li>{@link #full()}: everything, every time (the default),
+ * <li>{@link #everyN(int)}: everything, on every n-th check,
+ * <li>{@link #sampled(double)}: everything, on a random fraction of checks, or
+ * <li>{@link #incremental(int)}: on every check, a bounded slice of the
+ * structure, resuming where the previous check stopped, so that repeated
+ * checks eventually cover all of it.
+ * </ul>
+ * Problems found are reported through each collection's reporter, as before.
+ * Nothing is checked at all unless assertions are enabled.
+ * <p>
+ * Lexicon, WordMultiset and LinkedSequence follow the policy that is the
+ * default when they are created. The initial default is read from the system
+ * property {@value #PROPERTY}, whose value is one of {@code off},
+ * {@code full}, {@code every:N}, {@code sample:P} or {@code incremental:K}.
+ */
+public final class CheckPolicy {
+	/** System property giving the initial default policy. */
+	public static final String PROPERTY = "edu.uwm.cs351.check";
+
+	/**
+	 * The kinds of policy.
+	 */
+	public enum Mode {
+		OFF, FULL, EVERY_N, SAMPLED, INCREMENTAL
+	}
+
+	/**
+	 * What a collection should do for one check.
+	 */
+	public enum Action {
+		/** Check nothing. */
+		SKIP,
+		/** Check the whole invariant. */
+		FULL,
+		/** Check the constant-time parts and one slice of the structure. */
+		SLICE
+	}
+
+	private static final CheckPolicy OFF = new CheckPolicy(Mode.OFF, 0, 0);
+	private static final CheckPolicy FULL = new CheckPolicy(Mode.FULL, 0, 0);
+
+	private static volatile CheckPolicy defaultPolicy = fromProperty();
+
+	private final Mode mode;
+	private final int n; // interval for EVERY_N, slice size for INCREMENTAL
+	private final double probability; // for SAMPLED
+
+	private CheckPolicy(Mode mode, int n, double probability) {
+		this.mode = mode;
+		this.n = n;
+		this.probability = probability;
+	}
+
+	/**
+	 * Return the policy that checks nothing.
+	 *
+	 * @return policy that checks nothing
+	 */
+	public static CheckPolicy off() {
+		return OFF;
+	}
+
+	/**
+	 * Return the policy that checks the whole invariant every time.
+	 *
+	 * @return policy that checks everything
+	 */
+	public static CheckPolicy full() {
+		return FULL;
+	}
+
+	/**
+	 * Return a policy that checks the whole invariant on every n-th check of
+	 * each collection.
+	 *
+	 * @param n interval between full checks, must be positive
+	 * @return policy checking every n-th time
+	 * @throws IllegalArgumentException if n is not positive
+	 */
+	public static CheckPolicy everyN(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("interval must be positive: " + n);
+		return n == 1 ? FULL : new CheckPolicy(Mode.EVERY_N, n, 0);
+	}
+
+	/**
+	 * Return a policy that checks the whole invariant with the given
+	 * probability, independently for each check.
+	 *
+	 * @param probability chance of a full check, from 0 to 1
+	 * @return policy checking a random sample of the time
+	 * @throws IllegalArgumentException if probability is out of range
+	 */
+	public static CheckPolicy sampled(double probability) {
+		if (!(probability >= 0 && probability <= 1))
+			throw new IllegalArgumentException("probability must be from 0 to 1: " + probability);
+		return new CheckPolicy(Mode.SAMPLED, 0, probability);
+	}
+
+	/**
+	 * Return a policy that checks, each time, the parts of the invariant that
+	 * take constant time, and then the next slice of the structure (table slots,
+	 * list nodes or tree nodes) of the given size. Facts about the whole
+	 * structure, such as its size, are checked when a pass over it ends, if the
+	 * structure was not changed during that pass.
+	 *
+	 * @param sliceSize number of slots or nodes to check each time, must be
+	 *                  positive
+	 * @return policy checking incrementally
+	 * @throws IllegalArgumentException if sliceSize is not positive
+	 */
+	public static CheckPolicy incremental(int sliceSize) {
+		if (sliceSize < 1)
+			throw new IllegalArgumentException("slice size must be positive: " + sliceSize);
+		return new CheckPolicy(Mode.INCREMENTAL, sliceSize, 0);
+	}
+
+	/**
+	 * Parse a policy written as {@code off}, {@code full}, {@code every:N},
+	 * {@code sample:P} or {@code incremental:K}.
+	 *
+	 * @param spec description of the policy, must not be null
+	 * @return the policy described
+	 * @throws IllegalArgumentException if the description is malformed
+	 */
+	public static CheckPolicy parse(String spec) {
+		String s = spec.trim().toLowerCase();
+		int colon = s.indexOf(':');
+		String name = colon < 0 ? s : s.substring(0, colon);
+		String arg = colon < 0 ? null : s.substring(colon + 1);
+		try {
+			switch (name) {
+			case "off":
+				if (arg == null)
+					return off();
+				break;
+			case "full":
+				if (arg == null)
+					return full();
+				break;
+			case "every":
+				if (arg != null)
+					return everyN(Integer.parseInt(arg));
+				break;
+			case "sample":
+				if (arg != null)
+					return sampled(Double.parseDouble(arg));
+				break;
+			case "incremental":
+				if (arg != null)
+					return incremental(Integer.parseInt(arg));
+				break;
+			default:
+				break;
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad number in check policy: " + spec, e);
+		}
+		throw new IllegalArgumentException("unknown check policy: " + spec);
+	}
+
+	private static CheckPolicy fromProperty() {
+		String spec = System.getProperty(PROPERTY);
+		if (spec == null)
+			return FULL;
+		try {
+			return parse(spec);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Ignoring " + PROPERTY + ": " + e.getMessage());
+			return FULL;
+		}
+	}
+
+	/**
+	 * Return the policy used by collections created from now on.
+	 *
+	 * @return the default policy
+	 */
+	public static CheckPolicy getDefault() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * Set the policy used by collections created from now on. Existing
+	 * collections keep their policy.
+	 *
+	 * @param policy new default policy, must not be null
+	 * @throws NullPointerException if policy is null
+	 */
+	public static void setDefault(CheckPolicy policy) {
+		if (policy == null)
+			throw new NullPointerException("policy is null");
+		defaultPolicy = policy;
+	}
+
+	/**
+	 * Return the kind of this policy.
+	 *
+	 * @return mode, never null
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Return the number of slots or nodes checked in each slice, for an
+	 * incremental policy.
+	 *
+	 * @return slice size, or 0 if this policy is not incremental
+	 */
+	public int getSliceSize() {
+		return mode == Mode.INCREMENTAL ? n : 0;
+	}
+
+	@Override // implementation
+	public String toString() {
+		switch (mode) {
+		case EVERY_N:
+			return "every:" + n;
+		case SAMPLED:
+			return "sample:" + probability;
+		case INCREMENTAL:
+			return "incremental:" + n;
+		default:
+			return mode.name().toLowerCase();
+		}
+	}
+
+	/**
+	 * Return a new checker, which decides the action for each check of one
+	 * collection.
+	 *
+	 * @return new checker following this policy
+	 */
+	public Checker newChecker() {
+		return new Checker(this);
+	}
+
+	/**
+	 * The state of the policy for one collection. A checker is not thread-safe;
+	 * like the collection it belongs to, it must be used by one thread at a time.
+	 * The exception is a checker for the {@link #off()} policy, which never
+	 * changes and so may be used by any number of threads.
+	 */
+	public static final class Checker {
+		private final CheckPolicy policy;
+		private long checks;
+		private Action last;
+
+		Checker(CheckPolicy policy) {
+			this.policy = policy;
+			last = policy.mode == Mode.OFF ? Action.SKIP : Action.FULL;
+		}
+
+		/**
+		 * Decide what to check this time.
+		 *
+		 * @return action for this check
+		 */
+		public Action next() {
+			if (policy.mode == Mode.OFF)
+				return Action.SKIP;
+			++checks;
+			switch (policy.mode) {
+			case EVERY_N:
+				last = checks % policy.n == 0 ? Action.FULL : Action.SKIP;
+				break;
+			case SAMPLED:
+				last = ThreadLocalRandom.current().nextDouble() < policy.probability ? Action.FULL : Action.SKIP;
+				break;
+			case INCREMENTAL:
+				last = Action.SLICE;
+				break;
+			default:
+				last = Action.FULL;
+				break;
+			}
+			return last;
+		}
+
+		/**
+		 * Return whether the last check was a full one. Checks that depend on the
+		 * whole invariant (such as those of an iterator) are only worth doing then.
+		 *
+		 * @return whether the last action was {@link Action#FULL}
+		 */
+		public boolean lastWasFull() {
+			return last == Action.FULL;
+		}
+
+		/**
+		 * Return the policy this checker follows.
+		 *
+		 * @return policy, never null
+		 */
+		public CheckPolicy getPolicy() {
+			return policy;
+		}
+	}
+}
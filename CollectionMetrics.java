@@ -0,0 +1,292 @@
+package edu.uwm.cs351;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters for the hot paths of the collections: probe lengths of
+ * WordMultiset lookups and the cost of its rehashes, depth and comparisons of
+ * Lexicon searches, and the time spent in LinkedSequence insertAll and clone.
+ * <p>
+ * Metrics are collected only if the system property {@value #PROPERTY} is
+ * {@code true} when this class is loaded. Otherwise the collections test a
+ * constant and do nothing else, so that the cost of the instrumentation is
+ * negligible. When enabled, the metrics are registered with the platform
+ * MBean server under the name {@value #OBJECT_NAME}, where they can be seen
+ * with jconsole or any other JMX client; they can also be read here with
+ * {@link #snapshot()}.
+ * <p>
+ * The counters may be updated by many threads at once, but a snapshot taken
+ * while they are being updated need not be consistent.
+ */
+public final class CollectionMetrics implements CollectionMetricsMBean {
+	/** System property that enables the metrics. */
+	public static final String PROPERTY = "edu.uwm.cs351.metrics";
+
+	/** Name under which the metrics are registered with JMX. */
+	public static final String OBJECT_NAME = "edu.uwm.cs351:type=CollectionMetrics";
+
+	/**
+	 * Number of buckets in the probe length histogram. The last bucket counts
+	 * all lookups with this many probes or more.
+	 */
+	public static final int PROBE_BUCKETS = 16;
+
+	/** Whether metrics are collected: fixed when the class is loaded. */
+	static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+	private static final CollectionMetrics INSTANCE = new CollectionMetrics();
+
+	static {
+		if (ENABLED) {
+			try {
+				register();
+			} catch (JMException e) {
+				System.err.println("Cannot register " + OBJECT_NAME + ": " + e);
+			}
+		}
+	}
+
+	private final LongAdder[] probes = new LongAdder[PROBE_BUCKETS];
+	private final LongAdder probeTotal = new LongAdder();
+	private final LongAdder rehashes = new LongAdder();
+	private final LongAdder rehashNanos = new LongAdder();
+	private final LongAdder rehashTombstones = new LongAdder();
+	private final LongAdder rehashSlots = new LongAdder();
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder searchDepth = new LongAdder();
+	private final LongAdder searchComparisons = new LongAdder();
+	private final LongAccumulator searchMaxDepth = new LongAccumulator(Math::max, 0);
+	private final LongAdder insertAlls = new LongAdder();
+	private final LongAdder insertAllElements = new LongAdder();
+	private final LongAdder insertAllNanos = new LongAdder();
+	private final LongAdder clones = new LongAdder();
+	private final LongAdder cloneElements = new LongAdder();
+	private final LongAdder cloneNanos = new LongAdder();
+
+	private CollectionMetrics() {
+		for (int i = 0; i < PROBE_BUCKETS; ++i)
+			probes[i] = new LongAdder();
+	}
+
+	/**
+	 * Return the metrics shared by all collections.
+	 *
+	 * @return the single instance, never null
+	 */
+	public static CollectionMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server, if they are not
+	 * registered already. This is done automatically when metrics are enabled;
+	 * a program may call it again if it has unregistered them.
+	 *
+	 * @throws JMException if the server refuses the registration
+	 */
+	public static synchronized void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name))
+			server.registerMBean(INSTANCE, name);
+	}
+
+	/// Recording, called by the collections only if ENABLED
+
+	/**
+	 * Record a WordMultiset lookup.
+	 *
+	 * @param length number of slots examined, at least one
+	 */
+	void recordProbe(int length) {
+		probes[Math.min(length, PROBE_BUCKETS) - 1].increment();
+		probeTotal.add(length);
+	}
+
+	/**
+	 * Record a WordMultiset rehash.
+	 *
+	 * @param nanos      time taken
+	 * @param tombstones number of place holders in the old table
+	 * @param slots      length of the old table
+	 */
+	void recordRehash(long nanos, int tombstones, int slots) {
+		rehashes.increment();
+		rehashNanos.add(nanos);
+		rehashTombstones.add(tombstones);
+		rehashSlots.add(slots);
+	}
+
+	/**
+	 * Record a Lexicon search.
+	 *
+	 * @param depth       number of nodes visited
+	 * @param comparisons number of string comparisons made
+	 */
+	void recordSearch(int depth, int comparisons) {
+		searches.increment();
+		searchDepth.add(depth);
+		searchComparisons.add(comparisons);
+		searchMaxDepth.accumulate(depth);
+	}
+
+	/**
+	 * Record a LinkedSequence insertAll.
+	 *
+	 * @param elements number of elements inserted
+	 * @param nanos    time taken
+	 */
+	void recordInsertAll(int elements, long nanos) {
+		insertAlls.increment();
+		insertAllElements.add(elements);
+		insertAllNanos.add(nanos);
+	}
+
+	/**
+	 * Record a LinkedSequence clone.
+	 *
+	 * @param elements number of elements copied
+	 * @param nanos    time taken
+	 */
+	void recordClone(int elements, long nanos) {
+		clones.increment();
+		cloneElements.add(elements);
+		cloneNanos.add(nanos);
+	}
+
+	/// MBean attributes
+
+	private static double ratio(long num, long den) {
+		return den == 0 ? 0 : (double) num / den;
+	}
+
+	@Override // required
+	public boolean isEnabled() {
+		return ENABLED;
+	}
+
+	@Override // required
+	public long[] getProbeLengthHistogram() {
+		long[] result = new long[PROBE_BUCKETS];
+		for (int i = 0; i < PROBE_BUCKETS; ++i)
+			result[i] = probes[i].sum();
+		return result;
+	}
+
+	@Override // required
+	public double getAverageProbeLength() {
+		long lookups = 0;
+		for (LongAdder a : probes)
+			lookups += a.sum();
+		return ratio(probeTotal.sum(), lookups);
+	}
+
+	@Override // required
+	public long getRehashCount() {
+		return rehashes.sum();
+	}
+
+	@Override // required
+	public long getRehashNanos() {
+		return rehashNanos.sum();
+	}
+
+	@Override // required
+	public double getTombstoneRatioAtRehash() {
+		return ratio(rehashTombstones.sum(), rehashSlots.sum());
+	}
+
+	@Override // required
+	public long getLexiconSearches() {
+		return searches.sum();
+	}
+
+	@Override // required
+	public double getLexiconAverageDepth() {
+		return ratio(searchDepth.sum(), searches.sum());
+	}
+
+	@Override // required
+	public long getLexiconMaxDepth() {
+		return searchMaxDepth.get();
+	}
+
+	@Override // required
+	public double getLexiconComparisonsPerSearch() {
+		return ratio(searchComparisons.sum(), searches.sum());
+	}
+
+	@Override // required
+	public long getInsertAllCount() {
+		return insertAlls.sum();
+	}
+
+	@Override // required
+	public long getInsertAllElements() {
+		return insertAllElements.sum();
+	}
+
+	@Override // required
+	public long getInsertAllNanos() {
+		return insertAllNanos.sum();
+	}
+
+	@Override // required
+	public long getCloneCount() {
+		return clones.sum();
+	}
+
+	@Override // required
+	public long getCloneElements() {
+		return cloneElements.sum();
+	}
+
+	@Override // required
+	public long getCloneNanos() {
+		return cloneNanos.sum();
+	}
+
+	@Override // required
+	public void reset() {
+		for (LongAdder a : probes)
+			a.reset();
+		for (LongAdder a : new LongAdder[] { probeTotal, rehashes, rehashNanos, rehashTombstones, rehashSlots,
+				searches, searchDepth, searchComparisons, insertAlls, insertAllElements, insertAllNanos, clones,
+				cloneElements, cloneNanos })
+			a.reset();
+		searchMaxDepth.reset();
+	}
+
+	/**
+	 * Return a description of the current values of all the metrics.
+	 *
+	 * @return snapshot of the metrics
+	 */
+	public String snapshot() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("WordMultiset: probe lengths ").append(Arrays.toString(getProbeLengthHistogram()));
+		sb.append(String.format(" (average %.2f)%n", getAverageProbeLength()));
+		sb.append(String.format("WordMultiset: %d rehashes, %.3f ms, %.1f%% place holders%n", getRehashCount(),
+				getRehashNanos() / 1e6, 100 * getTombstoneRatioAtRehash()));
+		sb.append(String.format("Lexicon: %d searches, average depth %.2f, max depth %d, %.2f comparisons each%n",
+				getLexiconSearches(), getLexiconAverageDepth(), getLexiconMaxDepth(),
+				getLexiconComparisonsPerSearch()));
+		sb.append(String.format("LinkedSequence: %d insertAll, %d elements, %.3f ms%n", getInsertAllCount(),
+				getInsertAllElements(), getInsertAllNanos() / 1e6));
+		sb.append(String.format("LinkedSequence: %d clone, %d elements, %.3f ms%n", getCloneCount(),
+				getCloneElements(), getCloneNanos() / 1e6));
+		return sb.toString();
+	}
+
+	@Override // implementation
+	public String toString() {
+		return snapshot();
+	}
+}
@@ -0,0 +1,71 @@
+package edu.uwm.cs351;
+
+/**
+ * The management interface of {@link CollectionMetrics}, as it appears through
+ * JMX. All values are totals since the start, or since the last
+ * {@link #reset()}, over all instances of the collections.
+ */
+public interface CollectionMetricsMBean {
+	/** @return whether metrics are being collected at all */
+	boolean isEnabled();
+
+	/**
+	 * @return number of WordMultiset lookups that took each number of probes:
+	 *         element i counts lookups with i+1 probes, and the last element
+	 *         counts all longer ones
+	 */
+	long[] getProbeLengthHistogram();
+
+	/** @return average number of probes per WordMultiset lookup */
+	double getAverageProbeLength();
+
+	/** @return number of times a WordMultiset table was rehashed */
+	long getRehashCount();
+
+	/** @return total time spent rehashing WordMultiset tables, in nanoseconds */
+	long getRehashNanos();
+
+	/**
+	 * @return fraction of slots holding place holders when tables were
+	 *         rehashed, over all rehashes
+	 */
+	double getTombstoneRatioAtRehash();
+
+	/** @return number of Lexicon searches (find and add) */
+	long getLexiconSearches();
+
+	/** @return average number of nodes visited by a Lexicon search */
+	double getLexiconAverageDepth();
+
+	/** @return largest number of nodes visited by a Lexicon search */
+	long getLexiconMaxDepth();
+
+	/**
+	 * @return average number of string comparisons per Lexicon search; with LCP
+	 *         search, only those that had to read characters
+	 */
+	double getLexiconComparisonsPerSearch();
+
+	/** @return number of calls of LinkedSequence insertAll */
+	long getInsertAllCount();
+
+	/** @return total number of elements copied by LinkedSequence insertAll */
+	long getInsertAllElements();
+
+	/** @return total time spent in LinkedSequence insertAll, in nanoseconds */
+	long getInsertAllNanos();
+
+	/** @return number of calls of LinkedSequence clone */
+	long getCloneCount();
+
+	/** @return total number of elements copied by LinkedSequence clone */
+	long getCloneElements();
+
+	/** @return total time spent in LinkedSequence clone, in nanoseconds */
+	long getCloneNanos();
+
+	/**
+	 * Set all the metrics back to zero.
+	 */
+	void reset();
+}
@@ -0,0 +1,555 @@
+package edu.uwm.cs351;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe work list: one or more threads append at the tail while others
+ * remove from the head, optionally with a bound on the number of elements.
+ * <p>
+ * This uses the two-lock design of Michael and Scott. The list is singly linked
+ * with a tail pointer like {@link LinkedSequence}, but it is not cyclic:
+ * instead the dummy node is always the head, and removing an element makes its
+ * node the new dummy. Appending then only touches the tail and removing only
+ * touches the head, so each end has its own lock and a producer never waits
+ * for a consumer (unless the list is full or empty). The waits use
+ * {@link ReentrantLock} conditions rather than monitors, so a virtual thread
+ * that blocks here does not pin its carrier thread.
+ * <p>
+ * Null elements are not allowed, since {@link #poll()} returns null when there
+ * is nothing to remove. The iterator works on a snapshot of the elements.
+ */
+public class ConcurrentLinkedSequence<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private static class Node<X> {
+		X data;
+		Node<X> next;
+
+		Node(X d) {
+			data = d;
+		}
+	}
+
+	private final int capacity;
+	private final AtomicInteger count = new AtomicInteger();
+
+	private Node<E> head; // the dummy; guarded by takeLock
+	private Node<E> tail; // guarded by putLock
+
+	private final ReentrantLock takeLock = new ReentrantLock();
+	private final Condition notEmpty = takeLock.newCondition();
+	private final ReentrantLock putLock = new ReentrantLock();
+	private final Condition notFull = putLock.newCondition();
+
+	/**
+	 * Check the invariant. This may only be called while holding both locks.
+	 * Report any problem precisely once. Return false if any problem is found.
+	 *
+	 * @return whether invariant is currently true
+	 */
+	private boolean wellFormed() {
+		// 1. The head (dummy) and tail are not null, and the dummy has no data.
+		if (head == null || tail == null)
+			return report("head or tail is null");
+		if (head.data != null)
+			return report("dummy has data");
+		// 2. The list from the head ends at the tail, and every node after the
+		// dummy has data.
+		int n = 0;
+		Node<E> last = head;
+		for (Node<E> p = head.next; p != null; p = p.next) {
+			if (p.data == null)
+				return report("node has no data");
+			if (++n > capacity)
+				return report("list is too long, or cyclic");
+			last = p;
+		}
+		if (last != tail)
+			return report("tail is not the last node");
+		// 3. The count is the number of elements, which is within the capacity.
+		if (n != count.get())
+			return report("count is " + count.get() + " but list has " + n);
+		return true;
+	}
+
+	/**
+	 * Create an empty, unbounded list.
+	 */
+	public ConcurrentLinkedSequence() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create an empty list that holds at most the given number of elements.
+	 *
+	 * @param capacity largest number of elements, must be positive
+	 * @exception IllegalArgumentException Indicates that capacity is not
+	 *                                     positive.
+	 */
+	public ConcurrentLinkedSequence(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		head = tail = new Node<E>(null);
+		assert wellFormed() : "invariant failed in constructor";
+	}
+
+	// implementation: these are only called with the right lock held
+
+	private void enqueue(Node<E> node) {
+		tail.next = node;
+		tail = node;
+	}
+
+	private E dequeue() {
+		Node<E> first = head.next;
+		head.next = null; // help GC
+		head = first;
+		E x = first.data;
+		first.data = null; // it is now the dummy
+		return x;
+	}
+
+	private void fullyLock() {
+		putLock.lock();
+		takeLock.lock();
+	}
+
+	private void fullyUnlock() {
+		takeLock.unlock();
+		putLock.unlock();
+	}
+
+	/**
+	 * Wake a waiting consumer. Called without the take lock, after the first
+	 * element is added to an empty list.
+	 */
+	private void signalNotEmpty() {
+		takeLock.lock();
+		try {
+			notEmpty.signal();
+		} finally {
+			takeLock.unlock();
+		}
+	}
+
+	/**
+	 * Wake a waiting producer. Called without the put lock, after an element is
+	 * removed from a full list.
+	 */
+	private void signalNotFull() {
+		putLock.lock();
+		try {
+			notFull.signal();
+		} finally {
+			putLock.unlock();
+		}
+	}
+
+	/**
+	 * Return the number of elements. Other threads may change it at any time.
+	 *
+	 * @return number of elements
+	 */
+	@Override // required
+	public int size() {
+		return count.get();
+	}
+
+	@Override // required
+	public int remainingCapacity() {
+		return capacity - count.get();
+	}
+
+	/**
+	 * Append the element at the tail if there is room, without waiting.
+	 *
+	 * @param e element to append, must not be null
+	 * @return whether the element was appended
+	 * @exception NullPointerException Indicates that e is null.
+	 */
+	@Override // required
+	public boolean offer(E e) {
+		if (e == null)
+			throw new NullPointerException("element is null");
+		if (count.get() == capacity)
+			return false;
+		int c = -1;
+		putLock.lock();
+		try {
+			if (count.get() < capacity) {
+				enqueue(new Node<E>(e));
+				c = count.getAndIncrement();
+				if (c + 1 < capacity)
+					notFull.signal();
+			}
+		} finally {
+			putLock.unlock();
+		}
+		if (c == 0)
+			signalNotEmpty();
+		return c >= 0;
+	}
+
+	/**
+	 * Append the element at the tail, waiting if necessary for room.
+	 *
+	 * @param e element to append, must not be null
+	 * @exception NullPointerException Indicates that e is null.
+	 * @exception InterruptedException Indicates that the thread was interrupted
+	 *                                 while waiting.
+	 */
+	@Override // required
+	public void put(E e) throws InterruptedException {
+		if (e == null)
+			throw new NullPointerException("element is null");
+		int c;
+		putLock.lockInterruptibly();
+		try {
+			while (count.get() == capacity)
+				notFull.await();
+			enqueue(new Node<E>(e));
+			c = count.getAndIncrement();
+			if (c + 1 < capacity)
+				notFull.signal();
+		} finally {
+			putLock.unlock();
+		}
+		if (c == 0)
+			signalNotEmpty();
+	}
+
+	/**
+	 * Append the element at the tail, waiting up to the given time for room.
+	 *
+	 * @param e       element to append, must not be null
+	 * @param timeout how long to wait, in units of unit
+	 * @param unit    unit of timeout
+	 * @return whether the element was appended
+	 * @exception NullPointerException Indicates that e is null.
+	 * @exception InterruptedException Indicates that the thread was interrupted
+	 *                                 while waiting.
+	 */
+	@Override // required
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (e == null)
+			throw new NullPointerException("element is null");
+		long nanos = unit.toNanos(timeout);
+		int c;
+		putLock.lockInterruptibly();
+		try {
+			while (count.get() == capacity) {
+				if (nanos <= 0L)
+					return false;
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(new Node<E>(e));
+			c = count.getAndIncrement();
+			if (c + 1 < capacity)
+				notFull.signal();
+		} finally {
+			putLock.unlock();
+		}
+		if (c == 0)
+			signalNotEmpty();
+		return true;
+	}
+
+	/**
+	 * Remove and return the head element, or return null if the list is empty,
+	 * without waiting.
+	 *
+	 * @return the former head element, or null
+	 */
+	@Override // required
+	public E poll() {
+		if (count.get() == 0)
+			return null;
+		E x = null;
+		int c = -1;
+		takeLock.lock();
+		try {
+			if (count.get() > 0) {
+				x = dequeue();
+				c = count.getAndDecrement();
+				if (c > 1)
+					notEmpty.signal();
+			}
+		} finally {
+			takeLock.unlock();
+		}
+		if (c == capacity)
+			signalNotFull();
+		return x;
+	}
+
+	/**
+	 * Remove and return the head element, waiting if necessary for one.
+	 *
+	 * @return the former head element
+	 * @exception InterruptedException Indicates that the thread was interrupted
+	 *                                 while waiting.
+	 */
+	@Override // required
+	public E take() throws InterruptedException {
+		E x;
+		int c;
+		takeLock.lockInterruptibly();
+		try {
+			while (count.get() == 0)
+				notEmpty.await();
+			x = dequeue();
+			c = count.getAndDecrement();
+			if (c > 1)
+				notEmpty.signal();
+		} finally {
+			takeLock.unlock();
+		}
+		if (c == capacity)
+			signalNotFull();
+		return x;
+	}
+
+	/**
+	 * Remove and return the head element, waiting up to the given time for one.
+	 *
+	 * @param timeout how long to wait, in units of unit
+	 * @param unit    unit of timeout
+	 * @return the former head element, or null if none arrived in time
+	 * @exception InterruptedException Indicates that the thread was interrupted
+	 *                                 while waiting.
+	 */
+	@Override // required
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		E x;
+		int c;
+		takeLock.lockInterruptibly();
+		try {
+			while (count.get() == 0) {
+				if (nanos <= 0L)
+					return null;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			x = dequeue();
+			c = count.getAndDecrement();
+			if (c > 1)
+				notEmpty.signal();
+		} finally {
+			takeLock.unlock();
+		}
+		if (c == capacity)
+			signalNotFull();
+		return x;
+	}
+
+	/**
+	 * Return the head element without removing it, or null if the list is empty.
+	 *
+	 * @return the head element, or null
+	 */
+	@Override // required
+	public E peek() {
+		if (count.get() == 0)
+			return null;
+		takeLock.lock();
+		try {
+			Node<E> first = head.next;
+			return first == null ? null : first.data;
+		} finally {
+			takeLock.unlock();
+		}
+	}
+
+	@Override // required
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Remove up to the given number of elements from the head and add them to
+	 * the collection, taking the head lock only once.
+	 *
+	 * @param c           collection to add the elements to
+	 * @param maxElements largest number of elements to move
+	 * @return number of elements moved
+	 * @exception NullPointerException     Indicates that c is null.
+	 * @exception IllegalArgumentException Indicates that c is this list.
+	 */
+	@Override // efficiency
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null)
+			throw new NullPointerException("collection is null");
+		if (c == this)
+			throw new IllegalArgumentException("cannot drain into itself");
+		if (maxElements <= 0)
+			return 0;
+		boolean signal = false;
+		int i = 0;
+		takeLock.lock();
+		try {
+			int n = Math.min(maxElements, count.get());
+			try {
+				while (i < n) {
+					c.add(dequeue());
+					++i;
+				}
+			} finally {
+				// even if c.add threw, the elements dequeued so far are gone
+				if (i > 0)
+					signal = count.getAndAdd(-i) == capacity;
+			}
+		} finally {
+			takeLock.unlock();
+		}
+		if (signal)
+			signalNotFull();
+		return i;
+	}
+
+	/**
+	 * Remove the first element equal to the given object. This takes both locks,
+	 * so it blocks producers and consumers while it searches.
+	 *
+	 * @param o object to remove
+	 * @return whether an element was removed
+	 */
+	@Override // efficiency
+	public boolean remove(Object o) {
+		if (o == null)
+			return false;
+		fullyLock();
+		try {
+			assert wellFormed() : "invariant failed at start of remove";
+			for (Node<E> trail = head, p = trail.next; p != null; trail = p, p = p.next) {
+				if (o.equals(p.data)) {
+					unlink(p, trail);
+					assert wellFormed() : "invariant failed at end of remove";
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			fullyUnlock();
+		}
+	}
+
+	/**
+	 * Unlink a node, given the node before it. Both locks must be held.
+	 */
+	private void unlink(Node<E> p, Node<E> trail) {
+		p.data = null;
+		trail.next = p.next;
+		if (tail == p)
+			tail = trail;
+		if (count.getAndDecrement() == capacity)
+			notFull.signal();
+	}
+
+	@Override // efficiency
+	public void clear() {
+		fullyLock();
+		try {
+			head.next = null;
+			tail = head;
+			if (count.getAndSet(0) == capacity)
+				notFull.signal();
+			assert wellFormed() : "invariant failed at end of clear";
+		} finally {
+			fullyUnlock();
+		}
+	}
+
+	/**
+	 * Return an iterator over a snapshot of the elements, from head to tail. The
+	 * iterator never throws {@link ConcurrentModificationException}; its remove
+	 * method removes the element if it is still in the list.
+	 *
+	 * @return iterator over the elements at the time of the call
+	 */
+	@Override // required
+	public Iterator<E> iterator() {
+		List<Node<E>> nodes = new ArrayList<>();
+		List<E> items = new ArrayList<>();
+		fullyLock();
+		try {
+			assert wellFormed() : "invariant failed in iterator";
+			for (Node<E> p = head.next; p != null; p = p.next) {
+				nodes.add(p);
+				items.add(p.data);
+			}
+		} finally {
+			fullyUnlock();
+		}
+		return new MyIterator(nodes, items);
+	}
+
+	private class MyIterator implements Iterator<E> {
+		private final List<Node<E>> nodes;
+		private final List<E> items;
+		private int index;
+		private boolean canRemove;
+
+		MyIterator(List<Node<E>> nodes, List<E> items) {
+			this.nodes = nodes;
+			this.items = items;
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			return index < items.size();
+		}
+
+		@Override // required
+		public E next() {
+			if (!hasNext())
+				throw new NoSuchElementException("no more");
+			canRemove = true;
+			return items.get(index++);
+		}
+
+		@Override // implementation
+		public void remove() {
+			if (!canRemove)
+				throw new IllegalStateException("Can't remove");
+			canRemove = false;
+			Node<E> target = nodes.get(index - 1);
+			fullyLock();
+			try {
+				for (Node<E> trail = head, p = trail.next; p != null; trail = p, p = p.next) {
+					if (p == target) {
+						unlink(p, trail);
+						break;
+					}
+				}
+				assert wellFormed() : "invariant failed in iterator remove";
+			} finally {
+				fullyUnlock();
+			}
+		}
+	}
+}
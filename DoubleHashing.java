@@ -0,0 +1,55 @@
+package edu.uwm.cs351;
+
+/**
+ * The probe sequence shared by the hash tables in this package: double hashing
+ * over a table whose length is the larger of twin primes. The first index is
+ * the hash code modulo the length, and each probe after it steps on by one more
+ * than the hash code modulo the smaller twin. The step is never zero and the
+ * length is prime, so the probes visit every index before any is repeated.
+ * <p>
+ * Each table still decides for itself which slots are empty, which hold
+ * placeholders and which hold the key it is looking for.
+ */
+final class DoubleHashing {
+	private DoubleHashing() {
+	}
+
+	/**
+	 * Return the first index to probe.
+	 *
+	 * @param h      hash code of the key
+	 * @param length length of the table, the larger of twin primes
+	 * @return index in [0, length)
+	 */
+	static int first(int h, int length) {
+		int index = h % length;
+		return index < 0 ? index + length : index;
+	}
+
+	/**
+	 * Return the distance between one probe and the next.
+	 *
+	 * @param h      hash code of the key
+	 * @param length length of the table, the larger of twin primes
+	 * @return step in [1, length - 2]
+	 */
+	static int step(int h, int length) {
+		int step = h % (length - 2);
+		if (step < 0)
+			step += length - 2;
+		return step + 1;
+	}
+
+	/**
+	 * Return the index to probe after the given one.
+	 *
+	 * @param index  index just probed, in [0, length)
+	 * @param step   result of {@link #step} for the key
+	 * @param length length of the table
+	 * @return next index in [0, length)
+	 */
+	static int next(int index, int step, int length) {
+		// compared this way round so that index + step cannot overflow
+		return index >= length - step ? index - (length - step) : index + step;
+	}
+}
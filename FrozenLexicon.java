@@ -0,0 +1,613 @@
+package edu.uwm.cs351;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Read-only set of strings, sorted lexicographically, stored as a minimal
+ * acyclic automaton (a DAWG): words that share a prefix share the states that
+ * spell it, and words that end alike share the states that spell the ending,
+ * so a large dictionary takes a small fraction of the memory of a
+ * {@link Lexicon}. Create one with {@link Lexicon#freeze()} or a
+ * {@link Builder}.
+ * <p>
+ * The automaton is held in one buffer of primitive values, laid out as
+ * <ul>
+ * <li>a header of six ints: magic number, format version, number of states,
+ * number of arcs, number of words, length of the longest word;
+ * <li>for each state, and one more, an int: the index of its first arc,
+ * shifted left one bit, with the low bit set if the state is final (the
+ * arcs of a state run up to the first arc of the next state; state 0 is the
+ * start);
+ * <li>for each arc, the int index of its target state;
+ * <li>for each arc, its char label; the arcs of a state are in increasing
+ * order of label.
+ * </ul>
+ * The buffer can be written to a file with {@link #writeTo(Path)}, and the
+ * file mapped into memory with {@link #map(Path)}, which reads nothing until
+ * it is used; all the operations work on the buffer directly.
+ */
+public class FrozenLexicon extends AbstractSet<String> {
+	private static final int MAGIC = 0x44415747; // "DAWG"
+	private static final int VERSION = 1;
+	private static final int HEADER_INTS = 6;
+
+	private final ByteBuffer buffer; // whole automaton, position 0
+	private final int numStates;
+	private final int numArcs;
+	private final int numWords;
+	private final int maxLength;
+	private final IntBuffer states; // numStates+1 entries: first arc << 1 | final
+	private final IntBuffer targets;
+	private final CharBuffer labels;
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private static boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private int firstArc(int state) {
+		return states.get(state) >>> 1;
+	}
+
+	private int endArc(int state) {
+		return states.get(state + 1) >>> 1;
+	}
+
+	private boolean isFinal(int state) {
+		return (states.get(state) & 1) != 0;
+	}
+
+	/**
+	 * Return the first arc of the state whose label is not less than c, or the
+	 * end of its arcs.
+	 */
+	private int lowerBound(int state, char c) {
+		int lo = firstArc(state), hi = endArc(state);
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (labels.get(mid) < c) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Check the invariant. Returns false if any problem is found.
+	 *
+	 * @return whether invariant is true. If false is returned then exactly one
+	 *         problem has been reported.
+	 */
+	private boolean wellFormed() {
+		// 1. The buffer holds the header and the arrays it describes.
+		if (numStates < 1 || numArcs < 0 || numWords < 0 || maxLength < 0)
+			return report("negative or missing counts");
+		if (states.limit() != numStates + 1 || targets.limit() != numArcs || labels.limit() != numArcs)
+			return report("arrays do not match the counts");
+		// 2. The arcs of the states follow one another, and each state's are in
+		// increasing order of label, leading to states that exist.
+		if (firstArc(0) != 0) return report("arcs do not start at 0");
+		if (endArc(numStates - 1) != numArcs || isFinal(numStates)) return report("arcs do not end at " + numArcs);
+		for (int s = 0; s < numStates; ++s) {
+			if (endArc(s) < firstArc(s)) return report("arcs of state " + s + " run backwards");
+			for (int a = firstArc(s); a < endArc(s); ++a) {
+				if (a > firstArc(s) && labels.get(a) <= labels.get(a - 1))
+					return report("arcs of state " + s + " out of order");
+				if (targets.get(a) <= 0 || targets.get(a) >= numStates)
+					return report("arc " + a + " leads to no state");
+			}
+			// 3. Every state but the start leads to a word.
+			if (s > 0 && !isFinal(s) && firstArc(s) == endArc(s)) return report("state " + s + " is a dead end");
+		}
+		// 4. There are no cycles, and the start spells numWords words, none longer than maxLength.
+		long[] words = new long[numStates];
+		int[] longest = new int[numStates];
+		byte[] mark = new byte[numStates]; // 0 unvisited, 1 on the path, 2 done
+		ArrayDeque<int[]> path = new ArrayDeque<>(); // state and next arc to follow
+		path.push(new int[] { 0, firstArc(0) });
+		mark[0] = 1;
+		while (!path.isEmpty()) {
+			int[] top = path.peek();
+			int s = top[0];
+			if (top[1] < endArc(s)) {
+				int t = targets.get(top[1]++);
+				if (mark[t] == 1) return report("cycle through state " + t);
+				if (mark[t] == 0) {
+					mark[t] = 1;
+					path.push(new int[] { t, firstArc(t) });
+				}
+				continue;
+			}
+			path.pop();
+			mark[s] = 2;
+			long w = isFinal(s) ? 1 : 0;
+			int l = 0;
+			for (int a = firstArc(s); a < endArc(s); ++a) {
+				w += words[targets.get(a)];
+				l = Math.max(l, longest[targets.get(a)] + 1);
+			}
+			words[s] = Math.min(w, Integer.MAX_VALUE + 1L);
+			longest[s] = l;
+		}
+		for (int s = 0; s < numStates; ++s)
+			if (mark[s] == 0) return report("state " + s + " cannot be reached");
+		if (words[0] != numWords) return report("numWords is " + numWords + " but should be " + words[0]);
+		if (longest[0] != maxLength) return report("maxLength is " + maxLength + " but should be " + longest[0]);
+		return true;
+	}
+
+	/**
+	 * Create a frozen lexicon on a buffer laid out as described above.
+	 */
+	private FrozenLexicon(ByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_INTS * 4 || buffer.getInt(0) != MAGIC)
+			throw new IllegalArgumentException("not a frozen lexicon");
+		if (buffer.getInt(4) != VERSION)
+			throw new IllegalArgumentException("unknown version of frozen lexicon: " + buffer.getInt(4));
+		numStates = buffer.getInt(8);
+		numArcs = buffer.getInt(12);
+		numWords = buffer.getInt(16);
+		maxLength = buffer.getInt(20);
+		long end = HEADER_INTS * 4L + 4L * (numStates + 1L) + 6L * numArcs;
+		if (numStates < 1 || numArcs < 0 || end != buffer.limit())
+			throw new IllegalArgumentException("frozen lexicon has the wrong length");
+		int pos = HEADER_INTS * 4;
+		states = slice(pos, 4 * (numStates + 1)).asIntBuffer();
+		pos += 4 * (numStates + 1);
+		targets = slice(pos, 4 * numArcs).asIntBuffer();
+		pos += 4 * numArcs;
+		labels = slice(pos, 2 * numArcs).asCharBuffer();
+	}
+
+	private ByteBuffer slice(int position, int length) {
+		ByteBuffer b = buffer.duplicate();
+		b.position(position);
+		b.limit(position + length);
+		return b.slice();
+	}
+
+	/**
+	 * Return a frozen lexicon that uses the automaton in the given buffer, from
+	 * its position to its limit, as written by {@link #writeTo(Path)}. The
+	 * buffer is not copied, and must not be changed while the lexicon is in
+	 * use.
+	 *
+	 * @param buffer buffer holding an automaton, must not be null
+	 * @return frozen lexicon on the buffer
+	 * @throws IllegalArgumentException if the buffer does not hold a well-formed automaton
+	 */
+	public static FrozenLexicon wrap(ByteBuffer buffer) {
+		FrozenLexicon result = new FrozenLexicon(buffer.slice());
+		if (!result.wellFormed()) throw new IllegalArgumentException("malformed frozen lexicon");
+		return result;
+	}
+
+	/**
+	 * Map a file written by {@link #writeTo(Path)} into memory, and return a
+	 * frozen lexicon on it. The file is checked once, in full, and after that
+	 * only the parts used are read.
+	 *
+	 * @param file file to map, must not be null
+	 * @return frozen lexicon on the file
+	 * @throws IOException if the file cannot be mapped
+	 * @throws IllegalArgumentException if the file does not hold a well-formed automaton
+	 */
+	public static FrozenLexicon map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Write the automaton to a file, replacing it if it exists.
+	 *
+	 * @param file file to write, must not be null
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeTo(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer b = asByteBuffer();
+			while (b.hasRemaining())
+				channel.write(b);
+		}
+	}
+
+	/**
+	 * Return a read-only view of the buffer holding the automaton.
+	 *
+	 * @return new read-only buffer, from position 0
+	 */
+	public ByteBuffer asByteBuffer() {
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Return the number of bytes the automaton takes.
+	 *
+	 * @return size of the buffer
+	 */
+	public int sizeInBytes() {
+		return buffer.limit();
+	}
+
+	@Override // required
+	public int size() {
+		return numWords;
+	}
+
+	@Override // efficiency
+	public boolean contains(Object o) {
+		if (!(o instanceof String)) return false;
+		int s = walk((String) o);
+		return s >= 0 && isFinal(s);
+	}
+
+	/**
+	 * Follow the arcs that spell the string from the start.
+	 *
+	 * @return state reached, or -1 if the automaton does not spell it
+	 */
+	private int walk(String str) {
+		int s = 0;
+		for (int i = 0; i < str.length(); ++i) {
+			char c = str.charAt(i);
+			int a = lowerBound(s, c);
+			if (a == endArc(s) || labels.get(a) != c) return -1;
+			s = targets.get(a);
+		}
+		return s;
+	}
+
+	/**
+	 * Gets the [lexicographically] least string in the lexicon.
+	 *
+	 * @return the least string or null if empty
+	 */
+	public String getMin() {
+		Cursor c = new Cursor(0);
+		return c.seek("", false) ? c.word() : null;
+	}
+
+	/**
+	 * Gets the next [lexicographically] greater string than the given string.
+	 *
+	 * @param str the string of which to find the next greatest
+	 * @return the next string greater than str, or null if no other
+	 * @throws NullPointerException if str is null
+	 */
+	public String getNext(String str) {
+		if (str == null) throw new NullPointerException("String str is null");
+		Cursor c = new Cursor(0);
+		return c.seek(str, true) ? c.word() : null;
+	}
+
+	/**
+	 * Accept into the consumer all strings in this lexicon, in order.
+	 *
+	 * @param consumer the consumer to accept the strings
+	 * @throws NullPointerException if consumer is null
+	 */
+	public void consumeAll(Consumer<String> consumer) {
+		consumeAllWithPrefix(consumer, "");
+	}
+
+	/**
+	 * Accept into the consumer, in order, all strings that start with the given
+	 * prefix. Only the states after the prefix are visited.
+	 *
+	 * @param consumer the consumer to accept the strings
+	 * @param prefix   the prefix to find all strings starting with
+	 * @throws NullPointerException if consumer or prefix is null
+	 */
+	public void consumeAllWithPrefix(Consumer<String> consumer, String prefix) {
+		if (consumer == null) throw new NullPointerException("Can't accept into null consumer");
+		if (prefix == null) throw new NullPointerException("Prefix can't be null");
+		if (walk(prefix) < 0) return;
+		Cursor c = new Cursor(prefix.length());
+		for (boolean more = c.seek(prefix, false); more; more = c.advance())
+			consumer.accept(c.word());
+	}
+
+	@Override // required
+	public Iterator<String> iterator() {
+		return iterator("");
+	}
+
+	/**
+	 * Return an iterator that starts at the given element, or the next
+	 * available element from the set.
+	 *
+	 * @param start starting element (or element before starting element, if the
+	 *              start isn't in the set), must not be null
+	 * @return iterator starting "in the middle" (never null)
+	 */
+	public Iterator<String> iterator(String start) {
+		if (start == null) throw new NullPointerException("start is null");
+		Cursor c = new Cursor(0);
+		boolean found = c.seek(start, false);
+		return new Iterator<String>() {
+			private boolean ready = found; // whether the cursor is at a word not yet returned
+			private boolean done = !found;
+
+			@Override // required
+			public boolean hasNext() {
+				if (!ready && !done) {
+					ready = c.advance();
+					done = !ready;
+				}
+				return ready;
+			}
+
+			@Override // required
+			public String next() {
+				if (!hasNext()) throw new NoSuchElementException("no next value");
+				ready = false;
+				return c.word();
+			}
+		};
+	}
+
+	/**
+	 * A position in the automaton: the arcs followed from the start, which
+	 * spell a word when the state they reach is final. Moving on to the next
+	 * word goes down into the first arc of the state, or else back up to the
+	 * nearest arc with a following sibling, and then down the first arcs to
+	 * the first final state. The cursor never goes back up above the floor.
+	 */
+	private final class Cursor {
+		private final int floor;
+		private final int[] arcs = new int[maxLength];
+		private final char[] chars = new char[maxLength]; // labels of the arcs
+		private int depth;
+
+		Cursor(int floor) {
+			this.floor = floor;
+		}
+
+		private int state() {
+			return depth == 0 ? 0 : targets.get(arcs[depth - 1]);
+		}
+
+		String word() {
+			return new String(chars, 0, depth);
+		}
+
+		private void push(int a) {
+			chars[depth] = labels.get(a);
+			arcs[depth++] = a;
+		}
+
+		// follow the arc, then the first arcs down to a final state
+		private boolean descend(int a) {
+			push(a);
+			for (int s = targets.get(a); !isFinal(s); s = targets.get(a)) {
+				a = firstArc(s);
+				push(a);
+			}
+			return true;
+		}
+
+		// go on to the first word after all those below the current state
+		private boolean climb() {
+			while (depth > floor) {
+				int a = arcs[--depth];
+				if (a + 1 < endArc(state())) return descend(a + 1);
+			}
+			return false;
+		}
+
+		/**
+		 * Move to the first word not less than the string (or greater, if
+		 * strict), where the string is not shorter than the floor and the
+		 * automaton spells its first floor characters.
+		 *
+		 * @return whether there is such a word
+		 */
+		boolean seek(String str, boolean strict) {
+			depth = 0;
+			for (int i = 0; i < str.length(); ++i) {
+				int s = state();
+				int a = lowerBound(s, str.charAt(i));
+				if (a == endArc(s)) return climb();
+				if (labels.get(a) != str.charAt(i)) return descend(a);
+				push(a);
+			}
+			int s = state();
+			if (isFinal(s) && !strict) return true;
+			if (firstArc(s) < endArc(s)) return descend(firstArc(s));
+			return climb();
+		}
+
+		/**
+		 * Move to the next word.
+		 *
+		 * @return whether there is one
+		 */
+		boolean advance() {
+			int s = state();
+			if (firstArc(s) < endArc(s)) return descend(firstArc(s));
+			return climb();
+		}
+	}
+
+	/**
+	 * Builds a frozen lexicon from strings given in increasing order, keeping
+	 * the automaton minimal as it goes (the algorithm of Daciuk, Mihov, Watson
+	 * and Watson): only the states that spell the last string added may still
+	 * change, and as soon as a string is added that leaves some of them
+	 * behind, each of those is replaced by an equivalent state already built,
+	 * or else kept. So the builder holds a minimal automaton for the strings
+	 * before the last one, and one path for the last.
+	 */
+	public static class Builder {
+		// a state while building: its arcs, in increasing order of label
+		private static final class State {
+			char[] labels = new char[2];
+			State[] targets = new State[2];
+			int numArcs;
+			boolean isFinal;
+			int index = -1; // place in the automaton, once numbered
+
+			void addArc(char c, State t) {
+				if (numArcs == labels.length) {
+					labels = Arrays.copyOf(labels, numArcs * 2);
+					targets = Arrays.copyOf(targets, numArcs * 2);
+				}
+				labels[numArcs] = c;
+				targets[numArcs++] = t;
+			}
+
+			// states are equivalent if they are alike, with arcs to the same states
+			@Override // implementation
+			public boolean equals(Object o) {
+				if (!(o instanceof State)) return false;
+				State s = (State) o;
+				if (isFinal != s.isFinal || numArcs != s.numArcs) return false;
+				for (int i = 0; i < numArcs; ++i)
+					if (labels[i] != s.labels[i] || targets[i] != s.targets[i]) return false;
+				return true;
+			}
+
+			@Override // implementation
+			public int hashCode() {
+				int h = isFinal ? 1 : 0;
+				for (int i = 0; i < numArcs; ++i)
+					h = (h * 31 + labels[i]) * 31 + System.identityHashCode(targets[i]);
+				return h;
+			}
+		}
+
+		private final Map<State, State> register = new HashMap<>();
+		private State[] path = { new State() }; // path[i] is reached by the first i chars of last
+		private String last = null;
+		private int numWords;
+		private int maxLength;
+
+		/**
+		 * Add a string, which must not be less than the last one added. Adding
+		 * the last string again does nothing.
+		 *
+		 * @param str string to add, must not be null
+		 * @return this builder
+		 * @throws NullPointerException     if str is null
+		 * @throws IllegalArgumentException if str is less than the last string added
+		 * @throws IllegalStateException    if the lexicon has already been built
+		 */
+		public Builder add(String str) {
+			if (str == null) throw new NullPointerException("Cannot add null.");
+			if (path == null) throw new IllegalStateException("lexicon already built");
+			int common = 0;
+			if (last != null) {
+				int c = str.compareTo(last);
+				if (c == 0) return this;
+				if (c < 0) throw new IllegalArgumentException("strings out of order: " + str + " after " + last);
+				while (common < last.length() && last.charAt(common) == str.charAt(common)) ++common;
+				replaceOrRegister(common);
+			}
+			if (path.length <= str.length()) path = Arrays.copyOf(path, Math.max(str.length() + 1, path.length * 2));
+			for (int i = common; i < str.length(); ++i) {
+				path[i + 1] = new State();
+				path[i].addArc(str.charAt(i), path[i + 1]);
+			}
+			path[str.length()].isFinal = true;
+			last = str;
+			++numWords;
+			maxLength = Math.max(maxLength, str.length());
+			return this;
+		}
+
+		/**
+		 * Settle the states that spell last beyond its first keep characters,
+		 * from the end back: each is replaced by an equivalent one already
+		 * settled, if any, or else becomes one itself.
+		 */
+		private void replaceOrRegister(int keep) {
+			for (int i = last.length(); i > keep; --i) {
+				State s = path[i];
+				State same = register.putIfAbsent(s, s);
+				if (same != null) path[i - 1].targets[path[i - 1].numArcs - 1] = same;
+				path[i] = null;
+			}
+		}
+
+		/**
+		 * Build the frozen lexicon of the strings added. The builder cannot be
+		 * used afterwards.
+		 *
+		 * @return new frozen lexicon
+		 * @throws IllegalStateException if the lexicon has already been built
+		 */
+		public FrozenLexicon build() {
+			if (path == null) throw new IllegalStateException("lexicon already built");
+			if (last != null) replaceOrRegister(0);
+			State start = path[0];
+			path = null;
+			register.clear();
+
+			// number the states in depth-first order, from the start
+			int numStates = 0, numArcs = 0;
+			ArrayDeque<State> pending = new ArrayDeque<>();
+			State[] order = new State[16];
+			start.index = numStates++;
+			pending.push(start);
+			while (!pending.isEmpty()) {
+				State s = pending.pop();
+				if (s.index >= order.length) order = Arrays.copyOf(order, Math.max(numStates, order.length * 2));
+				order[s.index] = s;
+				numArcs += s.numArcs;
+				for (int i = s.numArcs - 1; i >= 0; --i) {
+					State t = s.targets[i];
+					if (t.index < 0) {
+						t.index = numStates++;
+						pending.push(t);
+					}
+				}
+			}
+
+			long length = HEADER_INTS * 4L + 4L * (numStates + 1L) + 6L * numArcs;
+			if (length > Integer.MAX_VALUE) throw new IllegalStateException("too many strings to freeze");
+			ByteBuffer buffer = ByteBuffer.allocate((int) length);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(numStates).putInt(numArcs).putInt(numWords).putInt(maxLength);
+			int arc = 0;
+			for (int i = 0; i < numStates; ++i) {
+				buffer.putInt(arc << 1 | (order[i].isFinal ? 1 : 0));
+				arc += order[i].numArcs;
+			}
+			buffer.putInt(arc << 1);
+			for (int i = 0; i < numStates; ++i)
+				for (int j = 0; j < order[i].numArcs; ++j)
+					buffer.putInt(order[i].targets[j].index);
+			for (int i = 0; i < numStates; ++i)
+				for (int j = 0; j < order[i].numArcs; ++j)
+					buffer.putChar(order[i].labels[j]);
+			buffer.flip();
+			FrozenLexicon result = new FrozenLexicon(buffer);
+			assert result.wellFormed() : "invariant false at end of build";
+			return result;
+		}
+	}
+}
@@ -0,0 +1,490 @@
+package edu.uwm.cs351;
+
+import java.util.function.Consumer;
+
+/**
+ * A sequence with the same cursor interface as {@link LinkedSequence} that
+ * also supports moving the cursor to, and reading, any position in O(log n)
+ * time. The elements are kept in an AVL tree ordered by position, in which
+ * every node records the size of its subtree, and the cursor is the position
+ * of the current element. The path to the current node is kept as a finger
+ * while the tree doesn't change, so that reading the elements in order with
+ * {@link #advance()} and {@link #getCurrent()} takes O(n) time in all.
+ */
+public class IndexedSequence<E> implements Cloneable {
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private int reportNeg(String error) {
+		report(error);
+		return -1;
+	}
+
+	private static class Node<X> {
+		X data;
+		Node<X> left, right;
+		int height = 1;
+		int size = 1;
+
+		Node(X d) {
+			data = d;
+		}
+	}
+
+	private static final int MAX_HEIGHT = 64; // more than any AVL tree of ints
+
+	private Node<E> root;
+	private int cursor; // position of the current element, or size if none
+
+	// the current node on top of the ancestors whose left subtree has it, or
+	// empty if not known; cleared whenever the tree or cursor is changed
+	private Node<E>[] finger = newFinger();
+	private int fingerSize;
+
+	@SuppressWarnings("unchecked")
+	private static <X> Node<X>[] newFinger() {
+		return (Node<X>[]) new Node<?>[MAX_HEIGHT];
+	}
+
+	private static int height(Node<?> n) {
+		return n == null ? 0 : n.height;
+	}
+
+	private static int size(Node<?> n) {
+		return n == null ? 0 : n.size;
+	}
+
+	/**
+	 * Check that the subtree has the heights and sizes recorded in it and is
+	 * balanced.
+	 *
+	 * @return number of nodes in the subtree, or -1 if a problem was reported
+	 */
+	private int checkSubtree(Node<E> n, int depth) {
+		if (n == null)
+			return 0;
+		if (depth > 64)
+			return reportNeg("tree too deep (cycle?)");
+		int l = checkSubtree(n.left, depth + 1);
+		if (l < 0)
+			return -1;
+		int r = checkSubtree(n.right, depth + 1);
+		if (r < 0)
+			return -1;
+		if (n.size != l + r + 1)
+			return reportNeg("size is " + n.size + " but should be " + (l + r + 1));
+		if (n.height != 1 + Math.max(height(n.left), height(n.right)))
+			return reportNeg("height is wrong");
+		if (Math.abs(height(n.left) - height(n.right)) > 1)
+			return reportNeg("tree is not balanced");
+		return n.size;
+	}
+
+	/**
+	 * Check the invariant. Report any problem precisely once. Return false if any
+	 * problem is found.
+	 *
+	 * @return whether invariant is currently true
+	 */
+	private boolean wellFormed() {
+		// 1. The tree records correct sizes and heights and is AVL balanced.
+		if (checkSubtree(root, 0) < 0)
+			return false;
+		// 2. The cursor is a position in the sequence, or just past the end.
+		if (cursor < 0 || cursor > size(root))
+			return report("cursor out of range: " + cursor);
+		// 3. If the finger is set, the current node is on top of it.
+		if (finger == null)
+			return report("finger is null");
+		if (fingerSize < 0 || fingerSize > finger.length)
+			return report("fingerSize out of range: " + fingerSize);
+		if (fingerSize > 0 && (cursor == size(root) || finger[fingerSize - 1] != nodeAt(cursor)))
+			return report("finger is not on the current node");
+		return true;
+	}
+
+	/**
+	 * Create an empty sequence.
+	 *
+	 * @param - none
+	 * @postcondition This sequence is empty
+	 **/
+	public IndexedSequence() {
+		root = null;
+		cursor = 0;
+		assert wellFormed() : "invariant failed in constructor";
+	}
+
+	private static <X> Node<X> update(Node<X> n) {
+		n.height = 1 + Math.max(height(n.left), height(n.right));
+		n.size = 1 + size(n.left) + size(n.right);
+		return n;
+	}
+
+	private static <X> Node<X> rotateRight(Node<X> n) {
+		Node<X> l = n.left;
+		n.left = l.right;
+		l.right = update(n);
+		return update(l);
+	}
+
+	private static <X> Node<X> rotateLeft(Node<X> n) {
+		Node<X> r = n.right;
+		n.right = r.left;
+		r.left = update(n);
+		return update(r);
+	}
+
+	/**
+	 * Restore the balance of a node whose subtrees are balanced and differ in
+	 * height by at most two.
+	 */
+	private static <X> Node<X> balance(Node<X> n) {
+		int bf = height(n.left) - height(n.right);
+		if (bf > 1) {
+			if (height(n.left.left) < height(n.left.right))
+				n.left = rotateLeft(n.left);
+			return rotateRight(n);
+		}
+		if (bf < -1) {
+			if (height(n.right.right) < height(n.right.left))
+				n.right = rotateRight(n.right);
+			return rotateLeft(n);
+		}
+		return update(n);
+	}
+
+	private static <X> Node<X> insert(Node<X> n, int i, X x) {
+		if (n == null)
+			return new Node<>(x);
+		int ls = size(n.left);
+		if (i <= ls)
+			n.left = insert(n.left, i, x);
+		else
+			n.right = insert(n.right, i - ls - 1, x);
+		return balance(n);
+	}
+
+	private static <X> Node<X> removeFirst(Node<X> n, Node<X> into) {
+		if (n.left == null) {
+			into.data = n.data;
+			return n.right;
+		}
+		n.left = removeFirst(n.left, into);
+		return balance(n);
+	}
+
+	private static <X> Node<X> remove(Node<X> n, int i) {
+		int ls = size(n.left);
+		if (i < ls)
+			n.left = remove(n.left, i);
+		else if (i > ls)
+			n.right = remove(n.right, i - ls - 1);
+		else if (n.left == null)
+			return n.right;
+		else if (n.right == null)
+			return n.left;
+		else
+			n.right = removeFirst(n.right, n);
+		return balance(n);
+	}
+
+	/**
+	 * Set the finger to the path to the node at the cursor, which must be in
+	 * the sequence, and return that node.
+	 */
+	private Node<E> point() {
+		fingerSize = 0;
+		Node<E> n = root;
+		int i = cursor;
+		for (;;) {
+			int ls = size(n.left);
+			if (i < ls) {
+				finger[fingerSize++] = n;
+				n = n.left;
+			} else if (i > ls) {
+				i -= ls + 1;
+				n = n.right;
+			} else {
+				finger[fingerSize++] = n;
+				return n;
+			}
+		}
+	}
+
+	/**
+	 * Move the finger from the current node to the next one in order, if any.
+	 */
+	private void stepFinger() {
+		Node<E> n = finger[--fingerSize].right;
+		for (; n != null; n = n.left)
+			finger[fingerSize++] = n;
+	}
+
+	private Node<E> nodeAt(int i) {
+		Node<E> n = root;
+		for (;;) {
+			int ls = size(n.left);
+			if (i < ls)
+				n = n.left;
+			else if (i > ls) {
+				i -= ls + 1;
+				n = n.right;
+			} else
+				return n;
+		}
+	}
+
+	private static <X> Node<X> copy(Node<X> n) {
+		if (n == null)
+			return null;
+		Node<X> result = new Node<>(n.data);
+		result.left = copy(n.left);
+		result.right = copy(n.right);
+		result.height = n.height;
+		result.size = n.size;
+		return result;
+	}
+
+	/**
+	 * Determine the number of elements in this sequence.
+	 *
+	 * @param - none
+	 * @return the number of elements in this sequence
+	 **/
+	public int size() {
+		assert wellFormed() : "invariant wrong at start of size()";
+		return size(root);
+	}
+
+	/**
+	 * Set the current element at the front of this sequence.
+	 *
+	 * @param - none
+	 * @postcondition The front element of this sequence is now the current element
+	 *                (but if this sequence has no elements at all, then there is no
+	 *                current element).
+	 **/
+	public void start() {
+		assert wellFormed() : "invariant wrong at start of start()";
+		cursor = 0;
+		fingerSize = 0;
+		assert wellFormed() : "invariant wrong at end of start()";
+	}
+
+	/**
+	 * Accessor method to determine whether this sequence has a specified current
+	 * element that can be retrieved with the getCurrent method.
+	 *
+	 * @param - none
+	 * @return true (there is a current element) or false (there is no current
+	 *         element at the moment)
+	 **/
+	public boolean isCurrent() {
+		assert wellFormed() : "invariant wrong at start of isCurrent()";
+		return cursor < size(root);
+	}
+
+	/**
+	 * Accessor method to get the current element of this sequence, in O(log n)
+	 * time, or constant time if the tree hasn't changed since getCurrent was
+	 * last called (before advancing).
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @return the current element of this sequence
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so getCurrent may not be called.
+	 **/
+	public E getCurrent() {
+		assert wellFormed() : "invariant wrong at start of getCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		return fingerSize > 0 ? finger[fingerSize - 1].data : point().data;
+	}
+
+	/**
+	 * Move forward, so that the current element is now the next element in this
+	 * sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition If the current element was already the end element of this
+	 *                sequence (with nothing after it), then there is no longer any
+	 *                current element. Otherwise, the new element is the element
+	 *                immediately after the original current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so advance may not be called.
+	 **/
+	public void advance() {
+		assert wellFormed() : "invariant wrong at start of advance()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		++cursor;
+		if (fingerSize > 0)
+			stepFinger();
+		assert wellFormed() : "invariant wrong at end of advance()";
+	}
+
+	/**
+	 * Make the element at the given position current, in O(log n) time.
+	 *
+	 * @param index position of the new current element, from 0 to size(); if it is
+	 *              size(), there is no current element afterwards
+	 * @exception IndexOutOfBoundsException if index is negative or more than size()
+	 **/
+	public void seek(int index) {
+		assert wellFormed() : "invariant wrong at start of seek()";
+		if (index < 0 || index > size(root))
+			throw new IndexOutOfBoundsException("index " + index + " for size " + size(root));
+		cursor = index;
+		fingerSize = 0;
+		assert wellFormed() : "invariant wrong at end of seek()";
+	}
+
+	/**
+	 * Return the position of the current element.
+	 *
+	 * @return position of the current element, or -1 if there is none
+	 **/
+	public int indexOfCurrent() {
+		assert wellFormed() : "invariant wrong at start of indexOfCurrent()";
+		return cursor < size(root) ? cursor : -1;
+	}
+
+	/**
+	 * Return the element at the given position, in O(log n) time. The current
+	 * element is not changed.
+	 *
+	 * @param index position of the element, from 0 to size()-1
+	 * @return element at that position
+	 * @exception IndexOutOfBoundsException if index is negative or not less than
+	 *                                      size()
+	 **/
+	public E get(int index) {
+		assert wellFormed() : "invariant wrong at start of get()";
+		if (index < 0 || index >= size(root))
+			throw new IndexOutOfBoundsException("index " + index + " for size " + size(root));
+		return nodeAt(index).data;
+	}
+
+	/**
+	 * Remove the current element from this sequence, in O(log n) time.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition The current element has been removed from this sequence, and
+	 *                the following element (if there is one) is now the new current
+	 *                element. If there was no following element, then there is now
+	 *                no current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so removeCurrent may not be called.
+	 **/
+	public void removeCurrent() {
+		assert wellFormed() : "invariant wrong at start of removeCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		root = remove(root, cursor);
+		fingerSize = 0;
+		assert wellFormed() : "invariant wrong at end of removeCurrent()";
+	}
+
+	/**
+	 * Add a new element to this sequence, before the current element (if any), in
+	 * O(log n) time.
+	 *
+	 * @param element the new element that is being added
+	 * @postcondition A new copy of the element has been added to this sequence. If
+	 *                there was a current element, then the new element is placed
+	 *                before the current element. If there was no current element,
+	 *                then the new element is placed at the end of the sequence. In
+	 *                all cases, the new element becomes the new current element of
+	 *                this sequence.
+	 * @exception OutOfMemoryError Indicates insufficient memory for increasing the
+	 *                             sequence.
+	 **/
+	public void insert(E element) {
+		assert wellFormed() : "invariant failed at start of insert";
+		root = insert(root, cursor, element);
+		fingerSize = 0;
+		assert wellFormed() : "invariant failed at end of insert";
+	}
+
+	/**
+	 * Place the contents of another sequence (which may be the same one as this!)
+	 * into this sequence before the current element (if any).
+	 *
+	 * @param addend a sequence whose contents will be placed into this sequence
+	 * @precondition The parameter, addend, is not null.
+	 * @postcondition The elements from addend have been placed into this sequence.
+	 *                The current element of this sequence (if any) is unchanged.
+	 *                The addend is unchanged.
+	 * @exception NullPointerException Indicates that addend is null.
+	 * @exception OutOfMemoryError     Indicates insufficient memory to increase the
+	 *                                 size of this sequence.
+	 **/
+	public void insertAll(IndexedSequence<E> addend) {
+		assert wellFormed() : "invariant failed at start of insertAll";
+		if (addend == null)
+			throw new NullPointerException("addend is null");
+		Object[] added = new Object[size(addend.root)];
+		collect(addend.root, added, 0);
+		for (Object x : added) {
+			@SuppressWarnings("unchecked")
+			E e = (E) x;
+			root = insert(root, cursor, e);
+			++cursor;
+		}
+		fingerSize = 0;
+		assert wellFormed() : "invariant failed at end of insertAll";
+	}
+
+	/**
+	 * Place the elements of the subtree in order into the array, starting at the
+	 * given index, and return the index after the last one.
+	 */
+	private static int collect(Node<?> n, Object[] into, int i) {
+		for (; n != null; n = n.right) {
+			i = collect(n.left, into, i);
+			into[i++] = n.data;
+		}
+		return i;
+	}
+
+	/**
+	 * Generate a copy of this sequence.
+	 *
+	 * @param - none
+	 * @return The return value is a copy of this sequence. Subsequent changes to
+	 *         the copy will not affect the original, nor vice versa. Whatever was
+	 *         current in the original object is now current in the clone.
+	 * @exception OutOfMemoryError Indicates insufficient memory for creating the
+	 *                             clone.
+	 **/
+	@SuppressWarnings("unchecked")
+	public IndexedSequence<E> clone() {
+		assert wellFormed() : "invariant wrong at start of clone()";
+		IndexedSequence<E> result;
+		try {
+			result = (IndexedSequence<E>) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException("This class does not implement Cloneable");
+		}
+		result.root = copy(root);
+		result.finger = newFinger();
+		result.fingerSize = 0;
+		assert result.wellFormed() : "invariant wrong for result of clone()";
+		return result;
+	}
+}
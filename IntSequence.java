@@ -0,0 +1,363 @@
+package edu.uwm.cs351;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A sequence of ints with the same cursor interface as {@link LinkedSequence}.
+ * Instead of node objects, the elements and the links between them are kept
+ * in two parallel arrays: {@code data[i]} is the element at node i and
+ * {@code next[i]} is the index of the node after it. Node 0 is the dummy, and
+ * the list is cyclic through it as in LinkedSequence. Nodes that are not in the
+ * list are kept on a free list (also linked through {@code next}) to be reused,
+ * so no objects are created per element and nothing is boxed.
+ */
+public class IntSequence implements Cloneable {
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private static final int DUMMY = 0;
+	private static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] data;
+	private int[] next;
+	private int tail; // last node in the list, or DUMMY if empty
+	private int precursor; // node before the current element
+	private int free; // first node on the free list, or NONE
+	private int size;
+
+	/**
+	 * Check the invariant. Report any problem precisely once. Return false if any
+	 * problem is found.
+	 *
+	 * @return whether invariant is currently true
+	 */
+	private boolean wellFormed() {
+		// 1. The arrays are not null, have the same length and have room for the
+		// dummy.
+		if (data == null || next == null)
+			return report("arrays are null");
+		if (data.length != next.length)
+			return report("arrays have different lengths");
+		if (data.length < 1)
+			return report("no room for the dummy");
+
+		// 2. The list starting after the dummy is cyclic back to the dummy through
+		// tail, visiting size nodes, each at most once.
+		boolean[] seen = new boolean[next.length];
+		seen[DUMMY] = true;
+		int count = 0;
+		int last = DUMMY;
+		for (int i = next[DUMMY]; i != DUMMY; i = next[i]) {
+			if (i < 0 || i >= next.length)
+				return report("link out of range: " + i);
+			if (seen[i])
+				return report("list is incorrectly cyclic");
+			seen[i] = true;
+			++count;
+			last = i;
+		}
+		if (tail != last)
+			return report("tail is not the last node");
+		if (size != count)
+			return report("size is " + size + " but list has " + count);
+
+		// 3. precursor is a node in the list (possibly the dummy).
+		if (precursor < 0 || precursor >= next.length || !seen[precursor])
+			return report("precursor isn't in the list");
+
+		// 4. Every other node is on the free list, exactly once.
+		int numFree = 0;
+		for (int i = free; i != NONE; i = next[i]) {
+			if (i < 0 || i >= next.length)
+				return report("free link out of range: " + i);
+			if (seen[i])
+				return report("free node is in use: " + i);
+			seen[i] = true;
+			++numFree;
+		}
+		if (numFree + size + 1 != next.length)
+			return report("lost nodes: " + (next.length - 1 - size - numFree));
+
+		// If no problems found, then return true:
+		return true;
+	}
+
+	/**
+	 * Create an empty sequence.
+	 *
+	 * @param - none
+	 * @postcondition This sequence is empty
+	 **/
+	public IntSequence() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create an empty sequence with room for the given number of elements before
+	 * the arrays need to grow.
+	 *
+	 * @param initialCapacity number of elements to make room for
+	 * @postcondition This sequence is empty
+	 * @exception IllegalArgumentException Indicates that initialCapacity is
+	 *                                     negative.
+	 **/
+	public IntSequence(int initialCapacity) {
+		if (initialCapacity < 0)
+			throw new IllegalArgumentException("initialCapacity is negative: " + initialCapacity);
+		data = new int[initialCapacity + 1];
+		next = new int[initialCapacity + 1];
+		next[DUMMY] = DUMMY;
+		tail = precursor = DUMMY;
+		free = NONE;
+		linkFree(1);
+		size = 0;
+		assert wellFormed() : "invariant failed in constructor";
+	}
+
+	/**
+	 * Put the nodes from the given index to the end of the arrays on the free
+	 * list.
+	 */
+	private void linkFree(int from) {
+		for (int i = next.length - 1; i >= from; --i) {
+			next[i] = free;
+			free = i;
+		}
+	}
+
+	/**
+	 * Make sure there are at least the given number of free nodes.
+	 */
+	private void ensureFree(int count) {
+		if (next.length - 1 - size >= count)
+			return;
+		int newLength = Math.max(size + 1 + count, next.length * 2);
+		int oldLength = next.length;
+		data = Arrays.copyOf(data, newLength);
+		next = Arrays.copyOf(next, newLength);
+		linkFree(oldLength);
+	}
+
+	/**
+	 * Take a node from the free list (which must not be empty).
+	 */
+	private int allocate(int element) {
+		int n = free;
+		free = next[n];
+		data[n] = element;
+		return n;
+	}
+
+	/**
+	 * Determine the number of elements in this sequence.
+	 *
+	 * @param - none
+	 * @return the number of elements in this sequence
+	 **/
+	public int size() {
+		assert wellFormed() : "invariant wrong at start of size()";
+		return size;
+	}
+
+	/**
+	 * Set the current element at the front of this sequence.
+	 *
+	 * @param - none
+	 * @postcondition The front element of this sequence is now the current element
+	 *                (but if this sequence has no elements at all, then there is no
+	 *                current element).
+	 **/
+	public void start() {
+		assert wellFormed() : "invariant wrong at start of start()";
+		precursor = DUMMY;
+		assert wellFormed() : "invariant wrong at end of start()";
+	}
+
+	/**
+	 * Accessor method to determine whether this sequence has a specified current
+	 * element that can be retrieved with the getCurrent method.
+	 *
+	 * @param - none
+	 * @return true (there is a current element) or false (there is no current
+	 *         element at the moment)
+	 **/
+	public boolean isCurrent() {
+		assert wellFormed() : "invariant wrong at start of isCurrent()";
+		return next[precursor] != DUMMY;
+	}
+
+	/**
+	 * Accessor method to get the current element of this sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @return the current element of this sequence
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so getCurrent may not be called.
+	 **/
+	public int getCurrent() {
+		assert wellFormed() : "invariant wrong at start of getCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		return data[next[precursor]];
+	}
+
+	/**
+	 * Move forward, so that the current element is now the next element in this
+	 * sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition If the current element was already the end element of this
+	 *                sequence (with nothing after it), then there is no longer any
+	 *                current element. Otherwise, the new element is the element
+	 *                immediately after the original current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so advance may not be called.
+	 **/
+	public void advance() {
+		assert wellFormed() : "invariant wrong at start of advance()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		precursor = next[precursor];
+		assert wellFormed() : "invariant wrong at end of advance()";
+	}
+
+	/**
+	 * Remove the current element from this sequence. Its node is put on the free
+	 * list to be reused.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition The current element has been removed from this sequence, and
+	 *                the following element (if there is one) is now the new current
+	 *                element. If there was no following element, then there is now
+	 *                no current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so removeCurrent may not be called.
+	 **/
+	public void removeCurrent() {
+		assert wellFormed() : "invariant wrong at start of removeCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		int cursor = next[precursor];
+		next[precursor] = next[cursor];
+		if (cursor == tail)
+			tail = precursor;
+		next[cursor] = free;
+		free = cursor;
+		--size;
+		assert wellFormed() : "invariant wrong at end of removeCurrent()";
+	}
+
+	/**
+	 * Add a new element to this sequence, before the current element (if any). If
+	 * there is no free node, the arrays are grown before adding the new element.
+	 *
+	 * @param element the new element that is being added
+	 * @postcondition A new copy of the element has been added to this sequence. If
+	 *                there was a current element, then the new element is placed
+	 *                before the current element. If there was no current element,
+	 *                then the new element is placed at the end of the sequence. In
+	 *                all cases, the new element becomes the new current element of
+	 *                this sequence.
+	 * @exception OutOfMemoryError Indicates insufficient memory for increasing the
+	 *                             sequence.
+	 **/
+	public void insert(int element) {
+		assert wellFormed() : "invariant failed at start of insert";
+		ensureFree(1);
+		int n = allocate(element);
+		if (next[precursor] != DUMMY) { // not isCurrent(): n is not linked in yet
+			next[n] = next[precursor];
+			next[precursor] = n;
+		} else {
+			next[n] = DUMMY;
+			next[tail] = n;
+			precursor = tail;
+			tail = n;
+		}
+		++size;
+		assert wellFormed() : "invariant failed at end of insert";
+	}
+
+	/**
+	 * Place the contents of another sequence (which may be the same one as this!)
+	 * into this sequence before the current element (if any).
+	 *
+	 * @param addend a sequence whose contents will be placed into this sequence
+	 * @precondition The parameter, addend, is not null.
+	 * @postcondition The elements from addend have been placed into this sequence.
+	 *                The current element of this sequence (if any) is unchanged.
+	 *                The addend is unchanged.
+	 * @exception NullPointerException Indicates that addend is null.
+	 * @exception OutOfMemoryError     Indicates insufficient memory to increase the
+	 *                                 size of this sequence.
+	 **/
+	public void insertAll(IntSequence addend) {
+		assert wellFormed() : "invariant failed at start of insertAll";
+		if (addend == null)
+			throw new NullPointerException("addend is null");
+		int count = addend.size;
+		if (count == 0)
+			return;
+		ensureFree(count); // may replace addend's arrays, if it is this sequence
+		// copy the addend's elements into a chain of free nodes, then link it in
+		int first = allocate(addend.data[addend.next[DUMMY]]);
+		int last = first;
+		for (int i = addend.next[addend.next[DUMMY]]; i != DUMMY; i = addend.next[i]) {
+			int n = allocate(addend.data[i]);
+			next[last] = n;
+			last = n;
+		}
+		if (next[precursor] != DUMMY) {
+			next[last] = next[precursor];
+			next[precursor] = first;
+			precursor = last;
+		} else {
+			next[last] = DUMMY;
+			next[tail] = first;
+			tail = precursor = last;
+		}
+		size += count;
+		assert wellFormed() : "invariant failed at end of insertAll";
+	}
+
+	/**
+	 * Generate a copy of this sequence. The arrays are copied in bulk; no objects
+	 * are created per element.
+	 *
+	 * @param - none
+	 * @return The return value is a copy of this sequence. Subsequent changes to
+	 *         the copy will not affect the original, nor vice versa. Whatever was
+	 *         current in the original object is now current in the clone.
+	 * @exception OutOfMemoryError Indicates insufficient memory for creating the
+	 *                             clone.
+	 **/
+	public IntSequence clone() {
+		assert wellFormed() : "invariant wrong at start of clone()";
+		IntSequence result;
+		try {
+			result = (IntSequence) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException("This class does not implement Cloneable");
+		}
+		result.data = data.clone();
+		result.next = next.clone();
+		assert result.wellFormed() : "invariant wrong for result of clone()";
+		return result;
+	}
+}
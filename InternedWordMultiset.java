@@ -0,0 +1,670 @@
+package edu.uwm.cs351;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.util.AbstractEntry;
+import edu.uwm.cs351.util.Primes;
+
+/**
+ * Multiset of strings like {@link WordMultiset}, for when there are many
+ * multisets over the same words (one per document, say). Each word is given
+ * an int id by a {@link WordDictionary} that the multisets share, so a
+ * multiset keeps no strings of its own: a slot of its table is one long
+ * holding the id and the count, and a word costs the same whatever its
+ * length and however many copies of it were parsed. Collisions are resolved
+ * by double hashing over twin primes, with placeholders for removed entries,
+ * as in WordMultiset.
+ * <p>
+ * Combining two multisets over the same dictionary ({@link #addAll},
+ * {@link #subtractAll}, {@link #intersectMin} and {@link #unionMax}) uses
+ * only the ids, and never looks at a string. The dictionary may be shared by
+ * multisets in different threads, but each multiset is to be used by one
+ * thread at a time.
+ */
+public class InternedWordMultiset extends AbstractMap<String, Integer> {
+	private static final int INITIAL_CAPACITY = 7;
+
+	/** A slot whose entry was removed; no entry packs to this. */
+	private static final long PLACE_HOLDER = -1L;
+
+	private final WordDictionary dictionary;
+
+	private long[] slots; // (id+1) << 32 | count, 0 if empty, or PLACE_HOLDER
+	private int numUsed; // slots that are not empty, including placeholders
+	private int numEntries;
+	private int version;
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private static boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private static long pack(int id, int count) {
+		return ((long) (id + 1) << 32) | (count & 0xFFFFFFFFL);
+	}
+
+	private static int idOf(long slot) {
+		return (int) (slot >>> 32) - 1;
+	}
+
+	private static int countOf(long slot) {
+		return (int) slot;
+	}
+
+	private static boolean isEntry(long slot) {
+		return slot != 0 && slot != PLACE_HOLDER;
+	}
+
+	/**
+	 * Hash the id to a table index, following double hashing, returning the first
+	 * index that (1) has the entry for the id, or (2) is empty, or (3) has a
+	 * placeholder (if phOK is true *and* the id cannot be found).
+	 *
+	 * @param id   id of the word to look for
+	 * @param phOK whether we return a slot with a placeholder in preference to an
+	 *             empty slot
+	 * @return first index meeting the requirements using double hashing.
+	 */
+	private int hash(int id, boolean phOK) {
+		// ids are given out in order, so they are spread before hashing
+		int h = id * 0x9E3779B9;
+		int hOne = DoubleHashing.first(h, slots.length);
+		int hTwo = DoubleHashing.step(h, slots.length);
+		int phIndex = -1;
+		for (;;) {
+			long s = slots[hOne];
+			if (s == 0)
+				return phOK && phIndex >= 0 ? phIndex : hOne;
+			if (s == PLACE_HOLDER) {
+				if (phIndex < 0)
+					phIndex = hOne;
+			} else if (idOf(s) == id)
+				return hOne;
+			hOne = DoubleHashing.next(hOne, hTwo, slots.length);
+		}
+	}
+
+	/**
+	 * Check the invariant. Returns false if any problem is found.
+	 *
+	 * @return whether invariant is currently true. If false is returned then
+	 *         exactly one problem has been reported.
+	 */
+	private boolean wellFormed() {
+		// 1. The table exists, and its length is the larger of twin primes.
+		if (slots == null)
+			return report("slots is null");
+		if (slots.length < INITIAL_CAPACITY || !Primes.isPrime(slots.length) || !Primes.isPrime(slots.length - 2))
+			return report("table size is not the larger of twin primes");
+		// 2. Every entry has a positive count and an id from the dictionary, and
+		// can be found.
+		int used = 0;
+		int count = 0;
+		int numIds = dictionary.size();
+		for (int i = 0; i < slots.length; ++i) {
+			if (slots[i] == 0)
+				continue;
+			++used;
+			if (slots[i] == PLACE_HOLDER)
+				continue;
+			++count;
+			if (countOf(slots[i]) <= 0)
+				return report("count is not positive at " + i);
+			int id = idOf(slots[i]);
+			if (id < 0 || id >= numIds)
+				return report("entry uses an unknown id " + id);
+			if (hash(id, false) != i)
+				return report("entry for " + dictionary.wordOf(id) + " can't be found");
+		}
+		// 3. numUsed and numEntries count the slots in use and the entries.
+		if (used != numUsed)
+			return report("numUsed is " + numUsed + " but should be " + used);
+		if (count != numEntries)
+			return report("numEntries is " + numEntries + " but should be " + count);
+		// 4. The table is never more than half full.
+		if (numUsed * 2 > slots.length)
+			return report("table is too full");
+		return true;
+	}
+
+	/**
+	 * Creates an empty multiset with its own dictionary.
+	 */
+	public InternedWordMultiset() {
+		this(new WordDictionary());
+	}
+
+	/**
+	 * Creates an empty multiset using the given dictionary, which may be shared
+	 * with other multisets.
+	 *
+	 * @param dictionary dictionary of words to ids, must not be null
+	 * @throws NullPointerException if dictionary is null
+	 */
+	public InternedWordMultiset(WordDictionary dictionary) {
+		if (dictionary == null)
+			throw new NullPointerException("dictionary is null");
+		this.dictionary = dictionary;
+		slots = new long[INITIAL_CAPACITY];
+		assert wellFormed() : "invariant false at end of constructor";
+	}
+
+	/**
+	 * Return the dictionary giving the ids of words.
+	 *
+	 * @return dictionary, never null
+	 */
+	public WordDictionary getDictionary() {
+		return dictionary;
+	}
+
+	@Override // required
+	public int size() {
+		assert wellFormed() : "invariant false at start of size()";
+		return numEntries;
+	}
+
+	@Override // efficiency
+	public Integer get(Object o) {
+		assert wellFormed() : "invariant false at start of get()";
+		int id = find(o);
+		if (id < 0)
+			return null;
+		long s = slots[hash(id, false)];
+		return s == 0 ? null : countOf(s);
+	}
+
+	@Override // efficiency
+	public boolean containsKey(Object key) {
+		assert wellFormed() : "invariant false at start of containsKey";
+		int id = find(key);
+		return id >= 0 && slots[hash(id, false)] != 0;
+	}
+
+	@Override // efficiency
+	public Integer put(String key, Integer value) {
+		if (key == null)
+			throw new NullPointerException("key can't be null");
+		if (value == null || value < 1)
+			throw new IllegalArgumentException("must be positive: " + value);
+		assert wellFormed() : "invariant false at start of put()";
+		int id = dictionary.idOf(key);
+		int index = hash(id, true);
+		long s = slots[index];
+		slots[index] = pack(id, value);
+		if (isEntry(s)) {
+			assert wellFormed() : "invariant false at end of put()";
+			return countOf(s);
+		}
+		if (s == 0)
+			++numUsed;
+		++numEntries;
+		++version;
+		if (numUsed * 2 > slots.length)
+			rehash();
+		assert wellFormed() : "invariant false at end of put()";
+		return null;
+	}
+
+	/**
+	 * Add a new string to the multiset. If it already exists, increase the count
+	 * for the string and return false. Otherwise, set the count to one and return
+	 * true.
+	 *
+	 * @param str the string to add (must not be null)
+	 * @return true if str was added, false otherwise
+	 * @throws NullPointerException if str is null
+	 * @throws ArithmeticException  if the count overflows
+	 */
+	public boolean add(String str) {
+		assert wellFormed() : "invariant false at start of add";
+		if (str == null)
+			throw new NullPointerException("str is null");
+		reserve(1);
+		boolean result = addCount(dictionary.idOf(str), 1);
+		assert wellFormed() : "invariant false at end of add";
+		return result;
+	}
+
+	@Override // efficiency
+	public Integer remove(Object key) {
+		assert wellFormed() : "invariant false at start of remove";
+		int id = find(key);
+		if (id < 0)
+			return null;
+		int i = hash(id, false);
+		if (slots[i] == 0)
+			return null;
+		int count = countOf(slots[i]);
+		removeAt(i);
+		assert wellFormed() : "invariant false at end of remove";
+		return count;
+	}
+
+	/**
+	 * Remove one copy of a word from the multiset. If there are multiple copies,
+	 * then we just adjust the count, and the map is unaffected (iterators don't go
+	 * stale).
+	 *
+	 * @param str string to remove one of, may be null (but ignored if so)
+	 * @return true if the word was in the multiset.
+	 */
+	public boolean removeOne(String str) {
+		assert wellFormed() : "invariant false at start of removeOne";
+		int id = find(str);
+		if (id < 0)
+			return false;
+		int i = hash(id, false);
+		if (slots[i] == 0)
+			return false;
+		if (countOf(slots[i]) == 1)
+			removeAt(i);
+		else
+			--slots[i];
+		assert wellFormed() : "invariant false at end of removeOne";
+		return true;
+	}
+
+	@Override // efficiency
+	public void clear() {
+		assert wellFormed() : "invariant false at start of clear";
+		if (numUsed == 0)
+			return;
+		slots = new long[INITIAL_CAPACITY];
+		numUsed = 0;
+		numEntries = 0;
+		++version;
+		assert wellFormed() : "invariant false at end of clear";
+	}
+
+	/**
+	 * Return the id of a string key, or -1 if it is not a string or the
+	 * dictionary has never seen it (in which case no multiset has it).
+	 */
+	private int find(Object o) {
+		if (!(o instanceof String))
+			return -1;
+		return dictionary.find((String) o);
+	}
+
+	/**
+	 * Leave a placeholder in place of the entry at index i.
+	 */
+	private void removeAt(int i) {
+		slots[i] = PLACE_HOLDER;
+		++version;
+		--numEntries;
+	}
+
+	/**
+	 * Create a new table that is at least four times the number of entries
+	 * expected (at least INITIAL_CAPACITY), with no placeholders.
+	 */
+	private void rehash(int expected) {
+		int newSize = INITIAL_CAPACITY;
+		while (newSize < 4 * expected)
+			newSize = Primes.nextTwinPrime(newSize);
+		long[] old = slots;
+		slots = new long[newSize];
+		for (long s : old) {
+			if (isEntry(s))
+				slots[hash(idOf(s), false)] = s;
+		}
+		numUsed = numEntries;
+	}
+
+	private void rehash() {
+		rehash(numEntries);
+	}
+
+	/**
+	 * Make sure that the given number of new entries can be added without the
+	 * table becoming more than half full, rehashing at most once.
+	 */
+	private void reserve(int more) {
+		if ((numUsed + (long) more) * 2 > slots.length)
+			rehash(numEntries + more);
+	}
+
+	/**
+	 * Add to the count of an id, adding an entry if necessary. The caller must
+	 * have reserved room for a new entry.
+	 *
+	 * @return whether an entry was added
+	 */
+	private boolean addCount(int id, int count) {
+		int index = hash(id, true);
+		long s = slots[index];
+		if (isEntry(s)) {
+			slots[index] = pack(id, Math.addExact(countOf(s), count));
+			return false;
+		}
+		if (s == 0)
+			++numUsed;
+		++numEntries;
+		++version;
+		slots[index] = pack(id, count);
+		return true;
+	}
+
+	/**
+	 * Check that another multiset can be combined with this one.
+	 */
+	private void checkDictionary(InternedWordMultiset other) {
+		if (other.dictionary != dictionary)
+			throw new IllegalArgumentException("multisets use different dictionaries");
+	}
+
+	/**
+	 * Add every copy of every word in another multiset to this one, so that each
+	 * count becomes the sum of the two counts. The table is grown at most once.
+	 *
+	 * @param other multiset to add, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException     if other is null
+	 * @throws IllegalArgumentException if other uses a different dictionary
+	 * @throws ArithmeticException      if a count overflows
+	 */
+	public boolean addAll(InternedWordMultiset other) {
+		assert wellFormed() : "invariant false at start of addAll";
+		checkDictionary(other);
+		if (other.numEntries == 0)
+			return false;
+		if (other == this) {
+			for (int i = 0; i < slots.length; ++i) {
+				long s = slots[i];
+				if (isEntry(s))
+					slots[i] = pack(idOf(s), Math.addExact(countOf(s), countOf(s)));
+			}
+			return true;
+		}
+		reserve(other.numEntries);
+		for (long s : other.slots) {
+			if (isEntry(s))
+				addCount(idOf(s), countOf(s));
+		}
+		assert wellFormed() : "invariant false at end of addAll";
+		return true;
+	}
+
+	/**
+	 * Remove every copy of every word in another multiset from this one. Each
+	 * count becomes the difference of the two counts, and words whose count
+	 * would not be positive are removed.
+	 *
+	 * @param other multiset to subtract, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException     if other is null
+	 * @throws IllegalArgumentException if other uses a different dictionary
+	 */
+	public boolean subtractAll(InternedWordMultiset other) {
+		assert wellFormed() : "invariant false at start of subtractAll";
+		checkDictionary(other);
+		if (other == this) {
+			boolean result = numEntries > 0;
+			clear();
+			return result;
+		}
+		boolean result = false;
+		for (long s : other.slots) {
+			if (!isEntry(s))
+				continue;
+			int i = hash(idOf(s), false);
+			if (slots[i] == 0)
+				continue;
+			result = true;
+			if (countOf(slots[i]) > countOf(s))
+				slots[i] -= countOf(s);
+			else
+				removeAt(i);
+		}
+		assert wellFormed() : "invariant false at end of subtractAll";
+		return result;
+	}
+
+	/**
+	 * Keep only the words that are also in another multiset, each with the
+	 * smaller of the two counts.
+	 *
+	 * @param other multiset to intersect with, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException     if other is null
+	 * @throws IllegalArgumentException if other uses a different dictionary
+	 */
+	public boolean intersectMin(InternedWordMultiset other) {
+		assert wellFormed() : "invariant false at start of intersectMin";
+		checkDictionary(other);
+		if (other == this)
+			return false;
+		boolean result = false;
+		for (int i = 0; i < slots.length; ++i) {
+			long mine = slots[i];
+			if (!isEntry(mine))
+				continue;
+			long s = other.slots[other.hash(idOf(mine), false)];
+			if (s == 0) {
+				removeAt(i);
+				result = true;
+			} else if (countOf(s) < countOf(mine)) {
+				slots[i] = s;
+				result = true;
+			}
+		}
+		assert wellFormed() : "invariant false at end of intersectMin";
+		return result;
+	}
+
+	/**
+	 * Add the words of another multiset to this one, so that each count becomes
+	 * the larger of the two counts. The table is grown at most once.
+	 *
+	 * @param other multiset to combine with, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException     if other is null
+	 * @throws IllegalArgumentException if other uses a different dictionary
+	 */
+	public boolean unionMax(InternedWordMultiset other) {
+		assert wellFormed() : "invariant false at start of unionMax";
+		checkDictionary(other);
+		if (other == this)
+			return false;
+		boolean result = false;
+		reserve(other.numEntries);
+		for (long s : other.slots) {
+			if (!isEntry(s))
+				continue;
+			int i = hash(idOf(s), false);
+			if (slots[i] == 0) {
+				addCount(idOf(s), countOf(s));
+				result = true;
+			} else if (countOf(slots[i]) < countOf(s)) {
+				slots[i] = s;
+				result = true;
+			}
+		}
+		assert wellFormed() : "invariant false at end of unionMax";
+		return result;
+	}
+
+	private class MyEntry extends AbstractEntry<String, Integer> {
+		final int id;
+		int count; // last count seen, in case the entry is removed
+
+		MyEntry(int id, int count) {
+			this.id = id;
+			this.count = count;
+		}
+
+		@Override // required
+		public String getKey() {
+			return dictionary.wordOf(id);
+		}
+
+		@Override // required
+		public Integer getValue() {
+			long s = slots[hash(id, false)];
+			if (s != 0)
+				count = countOf(s);
+			return count;
+		}
+
+		@Override // implementation
+		public Integer setValue(Integer v) {
+			if (v == null || v <= 0)
+				throw new IllegalArgumentException("must be positive: " + v);
+			int i = hash(id, false);
+			if (slots[i] == 0)
+				throw new IllegalStateException("entry was removed");
+			int old = countOf(slots[i]);
+			slots[i] = pack(id, v);
+			count = v;
+			return old;
+		}
+	}
+
+	private final EntrySet entrySet = new EntrySet();
+
+	@Override // required
+	public Set<Map.Entry<String, Integer>> entrySet() {
+		assert wellFormed() : "invariant broken in entrySet";
+		return entrySet;
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Integer>> {
+		@Override // required
+		public int size() {
+			assert wellFormed() : "invariant failed in size";
+			return numEntries;
+		}
+
+		@Override // efficiency
+		public boolean contains(Object x) {
+			assert wellFormed() : "invariant broken in contains";
+			if (!(x instanceof Map.Entry<?, ?>))
+				return false;
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) x;
+			if (!(e.getValue() instanceof Integer))
+				return false;
+			return e.getValue().equals(get(e.getKey()));
+		}
+
+		@Override // efficiency
+		public boolean remove(Object x) {
+			if (!contains(x))
+				return false;
+			InternedWordMultiset.this.remove(((Map.Entry<?, ?>) x).getKey());
+			return true;
+		}
+
+		@Override // required
+		public Iterator<Map.Entry<String, Integer>> iterator() {
+			assert wellFormed() : "invariant broken in iterator";
+			return new EntrySetIterator();
+		}
+	}
+
+	private class EntrySetIterator implements Iterator<Map.Entry<String, Integer>> {
+		private int index; // slot of the current entry, or slots.length
+		private int remaining;
+		private boolean canRemove;
+		private int colVersion;
+
+		private boolean wellFormed() {
+			if (!InternedWordMultiset.this.wellFormed())
+				return false;
+			if (version != colVersion)
+				return true;
+			int r = 0;
+			if (index == slots.length) {
+				if (canRemove)
+					return report("cannot remove when no element");
+			} else {
+				if (!isEntry(slots[index]))
+					return report("index is not on an entry");
+				if (!canRemove)
+					++r;
+			}
+			for (int i = index + 1; i < slots.length; ++i) {
+				if (isEntry(slots[i]))
+					++r;
+			}
+			if (r != remaining)
+				return report("remaining claims " + remaining + ", but should be " + r);
+			return true;
+		}
+
+		private int nextSpot(int start) {
+			if (remaining == 0)
+				return slots.length;
+			do {
+				++start;
+			} while (!isEntry(slots[start]));
+			return start;
+		}
+
+		EntrySetIterator() {
+			remaining = numEntries;
+			index = nextSpot(-1);
+			canRemove = false;
+			colVersion = version;
+			assert wellFormed() : "invariant broken in iterator constructor";
+		}
+
+		private void checkVersion() {
+			if (version != colVersion)
+				throw new ConcurrentModificationException("stale");
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			assert wellFormed() : "invariant broken in hasNext";
+			checkVersion();
+			return remaining > 0;
+		}
+
+		@Override // required
+		public Entry<String, Integer> next() {
+			assert wellFormed() : "invariant broken in next";
+			checkVersion();
+			if (!hasNext())
+				throw new NoSuchElementException("no more");
+			if (!canRemove)
+				canRemove = true;
+			else
+				index = nextSpot(index);
+			--remaining;
+			assert wellFormed() : "invariant broken by next";
+			long s = slots[index];
+			return new MyEntry(idOf(s), countOf(s));
+		}
+
+		@Override // implementation
+		public void remove() {
+			assert wellFormed() : "invariant broken in remove";
+			checkVersion();
+			if (!canRemove)
+				throw new IllegalStateException("Can't remove");
+			removeAt(index);
+			canRemove = false;
+			index = nextSpot(index - 1);
+			colVersion = version;
+			assert wellFormed() : "invariant broken by remove";
+		}
+	}
+}
@@ -1,15 +1,23 @@
 package edu.uwm.cs351;
+import java.nio.charset.StandardCharsets;
+import java.text.Collator;
 import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Stack;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 //import edu.uwm.cs351.Lexicon.Node;
 
 /**
- * Set of strings, sorted lexicographically.
+ * Set of strings, sorted lexicographically, or in the order of a comparator or collator.
  */
 public class Lexicon extends AbstractSet<String> {
 	
@@ -23,10 +31,138 @@ public class Lexicon extends AbstractSet<String> {
 			return super.toString() + "'" + string + "'";
 		}
 	}
+
+	// A node of a lexicon ordered by sort keys, which keeps the key of its string.
+	private static class KeyedNode extends Node {
+		String key;
+		KeyedNode (String s, String key) {
+			super(s);
+			this.key = key;
+		}
+	}
+
+	// A node of a lexicon with LCP search, which also records the length of its
+	// common prefix with its nearest ancestors below and above it (0 if none).
+	private static class LcpNode extends Node {
+		int low, high;
+		LcpNode (String s, int low, int high) {
+			super(s);
+			this.low = low;
+			this.high = high;
+		}
+	}
+
+	/**
+	 * A search for a key down a lexicon with LCP search. It remembers the length of
+	 * the common prefix of the key with the nearest nodes passed below and above it.
+	 * Every string between those two nodes shares at least the smaller prefix with
+	 * the key, and a node also knows its own common prefix with them, so a
+	 * comparison can often be decided without looking at any characters, and
+	 * otherwise starts after the larger of the known prefixes.
+	 */
+	private static class Descent {
+		final String key;
+		int lo, hi; // common prefix with the nearest nodes passed below and above, or 0
+		int lcp; // common prefix with the node last compared
+		int scans; // comparisons that had to look at characters
+
+		Descent(String key) { this.key = key; }
+
+		/**
+		 * Compare the key with the string of a node below all the nodes passed.
+		 * @return negative, zero or positive as the key is less than, equal to
+		 * or greater than the node's string
+		 */
+		int compareTo(Node node) {
+			LcpNode n = (LcpNode)node;
+			if (lo > hi) {
+				// the key follows the lower bound further than the node does, or less far
+				if (n.low > lo) { lcp = lo; return 1; }
+				if (n.low < lo) { lcp = n.low; return -1; }
+			} else if (hi > lo) {
+				if (n.high > hi) { lcp = hi; return -1; }
+				if (n.high < hi) { lcp = n.high; return 1; }
+			}
+			++scans;
+			lcp = commonPrefix(key, n.string, Math.max(lo, hi));
+			return compareAt(key, n.string, lcp);
+		}
+
+		/**
+		 * Note that the search goes on below the node last compared: to its right if
+		 * c is positive, else to its left.
+		 */
+		void passed(int c) {
+			if (c > 0) lo = lcp;
+			else hi = lcp;
+		}
+	}
 	
+	/**
+	 * How a lexicon orders its strings. Either the strings themselves are compared,
+	 * with compareTo or a comparator, or each string has a sort key, computed once
+	 * when it is added, and the keys are compared with compareTo; a key is only
+	 * equal to another if the strings are equal in the ordering.
+	 */
+	private static final class Ordering {
+		static final Ordering NATURAL = new Ordering(null, null, null, null);
+		static final Ordering CASE_INSENSITIVE =
+				new Ordering(Lexicon::compareFolded, null, Lexicon::fold, Lexicon::fold);
+
+		final Comparator<? super String> comparator; // null for the natural order
+		final Comparator<? super String> keyOrder; // null to compare keys with compareTo
+		final Function<String,String> sortKey; // null if each string is its own key
+		// the start that the sort keys of strings with a prefix have, or null if unknown
+		final Function<String,String> prefixKey;
+
+		private Ordering(Comparator<? super String> comparator, Comparator<? super String> keyOrder,
+				Function<String,String> sortKey, Function<String,String> prefixKey) {
+			this.comparator = comparator;
+			this.keyOrder = keyOrder;
+			this.sortKey = sortKey;
+			this.prefixKey = prefixKey;
+		}
+
+		static Ordering comparing(Comparator<? super String> comparator) {
+			if (comparator == null) throw new NullPointerException("comparator is null");
+			if (comparator instanceof Collator) return collating((Collator)comparator);
+			return new Ordering(comparator, comparator, null, null);
+		}
+
+		/**
+		 * The key of a string is its collation key, with each byte as a character,
+		 * so that compareTo orders keys as CollationKey.compareTo does.
+		 * A collation key starts with the primary weights of the characters, ended
+		 * by a zero character, so the strings whose primary weights begin with
+		 * those of a prefix have keys that begin with them too.
+		 * The collator is copied, as it must not change while the lexicon uses it.
+		 */
+		static Ordering collating(Collator collator) {
+			if (collator == null) throw new NullPointerException("collator is null");
+			Collator c = (Collator)collator.clone();
+			Function<String,String> key =
+					(s) -> new String(c.getCollationKey(s).toByteArray(), StandardCharsets.ISO_8859_1);
+			return new Ordering(c, null, key, (s) -> primaryPart(key.apply(s)));
+		}
+
+		private static String primaryPart(String key) {
+			int i = 0;
+			while (i + 1 < key.length() && (key.charAt(i) != 0 || key.charAt(i+1) != 0)) i += 2;
+			return key.substring(0, i);
+		}
+	}
+
 	private Node root;
 	private int numNodes;
 	private int version;
+	private final boolean lcpSearch;
+	private final Ordering ordering;
+	private final Comparator<? super String> keyOrder; // null to compare keys with compareTo
+	private final Function<String,String> sortKey; // null if each string is its own key
+
+	private final CheckPolicy.Checker checker = CheckPolicy.getDefault().newChecker();
+	private String sliceKey; // key of the last string checked by the last slice, or null to start over
+	private int sliceCount; // strings up to sliceKey, kept up to date by sliceChanged
 	
 	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: "+ s);
 	
@@ -53,10 +189,10 @@ public class Lexicon extends AbstractSet<String> {
 	 * If a problem is found, -1 is returned and exactly one problem is reported.
 	 * <p>
 	 * @param n the root of the subtree to check
-	 * @param lo if non-null then all strings in the subtree rooted
-	 * 				at n must be [lexicographically] greater than this parameter
-	 * @param hi if non-null then all strings in the subtree rooted
-	 * 				at n must be [lexicographically] less than this parameter
+	 * @param lo if non-null then all keys in the subtree rooted
+	 * 				at n must be greater than this parameter
+	 * @param hi if non-null then all keys in the subtree rooted
+	 * 				at n must be less than this parameter
 	 * @return number of nodes in the subtree, or -1 is there is a problem.
 	 */
 	private int checkInRange(Node n, String lo, String hi)
@@ -64,18 +200,32 @@ public class Lexicon extends AbstractSet<String> {
 		//must account for checking an empty list or leaf's links
 		if (n == null) return 0;
 		if (n.string == null) return reportNeg("null word found");
+		if (sortKey != null) {
+			if (!(n instanceof KeyedNode)) return reportNeg("Node has no sort key: "+n.string);
+			if (!sortKey.apply(n.string).equals(((KeyedNode)n).key))
+				return reportNeg("Wrong sort key for "+n.string);
+		}
 		
 		//first check node r
-		if (lo != null && (n.string.equals(lo) || n.string.compareTo(lo) < 0))
+		String key = keyOf(n);
+		if (lo != null && compareKeys(key, lo) <= 0)
 			return reportNeg("Detected node outside of low bound: "+n.string);
-		if (hi != null && (n.string.equals(hi) || n.string.compareTo(hi) > 0))
+		if (hi != null && compareKeys(key, hi) >= 0)
 			return reportNeg("Detected node outside of high bound: "+n.string);
+		if (lcpSearch) {
+			if (!(n instanceof LcpNode)) return reportNeg("Node has no common prefixes: "+n.string);
+			LcpNode ln = (LcpNode)n;
+			if (ln.low != (lo == null ? 0 : commonPrefix(n.string, lo, 0)))
+				return reportNeg("Wrong common prefix with low bound: "+n.string);
+			if (ln.high != (hi == null ? 0 : commonPrefix(n.string, hi, 0)))
+				return reportNeg("Wrong common prefix with high bound: "+n.string);
+		}
 		
 		//check subtrees
-		int leftSubtree =  checkInRange(n.left, lo, n.string);
+		int leftSubtree =  checkInRange(n.left, lo, key);
 		if (leftSubtree < 0) return -1;
 		
-		int rightSubtree = checkInRange(n.right, n.string, hi);
+		int rightSubtree = checkInRange(n.right, key, hi);
 		if (rightSubtree < 0) return -1;
 				
 		//otherwise return 1 + nodes in subtrees
@@ -83,12 +233,77 @@ public class Lexicon extends AbstractSet<String> {
 	}
 	
 	/**
-	 * Check the invariant.  
+	 * Check the invariant, as much of it as the check policy asks for.
 	 * Returns false if any problem is found. 
-	 * @return whether invariant is currently true.
+	 * @return whether invariant is currently true (as far as checked).
 	 * If false is returned then exactly one problem has been reported.
 	 */
 	private boolean wellFormed() {
+		switch (checker.next()) {
+		case SKIP: return true;
+		case SLICE: return checkSlice(checker.getPolicy().getSliceSize());
+		default: return checkAll();
+		}
+	}
+
+	/**
+	 * Check the strings that follow the last one checked by the previous slice,
+	 * in order, making sure that they are increasing. When this reaches the end
+	 * it starts over, after checking that there are numNodes strings: those it
+	 * saw, plus those added (and minus those removed) at or before them during
+	 * the pass, as counted by {@link #sliceChanged}. A tree that is not in BST order has some
+	 * string out of order with the one before it, so a full pass finds it.
+	 * @param limit largest number of strings to check
+	 * @return whether the slice is correct.
+	 * If false is returned then exactly one problem has been reported.
+	 */
+	private boolean checkSlice(int limit) {
+		if (numNodes < 0) return report("numNodes is negative");
+		if ((root == null) != (numNodes == 0)) return report("root doesn't match numNodes " + numNodes);
+		// find the path to the first string whose key is after sliceKey
+		Stack<Node> path = new Stack<>();
+		int steps = 0;
+		for (Node n = root; n != null; ) {
+			if (++steps > numNodes) return report("tree is deeper than its size");
+			if (n.string == null) return report("null word found");
+			if (sliceKey == null || compareKeys(keyOf(n), sliceKey) > 0) {
+				path.push(n);
+				n = n.left;
+			}
+			else n = n.right;
+		}
+		String prev = sliceKey;
+		for (int i = 0; i < limit && !path.isEmpty(); ++i) {
+			Node n = path.pop();
+			if (prev != null && compareKeys(keyOf(n), prev) <= 0)
+				return report("Detected node out of order: " + n.string);
+			prev = keyOf(n);
+			++sliceCount;
+			for (Node p = n.right; p != null; p = p.left) {
+				if (++steps > numNodes) return report("tree is deeper than its size");
+				if (p.string == null) return report("null word found");
+				path.push(p);
+			}
+		}
+		if (!path.isEmpty()) {
+			sliceKey = prev;
+			return true;
+		}
+		// the pass is over
+		if (sliceCount != numNodes)
+			return report("numNodes is " + numNodes + " but should be " + sliceCount);
+		sliceKey = null;
+		sliceCount = 0;
+		return true;
+	}
+
+	/**
+	 * Check the whole invariant.  
+	 * Returns false if any problem is found. 
+	 * @return whether invariant is currently true.
+	 * If false is returned then exactly one problem has been reported.
+	 */
+	private boolean checkAll() {
 		int n = checkInRange(root, null, null);
 		if (n < 0) return false; // problem already reported
 		if (n != numNodes) return report("numNodes is " + numNodes + " but should be " + n);
@@ -99,10 +314,148 @@ public class Lexicon extends AbstractSet<String> {
 	 * Creates an empty lexicon.
 	 */
 	public Lexicon() {
+		this(false);
+	}
+
+	/**
+	 * Creates an empty lexicon, choosing how strings are compared while searching.
+	 * With LCP search, each node records how many leading characters it shares
+	 * with its nearest ancestors below and above it, and each search tracks the
+	 * same for the string it looks for, so that most comparisons are decided
+	 * without reading the shared prefix again. This pays off when strings share
+	 * long prefixes (paths, URLs); it costs two ints per node.
+	 * @param lcpSearch whether to skip known common prefixes when comparing
+	 */
+	public Lexicon(boolean lcpSearch) {
+		this(lcpSearch, Ordering.NATURAL);
+	}
+
+	/**
+	 * Creates an empty lexicon ordered by the given comparator: strings that it
+	 * finds equal are the same string as far as the lexicon is concerned.
+	 * The comparator is used in every comparison; if it is a {@link Collator},
+	 * this is the same as {@link #Lexicon(Collator)}.
+	 * @param comparator ordering of the strings, must not be null
+	 * @throws NullPointerException if comparator is null
+	 */
+	public Lexicon(Comparator<? super String> comparator) {
+		this(false, Ordering.comparing(comparator));
+	}
+
+	/**
+	 * Creates an empty lexicon ordered by the given collator, such as
+	 * {@code Collator.getInstance(Locale.FRENCH)}. Rather than running the collator
+	 * in every comparison, the lexicon computes the collation key of each string
+	 * once, when it is added (or looked up), and compares the keys, which is much
+	 * faster. Strings are ordered as their {@link java.text.CollationKey}s are, and
+	 * strings with equal keys are the same string here.
+	 * The collator is copied, so later changes to it do not affect the lexicon.
+	 * @param collator ordering of the strings, must not be null
+	 * @throws NullPointerException if collator is null
+	 */
+	public Lexicon(Collator collator) {
+		this(false, Ordering.collating(collator));
+	}
+
+	/**
+	 * Creates an empty lexicon that ignores case, as {@link String#CASE_INSENSITIVE_ORDER}
+	 * does, character by character. Each string is kept as first added, but
+	 * ordered by a copy of it with case folded, made once when it is added.
+	 * @return new empty case-insensitive lexicon
+	 */
+	public static Lexicon caseInsensitive() {
+		return new Lexicon(false, Ordering.CASE_INSENSITIVE);
+	}
+
+	private Lexicon(boolean lcpSearch, Ordering ordering) {
 		root = null;
 		numNodes = 0;
+		this.lcpSearch = lcpSearch;
+		this.ordering = ordering;
+		keyOrder = ordering.keyOrder;
+		sortKey = ordering.sortKey;
 		assert wellFormed() : "invariant false at end of constructor";
 	}
+
+	/**
+	 * Return the comparator that orders this lexicon, or null if it uses the
+	 * natural ordering of strings.  For a lexicon ordered by a collator, this is
+	 * a copy of the collator.
+	 * @return comparator of this lexicon, or null
+	 */
+	public Comparator<? super String> comparator() {
+		if (ordering.comparator instanceof Collator) return (Collator)((Collator)ordering.comparator).clone();
+		return ordering.comparator;
+	}
+
+	/**
+	 * Fold the case of a character, as {@link String#CASE_INSENSITIVE_ORDER} does.
+	 */
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static String fold(String s) {
+		char[] a = s.toCharArray();
+		for (int i = 0; i < a.length; ++i) a[i] = fold(a[i]);
+		return new String(a);
+	}
+
+	private static int compareFolded(String s, String t) {
+		int n = Math.min(s.length(), t.length());
+		for (int i = 0; i < n; ++i) {
+			char a = fold(s.charAt(i)), b = fold(t.charAt(i));
+			if (a != b) return a - b;
+		}
+		return s.length() - t.length();
+	}
+
+	private static String beginning(String s, int length) {
+		return s.length() > length ? s.substring(0, length) : s;
+	}
+
+	// the key that orders the string
+	private String keyFor(String s) {
+		return sortKey == null ? s : sortKey.apply(s);
+	}
+
+	private static String keyOf(Node n) {
+		return n instanceof KeyedNode ? ((KeyedNode)n).key : n.string;
+	}
+
+	private int compareKeys(String k1, String k2) {
+		return keyOrder == null ? k1.compareTo(k2) : keyOrder.compare(k1, k2);
+	}
+
+	/**
+	 * Note for the incremental check that a string with the given key was added
+	 * (change 1) or removed (change -1). If the key is at or before the last one
+	 * checked in this pass, the pass will not walk over it, so it is counted here.
+	 */
+	private void sliceChanged(String key, int change) {
+		if (sliceKey != null && compareKeys(key, sliceKey) <= 0)
+			sliceCount += change;
+	}
+
+	/**
+	 * Return the length of the common prefix of two strings, given that their
+	 * first {@code from} characters are known to be equal.
+	 */
+	private static int commonPrefix(String s, String t, int from) {
+		int n = Math.min(s.length(), t.length());
+		int i = from;
+		while (i < n && s.charAt(i) == t.charAt(i)) ++i;
+		return i;
+	}
+
+	/**
+	 * Compare two strings whose common prefix has length l, with the same sign
+	 * as {@link String#compareTo}.
+	 */
+	private static int compareAt(String s, String t, int l) {
+		if (l < s.length() && l < t.length()) return s.charAt(l) - t.charAt(l);
+		return s.length() - t.length();
+	}
 	
 
 	@Override // required
@@ -130,12 +483,9 @@ public class Lexicon extends AbstractSet<String> {
 	 */
 	public String getNext(String str) {
 		assert wellFormed() : "invariant false at start of getNext()";
-		// TODO: Implement this method using the special iterator constructor.
-		// HINT: If you add "\0" to the string and look for it with the iterator, 
-		// you are most of the way there.
 		if (str == null) throw new NullPointerException("String str is null");
-		str += "\0";
-		Iterator<String> getNext = iterator(str);
+		// not str + "\0", which a comparator or collator may find equal to str
+		Iterator<String> getNext = new MyIterator(str, true);
 		if (!getNext.hasNext()) return null;
 		return getNext.next();
 	}
@@ -151,6 +501,15 @@ public class Lexicon extends AbstractSet<String> {
 	
 	/**
 	 * Accept into the consumer all strings that start with the given prefix.
+	 * In a case-insensitive lexicon, case is ignored here too, so "Apple" starts
+	 * with "ap".  In a lexicon with a collator, a string starts with the prefix if
+	 * its primary collation weights begin with those of the prefix, ignoring accents
+	 * and case as well as the characters the collator ignores.  In a lexicon with
+	 * another comparator, a string starts with the prefix if as many of its first
+	 * characters compare equal to it; the search runs from the first string whose
+	 * beginning does not come before the prefix to the first whose beginning comes
+	 * after it, which finds them all as long as the comparator orders strings by
+	 * their beginnings first, as lexicographic and reversed orders do.
 	 * @param consumer the consumer to accept the strings
 	 * @param prefix the prefix to find all strings starting with
 	 * @throws NullPointerException if consumer or prefix is null
@@ -159,6 +518,20 @@ public class Lexicon extends AbstractSet<String> {
 		assert wellFormed() : "invariant false at start of consumeAllWithPrefix()";
 		if (consumer == null) throw new NullPointerException("Can't accept into null consumer");
 		if (prefix == null) throw new NullPointerException("Prefix can't be null");
+		if (ordering.prefixKey != null) {
+			consumeAllWithKeyPrefix(consumer, ordering.prefixKey.apply(prefix));
+			return;
+		}
+		if (ordering.comparator != null) {
+			Iterator<String> iterator = new MyIterator(prefix, ordering.comparator);
+			while (iterator.hasNext()) {
+				String s = iterator.next();
+				int c = ordering.comparator.compare(beginning(s, prefix.length()), prefix);
+				if (c > 0) break;
+				if (c == 0) consumer.accept(s);
+			}
+			return;
+		}
 		Iterator<String> iterator = iterator(prefix);
 		String toAccept = prefix;
 		while (iterator.hasNext() && toAccept.startsWith(prefix))
@@ -171,6 +544,29 @@ public class Lexicon extends AbstractSet<String> {
 		}
 	}
 	
+	/**
+	 * Accept into the consumer, in order, the strings whose sort keys start with
+	 * the given string; they come one after another.
+	 */
+	private void consumeAllWithKeyPrefix(Consumer<String> consumer, String prefix) {
+		Stack<Node> pending = new Stack<>();
+		for (Node n = root; n != null; ) {
+			if (keyOf(n).compareTo(prefix) >= 0) {
+				pending.push(n);
+				n = n.left;
+			}
+			else n = n.right;
+		}
+		int v = version;
+		while (!pending.isEmpty()) {
+			Node n = pending.pop();
+			if (!keyOf(n).startsWith(prefix)) break;
+			consumer.accept(n.string);
+			if (version != v) throw new ConcurrentModificationException("lexicon changed while consuming");
+			for (Node p = n.right; p != null; p = p.left) pending.push(p);
+		}
+	}
+
 	@Override //efficiency
 	public boolean contains(Object o)
 		{
@@ -179,8 +575,124 @@ public class Lexicon extends AbstractSet<String> {
 		String toFind = (String)o;
 		return find(root, toFind) != null;
 		}
-	
-	
+
+	/**
+	 * Look up a whole sorted batch of strings at once. Instead of descending from
+	 * the root for each string, the batch is split at each node into the strings
+	 * less than, equal to and greater than it, and each part continues into its
+	 * subtree; so the path shared by nearby strings is walked only once, and no
+	 * node is visited twice.
+	 * @param sortedBatch strings to look up, in non-decreasing order of this lexicon
+	 * (duplicates allowed)
+	 * @param out where to record, for each string of the batch, whether it is in this lexicon;
+	 * must be at least as long as the batch
+	 * @return number of strings of the batch that are in this lexicon
+	 * @throws NullPointerException if either array or any string of the batch is null
+	 * @throws IllegalArgumentException if the batch is not sorted, or out is too short
+	 */
+	public int containsAll(String[] sortedBatch, boolean[] out) {
+		assert wellFormed() : "invariant false at start of containsAll()";
+		if (sortedBatch == null || out == null) throw new NullPointerException("batch and out must not be null");
+		if (out.length < sortedBatch.length) throw new IllegalArgumentException("out is shorter than the batch");
+		String[] keys = sortKey == null ? sortedBatch : new String[sortedBatch.length];
+		for (int i = 0; i < sortedBatch.length; ++i) {
+			if (sortedBatch[i] == null) throw new NullPointerException("batch contains null");
+			if (sortKey != null) keys[i] = sortKey.apply(sortedBatch[i]);
+			if (i > 0 && compareKeys(keys[i-1], keys[i]) > 0)
+				throw new IllegalArgumentException("batch is not sorted at index " + i);
+		}
+		return resolve(root, keys, 0, keys.length, out);
+	}
+
+	/**
+	 * Resolve the keys batch[lo,hi) in the subtree rooted at n, where all of them belong.
+	 * The smaller part of each split is resolved recursively and the larger in
+	 * the loop, so the recursion is never deeper than log(hi-lo), however
+	 * unbalanced the tree is.
+	 * @return number of strings found
+	 */
+	private int resolve(Node n, String[] batch, int lo, int hi, boolean[] out) {
+		int found = 0;
+		while (lo < hi) {
+			if (n == null) {
+				for (int i = lo; i < hi; ++i) out[i] = false;
+				break;
+			}
+			// [lo,eq) is less than the key of n, [eq,gt) equal to it, [gt,hi) greater
+			String key = keyOf(n);
+			int eq = lowerBound(batch, lo, hi, key);
+			int gt = eq;
+			while (gt < hi && compareKeys(batch[gt], key) == 0) out[gt++] = true;
+			found += gt - eq;
+			if (eq - lo < hi - gt) {
+				found += resolve(n.left, batch, lo, eq, out);
+				lo = gt;
+				n = n.right;
+			} else {
+				found += resolve(n.right, batch, gt, hi, out);
+				hi = eq;
+				n = n.left;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Return the first index in batch[lo,hi) of a key not less than k, or hi.
+	 */
+	private int lowerBound(String[] batch, int lo, int hi, String k) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compareKeys(batch[mid], k) < 0) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Return the strings of the collection that are in this lexicon, in the order
+	 * of the collection (with any duplicates). The strings are sorted once and
+	 * looked up together, as by {@link #containsAll(String[], boolean[])}.
+	 * @param strings strings to look up, must not be null or contain null
+	 * @return new list of the strings present
+	 * @throws NullPointerException if the collection or any of its strings is null
+	 */
+	public List<String> filterPresent(Collection<String> strings) {
+		assert wellFormed() : "invariant false at start of filterPresent()";
+		if (strings == null) throw new NullPointerException("strings must not be null");
+		String[] given = strings.toArray(new String[0]);
+		String[] keys = new String[given.length];
+		for (int i = 0; i < given.length; ++i) {
+			if (given[i] == null) throw new NullPointerException("strings contains null");
+			keys[i] = keyFor(given[i]);
+		}
+		String[] sorted = keys.clone();
+		Arrays.sort(sorted, keyOrder);
+		boolean[] present = new boolean[sorted.length];
+		resolve(root, sorted, 0, sorted.length, present);
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < given.length; ++i)
+			if (present[Arrays.binarySearch(sorted, keys[i], keyOrder)]) result.add(given[i]);
+		return result;
+	}
+
+	/**
+	 * Return a read-only copy of this lexicon as a minimal automaton, which shares
+	 * common prefixes and suffixes and so takes much less memory.  Later changes
+	 * to this lexicon do not affect the copy.
+	 * @return new frozen lexicon with the strings of this one
+	 * @throws IllegalStateException if this lexicon is not in the natural order
+	 * of strings, which is the only order of a frozen lexicon
+	 */
+	public FrozenLexicon freeze() {
+		assert wellFormed() : "invariant false at start of freeze()";
+		if (ordering != Ordering.NATURAL) throw new IllegalStateException("only a lexicon in natural order can be frozen");
+		FrozenLexicon.Builder builder = new FrozenLexicon.Builder();
+		for (String s : this) builder.add(s);
+		return builder.build();
+	}
+
+
 	/**
 	 * Add a new string to the lexicon. If it already exists, do nothing and return false.
 	 * @param str the string to add (must not be null)
@@ -192,23 +704,36 @@ public class Lexicon extends AbstractSet<String> {
 		assert wellFormed() : "invariant false at start of add()";
 		boolean result = false;
 		if (str == null) throw new NullPointerException("Cannot add null.");
+		if (lcpSearch) {
+			result = addLcp(str);
+			assert wellFormed() : "invariant false at end of add()";
+			return result;
+		}
 		Node n = root;
 		Node lag = null;
+		String key = keyFor(str);
+		int c = 0;
+		int depth = 0;
 		while (n != null) {
-			if (n.string.equals(str)) break;
+			++depth;
+			c = compareKeys(key, keyOf(n));
+			if (c == 0) break;
 			lag = n;
-			if (str.compareTo(n.string) > 0) n = n.right;
+			if (c > 0) n = n.right;
 			else n = n.left;
 		}
+		// one comparison for each node reached, which also places the new node
+		if (CollectionMetrics.ENABLED) CollectionMetrics.get().recordSearch(depth, depth);
 		if (n == null) {
-			n = new Node(str);
+			n = sortKey == null ? new Node(str) : new KeyedNode(str, key);
 			if (lag == null)
 				root = n;
-			else if (str.compareTo(lag.string) > 0)
+			else if (c > 0)
 				lag.right = n;
 			else
 				lag.left = n;
 			++numNodes;
+			sliceChanged(key, 1);
 			result = true;
 			++version;
 		}
@@ -216,6 +741,40 @@ public class Lexicon extends AbstractSet<String> {
 		return result;
 	}
 	
+/**
+ * Add a string to a lexicon with LCP search, recording in the new node its
+ * common prefixes with the nodes passed, which are exactly its nearest
+ * ancestors below and above.
+ * @return true if str was added, false if it was there already
+ */
+private boolean addLcp(String str)
+	{
+	Descent d = new Descent(str);
+	Node n = root;
+	Node lag = null;
+	int c = 0;
+	int depth = 0;
+	while (n != null)
+		{
+		++depth;
+		c = d.compareTo(n);
+		if (c == 0) break;
+		d.passed(c);
+		lag = n;
+		n = c > 0 ? n.right : n.left;
+		}
+	if (CollectionMetrics.ENABLED) CollectionMetrics.get().recordSearch(depth, d.scans);
+	if (n != null) return false;
+	n = new LcpNode(str, d.lo, d.hi);
+	if (lag == null) root = n;
+	else if (c > 0) lag.right = n;
+	else lag.left = n;
+	++numNodes;
+	sliceChanged(str, 1);
+	++version;
+	return true;
+	}
+
 @Override //efficiency
 public boolean remove(Object x)
 	{
@@ -223,9 +782,22 @@ public boolean remove(Object x)
 	if (!(x instanceof String)) return false;
 	String toRemove = (String)x;
 	int oldSize = numNodes;
+	if (lcpSearch)
+		{
+		if (removeLcp(toRemove))
+			{
+			++version;
+			--numNodes;
+			sliceChanged(toRemove, -1);
+			return true;
+			}
+		assert wellFormed() : "invariant failed at end of remove";
+		return false;
+		}
 	Node remove = find(root, toRemove);
 	if (remove != null) 
 		{
+		sliceChanged(keyOf(remove), -1); // before doRemove, which may move strings between nodes
 		doRemove(remove, root);
 		++version;
 		--numNodes;
@@ -237,21 +809,141 @@ public boolean remove(Object x)
 
 private Node find(Node current, String find) 
 	{
-	if (current == null) return null;
+	if (lcpSearch) return findLcp(current, find);
+	return find(current, keyFor(find), 0);
+	}
+
+private Node findLcp(Node current, String find)
+	{
+	Descent d = new Descent(find);
+	int depth = 0;
+	while (current != null)
+		{
+		++depth;
+		int c = d.compareTo(current);
+		if (c == 0) break;
+		d.passed(c);
+		current = c > 0 ? current.right : current.left;
+		}
+	if (CollectionMetrics.ENABLED) CollectionMetrics.get().recordSearch(depth, d.scans);
+	return current;
+	}
+
+/**
+ * Remove a string from a lexicon with LCP search. As in doRemove, a node with
+ * two children takes the string of its predecessor, which is unlinked instead.
+ * Either way some nodes get a new nearest ancestor on one side, and their
+ * common prefix with it is recomputed: those on the spine of the subtree that
+ * moves up (or of the subtrees of the node whose string changed) that faces
+ * the removed node.
+ * @return whether the string was found and removed
+ */
+private boolean removeLcp(String key)
+	{
+	Descent d = new Descent(key);
+	Node lower = null, upper = null; // nearest ancestors below and above
+	Node parent = null;
+	Node n = root;
+	int depth = 0;
+	while (n != null)
+		{
+		++depth;
+		int c = d.compareTo(n);
+		if (c == 0) break;
+		d.passed(c);
+		parent = n;
+		if (c > 0)
+			{
+			lower = n;
+			n = n.right;
+			}
+		else
+			{
+			upper = n;
+			n = n.left;
+			}
+		}
+	if (CollectionMetrics.ENABLED) CollectionMetrics.get().recordSearch(depth, d.scans);
+	if (n == null) return false;
+	if (n.left != null && n.right != null)
+		{
+		Node predParent = n;
+		Node pred = n.left;
+		while (pred.right != null)
+			{
+			predParent = pred;
+			pred = pred.right;
+			}
+		if (predParent == n) n.left = pred.left;
+		else predParent.right = pred.left;
+		// For strings a < b < c, lcp(a,c) = min(lcp(a,b), lcp(b,c)), so
+		// lcp(a,b) >= lcp(a,c): this bounds or gives each new common prefix.
+		String s = pred.string;
+		LcpNode ln = (LcpNode)n;
+		int shared = commonPrefix(s, n.string, 0);
+		n.string = s;
+		if (lower != null) ln.low = commonPrefix(s, lower.string, ln.low);
+		ln.high = Math.min(shared, ln.high);
+		for (Node p = n.left; p != null; p = p.right)
+			{
+			LcpNode lp = (LcpNode)p;
+			lp.high = commonPrefix(p.string, s, lp.high);
+			}
+		for (Node p = n.right; p != null; p = p.left)
+			{
+			LcpNode lp = (LcpNode)p;
+			lp.low = Math.min(shared, lp.low);
+			}
+		}
+	else
+		{
+		Node child = n.left != null ? n.left : n.right;
+		if (parent == null) root = child;
+		else if (parent.left == n) parent.left = child;
+		else parent.right = child;
+		// the spine of the child facing n had n as its nearest ancestor on that side,
+		// and now has n's; with p < n < upper, lcp(p,upper) = min(lcp(p,n), lcp(n,upper))
+		LcpNode ln = (LcpNode)n;
+		if (child != null && child == n.left)
+			for (Node p = child; p != null; p = p.right)
+				{
+				LcpNode lp = (LcpNode)p;
+				lp.high = Math.min(lp.high, ln.high);
+				}
+		else
+			for (Node p = child; p != null; p = p.left)
+				{
+				LcpNode lp = (LcpNode)p;
+				lp.low = Math.min(lp.low, ln.low);
+				}
+		}
+	return true;
+	}
+
+// find is the key looked for; depth is the number of nodes compared so far,
+// recorded in the metrics when the search ends
+private Node find(Node current, String find, int depth) 
+	{
+	if (current == null)
+		{
+		if (CollectionMetrics.ENABLED) CollectionMetrics.get().recordSearch(depth, depth);
+		return null;
+		}
 	
-	int c = find.compareTo(current.string);
+	int c = compareKeys(find, keyOf(current));
 
 	if (c == 0)
 		{
+		if (CollectionMetrics.ENABLED) CollectionMetrics.get().recordSearch(depth + 1, depth + 1);
 		return current;
 		}
 	else if (c > 0)
 		{
-		return find(current.right, find);
+		return find(current.right, find, depth + 1);
 		}
 	else if (c < 0)
 		{
-		return find(current.left, find);
+		return find(current.left, find, depth + 1);
 		}
 	return null;
 	}
@@ -267,6 +959,7 @@ if (remove.left != null && remove.right != null)
 		immPre = immPre.right;
 		}
 	remove.string = immPre.string;
+	if (remove instanceof KeyedNode) ((KeyedNode)remove).key = ((KeyedNode)immPre).key;
 	doRemove(immPre, remove);
 	return;
 	}
@@ -284,7 +977,7 @@ else //promote child AND cut off
 		boolean left = false;
 		while (prev != null)
 			{
-			int c = remove.string.compareTo(prev.string);
+			int c = compareKeys(keyOf(remove), keyOf(prev));
 			if (c > 0)
 				{
 				if (prev.right == remove) break;
@@ -357,6 +1050,7 @@ else //promote child AND cut off
 		
 		private boolean wellFormed() {
 			if (!Lexicon.this.wellFormed()) return false;
+			if (!checker.lastWasFull()) return true;
 			if (version != colVersion) return true;
 			Node prev = null;
 			// stack iterator starts at BOTTOM
@@ -380,7 +1074,7 @@ else //promote child AND cut off
 		 * Start the iterator at the first (lexicographically) node.
 		 */
 		public MyIterator() {
-			this("");
+			pushLeft(root);
 			assert wellFormed() : "Iterator messed up after default constructor";
 		}
 		
@@ -391,30 +1085,68 @@ else //promote child AND cut off
 		 */
 		public MyIterator(String initial) 
 		{
-			// TODO Set up an iterator starting with given (non-null) string.
+			this(initial, false);
+		}
+
+		/**
+		 * Start the iterator at the first element after this one, if after is true,
+		 * otherwise at this element or the first after it.
+		 * @param initial string to start at, must not be null
+		 * @param after whether to skip an element equal to initial
+		 */
+		MyIterator(String initial, boolean after)
+		{
 			// NB: Do not attempt to use {@link #getNext} or any other method 
 			// of the main class to help.  All the work needs to be done here 
 			// so that the pending stack is set up correctly.
 			if (root == null) return;
-			traverseBST(initial, root);
+			traverseBST(lcpSearch ? new Descent(initial) : null, keyFor(initial), after ? 1 : 0, root);
 			colVersion = version;
 			assert wellFormed() : "Iterator messed up after special constructor";
 		}
 		
-		private void traverseBST(String initial, Node n){
+		/**
+		 * Start the iterator at the first element whose beginning, as long as the
+		 * prefix, does not come before the prefix in the given order.
+		 * @param prefix prefix to look for, must not be null
+		 * @param order ordering of beginnings, consistent with the lexicon's
+		 */
+		MyIterator(String prefix, Comparator<? super String> order)
+		{
+			for (Node n = root; n != null; ) {
+				if (order.compare(beginning(n.string, prefix.length()), prefix) >= 0) {
+					pending.push(n);
+					n = n.left;
+				}
+				else n = n.right;
+			}
+			assert wellFormed() : "Iterator messed up after prefix constructor";
+		}
+
+		// d is the descent for initial in a lexicon with LCP search, else null;
+		// initial is a key, and nodes that compare with it at least min are pending
+		private void traverseBST(Descent d, String initial, int min, Node n){
 		if (n == null) return;
-		if (n.string.compareTo(initial) >= 0)
+		int c = d == null ? compareKeys(keyOf(n), initial) : -d.compareTo(n);
+		if (c >= min)
 			{
+			if (d != null) d.passed(-1);
 			pending.push(n);
-			traverseBST(initial, n.left);
+			traverseBST(d, initial, min, n.left);
 			}
 		else if (n.right != null)
 			{
-			traverseBST(initial, n.right);
+			if (d != null) d.passed(1);
+			traverseBST(d, initial, min, n.right);
 			}
 		
 		}
 
+		// n and the nodes down its left, which all come before it
+		private void pushLeft(Node n){
+		for (; n != null; n = n.left) pending.push(n);
+		}
+
 		@Override
 		public boolean hasNext() 
 		{
@@ -430,7 +1162,7 @@ else //promote child AND cut off
 		if (!hasNext()) throw new NoSuchElementException("no next value");
 		Node toReturn = pending.pop();
 		current = toReturn;
-		traverseBST("", toReturn.right);
+		pushLeft(toReturn.right);
 		return toReturn.string;
 		}
 
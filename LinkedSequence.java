@@ -1,8 +1,17 @@
 package edu.uwm.cs351;
 
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class LinkedSequence<E> implements Cloneable {
+public class LinkedSequence<E> implements Cloneable, Iterable<E> {
 	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
 
 	/**
@@ -36,6 +45,15 @@ public class LinkedSequence<E> implements Cloneable {
 	private Node<E> tail;
 	private int size;
 	private Node<E> precursor;
+	private int version; // changed whenever elements are added or removed
+	private Node<E> pool; // removed nodes kept for reuse, linked through next
+	private int poolSize;
+	private int poolCapacity; // zero unless pooling has been turned on
+
+	private CheckPolicy.Checker checker = CheckPolicy.getDefault().newChecker();
+	private Node<E> sliceNode; // last node checked in this pass, or null to start one
+	private int sliceCount; // nodes up to sliceNode, or -1 if not known in this pass
+	private boolean sliceHasPrecursor; // whether precursor is at or before sliceNode
 
 	private Node<E> getHead() {
 		return getDummy().next;
@@ -55,13 +73,116 @@ public class LinkedSequence<E> implements Cloneable {
 	}
 
 	/**
-	 * Check the invariant. Report any problem precisely once. Return false if any
-	 * problem is found. Returning an informative {@link #report(String)} will make
-	 * it easier to debug invariant problems.
+	 * Check the invariant, as much of it as the check policy asks for. Report any
+	 * problem precisely once. Return false if any problem is found.
 	 * 
-	 * @return whether invariant is currently true
+	 * @return whether invariant is currently true (as far as checked)
 	 */
 	private boolean wellFormed() {
+		switch (checker.next()) {
+		case SKIP:
+			return true;
+		case SLICE:
+			return checkSlice(checker.getPolicy().getSliceSize());
+		default:
+			return checkAll();
+		}
+	}
+
+	/**
+	 * Check the parts of the invariant that take constant time (1, 2 and the
+	 * pool's size), then follow the links of the next nodes, resuming where the
+	 * previous slice stopped. Changes keep the saved node in the list (see
+	 * {@link #sliceLinked} and {@link #sliceUnlinking}) and keep the count of
+	 * nodes up to it, when they can tell which side of it they were on. When the
+	 * walk gets back to the dummy, the pass is over; if the count is still known,
+	 * it must be size (4), and the last node must be the tail. Whether precursor
+	 * is in the list (5) is only checked by full checks.
+	 * 
+	 * @param limit largest number of nodes to visit
+	 * @return whether the slice is correct
+	 */
+	private boolean checkSlice(int limit) {
+		if (tail == null)
+			return report("tail is null");
+		if (tail.next == null)
+			return report("tail.next is null");
+		Node<E> dummy = getDummy();
+		if (dummy.data != dummy)
+			return report("dummy has bad data");
+		if (precursor == null || precursor.next == null)
+			return report("precursor is null or points to null");
+		if (poolSize < 0 || poolSize > poolCapacity)
+			return report("poolSize " + poolSize + " is out of range");
+		if (sliceNode == null) {
+			sliceNode = dummy;
+			sliceCount = 0;
+			sliceHasPrecursor = precursor == dummy;
+		}
+		Node<E> n = sliceNode;
+		for (int i = 0; i < limit; ++i) {
+			Node<E> next = n.next;
+			if (next == null)
+				return report("Node within list points to null");
+			if (next == dummy) {
+				// the pass is over
+				if (sliceCount >= 0 && sliceCount != size)
+					return report("size is incorrect");
+				if (sliceCount >= 0 && n != tail && size > 0)
+					return report("tail is not the last node");
+				sliceNode = dummy;
+				sliceCount = 0;
+				sliceHasPrecursor = precursor == dummy;
+				return true;
+			}
+			if (sliceCount >= 0 && ++sliceCount > size)
+				return report("list is longer than size, or incorrectly cyclic");
+			n = next;
+			if (n == precursor)
+				sliceHasPrecursor = true;
+		}
+		sliceNode = n;
+		return true;
+	}
+
+	/**
+	 * Note for the incremental check that count nodes are being linked in just
+	 * after the precursor, with no check in between. If the precursor comes before the last node
+	 * checked, the new nodes will not be walked in this pass, so they are counted
+	 * now.
+	 * 
+	 * @return whether the new nodes come before the last node checked
+	 */
+	private boolean sliceLinked(int count) {
+		if (sliceNode == null || !sliceHasPrecursor || precursor == sliceNode)
+			return false;
+		if (sliceCount >= 0)
+			sliceCount += count;
+		return true;
+	}
+
+	/**
+	 * Note for the incremental check that the node after the precursor is about
+	 * to be unlinked, with no check in between. If it was counted, it no longer is, and if it is the last
+	 * node checked, the walk will resume from the precursor.
+	 */
+	private void sliceUnlinking(Node<E> removed) {
+		if (removed == sliceNode)
+			sliceNode = precursor;
+		else if (sliceNode == null || !sliceHasPrecursor || precursor == sliceNode)
+			return;
+		if (sliceCount >= 0)
+			--sliceCount;
+	}
+
+	/**
+	 * Check the whole invariant. Report any problem precisely once. Return false
+	 * if any problem is found. Returning an informative {@link #report(String)}
+	 * will make it easier to debug invariant problems.
+	 * 
+	 * @return whether invariant is currently true
+	 */
+	private boolean checkAll() {
 		// Invariant:
 
 		// 1. tail node is not null, and the dummy (next after tail) should not be null
@@ -139,6 +260,17 @@ public class LinkedSequence<E> implements Cloneable {
 			c = c.next;
 		} while (c != getDummy());
 
+		// 6. The pool has poolSize nodes, at most poolCapacity, with no data.
+		int pooled = 0;
+		for (Node<E> p = pool; p != null; p = p.next) {
+			if (++pooled > poolCapacity)
+				return report("pool is larger than its capacity " + poolCapacity);
+			if (p.data != null)
+				return report("pooled node still has data");
+		}
+		if (pooled != poolSize)
+			return report("poolSize is " + poolSize + " but pool has " + pooled);
+
 		// If no problems found, then return true:
 		return true;
 	}
@@ -185,6 +317,7 @@ public class LinkedSequence<E> implements Cloneable {
 		assert wellFormed() : "invariant wrong at start of start()";
 		if (size() > 0) {
 			precursor = getDummy();
+			sliceHasPrecursor = true;
 		}
 		assert wellFormed() : "invariant wrong at end of start()";
 	}
@@ -237,6 +370,8 @@ public class LinkedSequence<E> implements Cloneable {
 		assert wellFormed() : "invariant wrong at start of advance()";
 		if (!isCurrent())
 			throw new IllegalStateException("no current Node");
+		if (precursor == sliceNode)
+			sliceHasPrecursor = false;
 		precursor = precursor.next;
 		assert wellFormed() : "invariant wrong at end of advance()";
 	}
@@ -257,13 +392,17 @@ public class LinkedSequence<E> implements Cloneable {
 		assert wellFormed() : "invariant wrong at start of removeCurrent()";
 		if (!isCurrent())
 			throw new IllegalStateException("no current Node");
-		if (getCursor() == tail) {
+		Node<E> removed = getCursor();
+		sliceUnlinking(removed);
+		if (removed == tail) {
 			precursor.next = tail.next;
 			tail = precursor;
 		} else {
-			precursor.next = getCursor().next;
+			precursor.next = removed.next;
 		}
+		recycle(removed);
 		--size;
+		++version;
 		assert wellFormed() : "invariant wrong at end of removeCurrent()";
 	}
 
@@ -284,7 +423,7 @@ public class LinkedSequence<E> implements Cloneable {
 	 **/
 	public void insert(E element) {
 		assert wellFormed() : "invariant failed at start of insert";
-		Node<E> insert = new Node<E>(element, null);
+		Node<E> insert = newNode(element);
 		if (isCurrent()) {
 			insert.next = getCursor();
 			precursor.next = insert;
@@ -304,7 +443,9 @@ public class LinkedSequence<E> implements Cloneable {
 			}
 
 		}
+		sliceLinked(1); // in every case, the new node went after the precursor
 		++size;
+		++version;
 		assert wellFormed() : "invariant failed at end of insert";
 	}
 
@@ -325,22 +466,303 @@ public class LinkedSequence<E> implements Cloneable {
 		assert wellFormed() : "invariant failed at start of insertAll";
 		if (addend == null)
 			throw new NullPointerException("addend is null");
-		if (addend.size() == 0)
+		if (addend.size == 0)
+			return;
+		long start = CollectionMetrics.ENABLED ? System.nanoTime() : 0;
+		// copy the addend's nodes into a new chain, then link it in
+		Node<E> first = newNode(addend.getHead().data);
+		Node<E> last = first;
+		for (Node<E> n = addend.getHead().next; n != addend.getDummy(); n = n.next) {
+			last.next = newNode(n.data);
+			last = last.next;
+		}
+		splice(first, last, addend.size);
+		if (CollectionMetrics.ENABLED)
+			CollectionMetrics.get().recordInsertAll(addend.size, System.nanoTime() - start);
+		assert wellFormed() : "invariant failed at end of insertAll";
+	}
+
+	/**
+	 * Move all the elements of another sequence into this sequence before the
+	 * current element (if any), leaving the other sequence empty. No elements are
+	 * copied: the other sequence's nodes are linked into this one, which takes
+	 * constant time.
+	 * 
+	 * @param other a sequence whose contents will be moved into this sequence
+	 * @precondition The parameter, other, is not null and is not this sequence.
+	 * @postcondition The elements from other have been placed into this sequence.
+	 *                The current element of this sequence (if any) is unchanged.
+	 *                The other sequence is empty.
+	 * @exception NullPointerException     Indicates that other is null.
+	 * @exception IllegalArgumentException Indicates that other is this sequence.
+	 **/
+	public void transferAll(LinkedSequence<E> other) {
+		assert wellFormed() : "invariant failed at start of transferAll";
+		if (other == null)
+			throw new NullPointerException("other is null");
+		if (other == this)
+			throw new IllegalArgumentException("cannot transfer a sequence into itself");
+		assert other.wellFormed() : "invariant of other failed at start of transferAll";
+		if (other.size == 0)
+			return;
+		Node<E> first = other.getHead();
+		Node<E> last = other.tail;
+		int count = other.size;
+		Node<E> otherDummy = other.getDummy();
+		otherDummy.next = otherDummy;
+		other.tail = otherDummy;
+		other.precursor = otherDummy;
+		other.size = 0;
+		other.sliceNode = null;
+		++other.version;
+		splice(first, last, count);
+		assert other.wellFormed() : "invariant of other failed at end of transferAll";
+		assert wellFormed() : "invariant failed at end of transferAll";
+	}
+
+	/**
+	 * Link a chain of nodes (not in any sequence) into this sequence before the
+	 * current element, or at the end if there is none. The current element does
+	 * not change.
+	 * 
+	 * @param first first node of the chain
+	 * @param last  last node of the chain, reachable from first
+	 * @param count number of nodes in the chain
+	 */
+	private void splice(Node<E> first, Node<E> last, int count) {
+		boolean current = isCurrent();
+		// the precursor becomes last, which is checked in this pass if the chain is
+		sliceHasPrecursor = sliceLinked(count);
+		if (current) {
+			last.next = precursor.next;
+			precursor.next = first;
+			precursor = last;
+		} else {
+			Node<E> dummy = getDummy();
+			Node<E> end = isEmpty() ? dummy : tail;
+			end.next = first;
+			last.next = dummy;
+			tail = last;
+			precursor = last;
+		}
+		size += count;
+		++version;
+	}
+
+	/**
+	 * Sort the elements of this sequence with a stable, bottom-up merge sort that
+	 * relinks the existing nodes, taking O(n log n) time and no extra space. The
+	 * current element (if any) is still the current element afterwards, at its
+	 * new position; if there was none, there still is none.
+	 * 
+	 * @param comp comparator for the elements, or null to use their natural
+	 *             ordering
+	 * @postcondition The elements are in non-decreasing order, and equal elements
+	 *                keep their relative order. If the comparator throws an
+	 *                exception, the sequence has the same elements in an
+	 *                unspecified order.
+	 * @exception ClassCastException Indicates that comp is null and the elements
+	 *                               are not mutually comparable.
+	 **/
+	@SuppressWarnings("unchecked")
+	public void sort(Comparator<? super E> comp) {
+		assert wellFormed() : "invariant failed at start of sort";
+		if (size < 2)
 			return;
-		LinkedSequence<E> copy = addend.clone();
-		if (this.isCurrent()) {
-			for (Node<E> n = copy.getHead(); n != copy.getDummy(); n = n.next) {
-				this.insert(n.data);
-				this.precursor = this.precursor.next;
+		Comparator<? super E> c = comp != null ? comp : (x, y) -> ((Comparable<? super E>) x).compareTo(y);
+		Node<E> current = isCurrent() ? getCursor() : null;
+		Node<E> dummy = getDummy();
+		tail.next = null; // the chain after the dummy is null-terminated while sorting
+		for (int width = 1;; width *= 2) {
+			Node<E> build = dummy; // last node of the merged runs so far
+			Node<E> rest = dummy.next;
+			while (rest != null) {
+				Node<E> a = rest;
+				Node<E> b = cut(a, width);
+				rest = cut(b, width);
+				try {
+					while (a != null && b != null) {
+						if (c.compare(b.data, a.data) < 0) {
+							build.next = b;
+							b = b.next;
+						} else {
+							build.next = a;
+							a = a.next;
+						}
+						build = build.next;
+					}
+				} catch (RuntimeException | Error e) {
+					// put back every node, in whatever order they are now
+					build = append(append(append(build, a), b), rest);
+					relink(dummy, build, current);
+					throw e;
+				}
+				build = append(build, a != null ? a : b);
 			}
+			// compared this way so that the last width can't overflow when doubled
+			if (width >= size - width)
+				break;
+		}
+		Node<E> last = dummy;
+		while (last.next != null)
+			last = last.next;
+		relink(dummy, last, current);
+		assert wellFormed() : "invariant failed at end of sort";
+	}
+
+	/**
+	 * Cut a null-terminated chain after the given number of nodes.
+	 * 
+	 * @return the rest of the chain, or null if it was no longer than count
+	 */
+	private static <X> Node<X> cut(Node<X> first, int count) {
+		for (int i = 1; first != null && i < count; ++i)
+			first = first.next;
+		if (first == null)
+			return null;
+		Node<X> rest = first.next;
+		first.next = null;
+		return rest;
+	}
+
+	/**
+	 * Link a null-terminated chain (which may be empty) after the given node.
+	 * 
+	 * @return the last node of the chain, or the given node if the chain is empty
+	 */
+	private static <X> Node<X> append(Node<X> last, Node<X> chain) {
+		last.next = chain;
+		while (last.next != null)
+			last = last.next;
+		return last;
+	}
+
+	/**
+	 * Close the cycle after the chain has been rearranged, and restore tail and
+	 * precursor.
+	 * 
+	 * @param dummy   the dummy node (which tail no longer leads to)
+	 * @param last    the last node of the chain after the dummy
+	 * @param current the node that should be current, or null for none
+	 */
+	private void relink(Node<E> dummy, Node<E> last, Node<E> current) {
+		sliceCount = -1; // the nodes have moved around the last one checked
+		last.next = dummy;
+		tail = last;
+		if (current == null) {
+			precursor = tail;
 		} else {
-			for (Node<E> n = copy.getHead(); n != copy.getDummy(); n = n.next) {
-				this.insert(n.data);
-				this.precursor = this.precursor.next;
+			precursor = dummy;
+			while (precursor.next != current)
+				precursor = precursor.next;
+		}
+		++version;
+	}
+
+	/**
+	 * Remove every element that satisfies the predicate, in one pass. If the
+	 * current element is removed, the next element that remains becomes current
+	 * (as with removeCurrent); otherwise the current element does not change.
+	 * 
+	 * @param filter predicate that is true for the elements to remove
+	 * @return whether any element was removed
+	 * @exception NullPointerException Indicates that filter is null.
+	 **/
+	public boolean removeIf(Predicate<? super E> filter) {
+		assert wellFormed() : "invariant failed at start of removeIf";
+		if (filter == null)
+			throw new NullPointerException("filter is null");
+		int oldSize = size;
+		Node<E> dummy = getDummy();
+		Node<E> prev = dummy;
+		while (prev.next != dummy) {
+			Node<E> n = prev.next;
+			if (!filter.test(n.data)) {
+				prev = n;
+				continue;
 			}
-			this.precursor = this.tail;
+			prev.next = n.next;
+			if (tail == n)
+				tail = prev;
+			if (precursor == n)
+				precursor = prev;
+			if (sliceNode == n)
+				sliceNode = prev;
+			sliceCount = -1;
+			recycle(n);
+			--size;
+			++version;
+		}
+		assert wellFormed() : "invariant failed at end of removeIf";
+		return size != oldSize;
+	}
+
+	/**
+	 * Replace each element with the result of applying the operator to it, in
+	 * one pass. The nodes, and so the current element, are unchanged.
+	 * 
+	 * @param operator operator to apply to each element
+	 * @exception NullPointerException Indicates that operator is null.
+	 **/
+	public void replaceAll(UnaryOperator<E> operator) {
+		assert wellFormed() : "invariant failed at start of replaceAll";
+		if (operator == null)
+			throw new NullPointerException("operator is null");
+		Node<E> dummy = getDummy();
+		for (Node<E> n = dummy.next; n != dummy; n = n.next)
+			n.data = operator.apply(n.data);
+		assert wellFormed() : "invariant failed at end of replaceAll";
+	}
+
+	/**
+	 * Turn on (or off) reuse of removed nodes. While the pool capacity is
+	 * positive, up to that many nodes removed by removeCurrent or removeIf are
+	 * kept, and insert and insertAll take nodes from there before allocating new
+	 * ones. A workload that keeps inserting and removing then allocates nothing
+	 * once the pool is warm. Setting the capacity to zero (the default) turns
+	 * pooling off; a smaller capacity drops the extra pooled nodes.
+	 * 
+	 * @param capacity largest number of nodes to keep for reuse
+	 * @exception IllegalArgumentException Indicates that capacity is negative.
+	 **/
+	public void setPoolCapacity(int capacity) {
+		assert wellFormed() : "invariant failed at start of setPoolCapacity";
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity is negative: " + capacity);
+		poolCapacity = capacity;
+		while (poolSize > capacity) {
+			pool = pool.next;
+			--poolSize;
+		}
+		assert wellFormed() : "invariant failed at end of setPoolCapacity";
+	}
+
+	/**
+	 * Return a node holding the element (with a null next), from the pool if
+	 * possible.
+	 */
+	private Node<E> newNode(E element) {
+		Node<E> n = pool;
+		if (n == null)
+			return new Node<E>(element, null);
+		pool = n.next;
+		--poolSize;
+		n.data = element;
+		n.next = null;
+		return n;
+	}
+
+	/**
+	 * Drop the data of a node that has been unlinked, so the element is not kept
+	 * alive, and keep the node for reuse if the pool has room.
+	 */
+	private void recycle(Node<E> n) {
+		n.data = null;
+		if (poolSize < poolCapacity) {
+			n.next = pool;
+			pool = n;
+			++poolSize;
 		}
-		assert wellFormed() : "invariant failed at end of insertAll";
 	}
 
 	/**
@@ -358,6 +780,7 @@ public class LinkedSequence<E> implements Cloneable {
 		assert wellFormed() : "invariant wrong at start of clone()";
 
 		LinkedSequence<E> result;
+		long start = CollectionMetrics.ENABLED ? System.nanoTime() : 0;
 
 		try {
 			result = (LinkedSequence<E>) super.clone();
@@ -365,11 +788,17 @@ public class LinkedSequence<E> implements Cloneable {
 			throw new RuntimeException("This class does not implement Cloneable");
 		}
 
-		if (isEmpty()) {
-			return new LinkedSequence<E>();
-		}
-		result = new LinkedSequence<E>();
-		Node<E> resultCurrent = result.getDummy();
+		// give the clone its own (empty) list before copying the nodes into it
+		Node<E> dummy = new Node<E>();
+		dummy.next = dummy;
+		dummy.data = (E) dummy;
+		result.tail = result.precursor = dummy;
+		result.size = 0;
+		result.pool = null; // the clone keeps the capacity, but not the nodes
+		result.poolSize = 0;
+		result.checker = checker.getPolicy().newChecker();
+		result.sliceNode = null;
+		Node<E> resultCurrent = dummy;
 		for (Node<E> n = this.getHead(); n != this.getDummy(); n = n.next) {
 			Node<E> add = new Node<>(n.data, result.getDummy());
 			resultCurrent.next = add;
@@ -381,8 +810,207 @@ public class LinkedSequence<E> implements Cloneable {
 		}
 		if (!this.isCurrent())
 			result.precursor = result.tail;
+		if (CollectionMetrics.ENABLED)
+			CollectionMetrics.get().recordClone(result.size, System.nanoTime() - start);
 		assert wellFormed() : "invariant wrong at end of clone()";
 		assert result.wellFormed() : "invariant wrong for result of clone()";
 		return result;
 	}
+
+	/**
+	 * Return an iterator over the elements of this sequence, from the front. The
+	 * iterator has its own position, so it does not disturb the current element,
+	 * and any number of iterators may be in use at once. An iterator fails fast
+	 * (with a ConcurrentModificationException) if elements are added to or
+	 * removed from the sequence other than through the iterator itself; moving
+	 * the current element with start or advance does not affect it.
+	 * 
+	 * @return an iterator over the elements in order
+	 */
+	@Override // required
+	public Iterator<E> iterator() {
+		assert wellFormed() : "invariant wrong in iterator()";
+		return new MyIterator();
+	}
+
+	/**
+	 * Return a spliterator over the elements of this sequence that is
+	 * {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED} and
+	 * {@link Spliterator#ORDERED}, and that splits into balanced halves. Like the
+	 * iterator, it is fail-fast and does not disturb the current element.
+	 * 
+	 * @return a spliterator over the elements in order
+	 */
+	@Override // efficiency
+	public Spliterator<E> spliterator() {
+		assert wellFormed() : "invariant wrong in spliterator()";
+		return new MySpliterator(getHead(), size, version);
+	}
+
+	/**
+	 * Return a sequential stream of the elements of this sequence.
+	 * 
+	 * @return a stream of the elements in order
+	 */
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Return a possibly parallel stream of the elements of this sequence. The
+	 * sequence must not be changed while the stream is in use.
+	 * 
+	 * @return a parallel stream of the elements in order
+	 */
+	public Stream<E> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	private class MyIterator implements Iterator<E> {
+		private Node<E> pred; // node before the next one to return
+		private Node<E> lastPred; // node before the one last returned
+		private boolean canRemove;
+		private int colVersion;
+
+		private boolean wellFormed() {
+			if (!LinkedSequence.this.wellFormed())
+				return false;
+			if (!checker.lastWasFull() || version != colVersion)
+				return true;
+			if (pred == null)
+				return report("iterator has no position");
+			if (canRemove && lastPred.next != pred)
+				return report("iterator lost the last element returned");
+			return true;
+		}
+
+		MyIterator() {
+			pred = getDummy();
+			canRemove = false;
+			colVersion = version;
+			assert wellFormed() : "invariant broken in iterator constructor";
+		}
+
+		private void checkVersion() {
+			if (version != colVersion)
+				throw new ConcurrentModificationException("stale");
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			assert wellFormed() : "invariant broken in hasNext";
+			checkVersion();
+			return pred.next != getDummy();
+		}
+
+		@Override // required
+		public E next() {
+			assert wellFormed() : "invariant broken in next";
+			if (!hasNext())
+				throw new NoSuchElementException("no more");
+			lastPred = pred;
+			pred = pred.next;
+			canRemove = true;
+			assert wellFormed() : "invariant broken by next";
+			return pred.data;
+		}
+
+		@Override // implementation
+		public void remove() {
+			assert wellFormed() : "invariant broken in remove";
+			checkVersion();
+			if (!canRemove)
+				throw new IllegalStateException("Can't remove");
+			Node<E> removed = pred;
+			lastPred.next = removed.next;
+			if (removed == tail)
+				tail = lastPred;
+			// keep the same current element (or its successor, if it was removed)
+			if (precursor == removed)
+				precursor = lastPred;
+			if (sliceNode == removed)
+				sliceNode = lastPred;
+			sliceCount = -1;
+			pred = lastPred;
+			recycle(removed);
+			canRemove = false;
+			--size;
+			colVersion = ++version;
+			assert wellFormed() : "invariant broken by remove";
+		}
+	}
+
+	private class MySpliterator implements Spliterator<E> {
+		private Node<E> first; // next node to visit
+		private int remaining;
+		private final int expectedVersion;
+
+		MySpliterator(Node<E> first, int remaining, int expectedVersion) {
+			this.first = first;
+			this.remaining = remaining;
+			this.expectedVersion = expectedVersion;
+		}
+
+		private void checkVersion() {
+			if (version != expectedVersion)
+				throw new ConcurrentModificationException("stale");
+		}
+
+		@Override // required
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if (action == null)
+				throw new NullPointerException("action is null");
+			checkVersion();
+			if (remaining == 0)
+				return false;
+			E data = first.data;
+			first = first.next;
+			--remaining;
+			action.accept(data);
+			return true;
+		}
+
+		@Override // efficiency
+		public void forEachRemaining(Consumer<? super E> action) {
+			if (action == null)
+				throw new NullPointerException("action is null");
+			checkVersion();
+			Node<E> n = first;
+			int count = remaining;
+			first = null;
+			remaining = 0;
+			for (; count > 0; --count) {
+				action.accept(n.data);
+				n = n.next;
+			}
+			checkVersion();
+		}
+
+		/**
+		 * Split off the first half of the remaining elements. Finding the middle
+		 * takes a walk over half of them, but no elements are copied.
+		 */
+		@Override // required
+		public Spliterator<E> trySplit() {
+			checkVersion();
+			if (remaining < 2)
+				return null;
+			int half = remaining / 2;
+			Node<E> prefix = first;
+			for (int i = 0; i < half; ++i)
+				first = first.next;
+			remaining -= half;
+			return new MySpliterator(prefix, half, expectedVersion);
+		}
+
+		@Override // required
+		public long estimateSize() {
+			return remaining;
+		}
+
+		@Override // required
+		public int characteristics() {
+			return SIZED | SUBSIZED | ORDERED;
+		}
+	}
 }
@@ -0,0 +1,717 @@
+package edu.uwm.cs351;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A sequence with the same cursor interface as {@link LinkedSequence} whose
+ * elements are kept outside the heap, so that it can hold more than fits in
+ * memory. Each element is serialized by a {@link Codec} into a record of an
+ * append-only log. The log is a series of segment files, each mapped into
+ * memory with {@link FileChannel#map}, and the heap holds only a small index
+ * of the segments and their offsets in the log.
+ * <p>
+ * A record is a header of an int length, an int kind and a long link to the
+ * record after it in the sequence, followed by the serialized element, padded
+ * to a multiple of eight bytes. Records are found by their offset in the log.
+ * Inserting with no current element appends a record to the log. The records
+ * are then in sequence order, so moving through the sequence with
+ * {@link #start()} and {@link #advance()} reads the files sequentially and
+ * benefits from the operating system's readahead. Inserting in the middle of
+ * the sequence also appends the record, and links it in out of order.
+ * Removing an element unlinks its record and marks it as a tombstone; the log
+ * is compacted (the live records are copied in sequence order to new segments)
+ * when tombstones take up more than half of it, or when {@link #compact()} is
+ * called.
+ * <p>
+ * The segment files are working storage rather than a saved format: they are
+ * deleted by {@link #close()}, after which the sequence may not be used.
+ * {@link #getCurrent()} decodes a new copy of the element each time.
+ */
+public class MappedSequence<E> implements Closeable {
+	/**
+	 * Converts elements to and from the bytes of their records.
+	 */
+	public interface Codec<E> {
+		/**
+		 * Serialize an element, which is not null.
+		 *
+		 * @param element element to serialize
+		 * @return bytes of the element
+		 */
+		byte[] encode(E element);
+
+		/**
+		 * Deserialize an element from the bytes that {@link #encode} produced.
+		 *
+		 * @param bytes buffer whose remaining bytes are those of the element
+		 * @return element with those bytes
+		 */
+		E decode(ByteBuffer bytes);
+	}
+
+	/** Codec for strings as UTF-8. */
+	public static final Codec<String> UTF8 = new Codec<String>() {
+		@Override // required
+		public byte[] encode(String element) {
+			return element.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override // required
+		public String decode(ByteBuffer bytes) {
+			byte[] array = new byte[bytes.remaining()];
+			bytes.get(array);
+			return new String(array, StandardCharsets.UTF_8);
+		}
+	};
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private static final long DUMMY = -2; // before the first record
+	private static final long NONE = -1; // after the last record
+
+	private static final int HEADER = 16; // length, kind, link
+	private static final int ELEMENT = 0; // kinds of record
+	private static final int NULL_ELEMENT = 1;
+	private static final int TOMBSTONE = 2;
+
+	/** Default size of a segment file: 64 MiB. */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+	private static final int MIN_SEGMENT_SIZE = 1 << 12;
+
+	private final Codec<E> codec;
+	private final Path directory;
+	private final boolean ownDirectory; // delete the directory when closed
+	private final int segmentSize;
+
+	// the index of the segments: segment i holds the log from bases[i], its
+	// first used[i] bytes are records, and its file is named by fileNumbers[i]
+	private MappedByteBuffer[] buffers;
+	private long[] bases;
+	private int[] used;
+	private int[] fileNumbers;
+	private int numSegments;
+	private int nextFileNumber;
+	private int lastSegment; // segment of the last record read, to skip the search
+
+	private long head; // first record, or NONE if empty
+	private long tail; // last record, or DUMMY if empty
+	private long precursor; // record before the current element, or DUMMY
+	private int size;
+	private long garbage; // bytes of tombstones in the log
+
+	/**
+	 * Check the invariant. Report any problem precisely once. Return false if any
+	 * problem is found.
+	 *
+	 * @return whether invariant is currently true
+	 */
+	private boolean wellFormed() {
+		// 1. The index is consistent: each segment starts where the one before it
+		// ends, and uses no more than its capacity.
+		if (buffers == null)
+			return report("sequence is closed");
+		if (bases == null || used == null || fileNumbers == null)
+			return report("index arrays are null");
+		if (numSegments < 1 || numSegments > buffers.length || bases.length != buffers.length
+				|| used.length != buffers.length || fileNumbers.length != buffers.length)
+			return report("index arrays don't agree on the number of segments");
+		for (int i = 0; i < numSegments; ++i) {
+			if (buffers[i] == null)
+				return report("segment " + i + " is not mapped");
+			if (used[i] < 0 || used[i] > buffers[i].capacity() || used[i] % 8 != 0)
+				return report("segment " + i + " uses " + used[i] + " bytes");
+			if (bases[i] != (i == 0 ? 0 : bases[i - 1] + buffers[i - 1].capacity()))
+				return report("segment " + i + " starts at " + bases[i]);
+			if (fileNumbers[i] >= nextFileNumber)
+				return report("segment " + i + " has an unused file number");
+		}
+
+		// 2. The records linked from the head are elements, and lead to the tail
+		// after size records. The precursor is one of them (or the dummy).
+		int count = 0;
+		long last = DUMMY;
+		boolean precursorFound = precursor == DUMMY;
+		for (long r = head; r != NONE; r = link(r)) {
+			if (count == size)
+				return report("more than " + size + " records are linked");
+			if (!looksLikeRecord(r))
+				return report("link to " + r + " is not the start of a record");
+			if (kind(r) == TOMBSTONE)
+				return report("tombstone at " + r + " is linked");
+			if (r == precursor)
+				precursorFound = true;
+			++count;
+			last = r;
+		}
+		if (count != size)
+			return report("size is " + size + " but " + count + " records are linked");
+		if (tail != last)
+			return report("tail is not the last record");
+		if (!precursorFound)
+			return report("precursor isn't in the sequence");
+
+		// 3. Going through the log record by record, the elements number size and
+		// the tombstones take up garbage bytes.
+		int live = 0;
+		long dead = 0;
+		for (int i = 0; i < numSegments; ++i) {
+			for (int p = 0; p < used[i];) {
+				int length = buffers[i].getInt(p);
+				int kind = buffers[i].getInt(p + 4);
+				if (length < 0 || kind < ELEMENT || kind > TOMBSTONE || p + recordSize(length) > used[i])
+					return report("bad record at " + (bases[i] + p));
+				if (kind == TOMBSTONE)
+					dead += recordSize(length);
+				else
+					++live;
+				p += recordSize(length);
+			}
+		}
+		if (live != size)
+			return report("log has " + live + " elements, but size is " + size);
+		if (dead != garbage)
+			return report("tombstones take " + dead + " bytes, but garbage is " + garbage);
+
+		// If no problems found, then return true:
+		return true;
+	}
+
+	/**
+	 * Create an empty sequence whose segment files are in a new temporary
+	 * directory, which is deleted by {@link #close()}.
+	 *
+	 * @param codec codec for the elements, must not be null
+	 * @exception NullPointerException Indicates that codec is null.
+	 * @exception IOException          Indicates that the directory or first
+	 *                                 segment could not be created.
+	 */
+	public MappedSequence(Codec<E> codec) throws IOException {
+		this(codec, Files.createTempDirectory("sequence"), true, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Create an empty sequence whose segment files are created in the given
+	 * directory, which must exist. The directory should not be used for anything
+	 * else.
+	 *
+	 * @param codec       codec for the elements, must not be null
+	 * @param directory   directory for the segment files, must not be null
+	 * @param segmentSize size of each segment file, at least 4096 (a segment may
+	 *                    be larger, to hold one large element)
+	 * @exception NullPointerException     Indicates that codec or directory is
+	 *                                     null.
+	 * @exception IllegalArgumentException Indicates that segmentSize is too small.
+	 * @exception IOException              Indicates that the first segment could
+	 *                                     not be created.
+	 */
+	public MappedSequence(Codec<E> codec, Path directory, int segmentSize) throws IOException {
+		this(codec, directory, false, segmentSize);
+	}
+
+	private MappedSequence(Codec<E> codec, Path directory, boolean ownDirectory, int segmentSize)
+			throws IOException {
+		if (codec == null)
+			throw new NullPointerException("codec is null");
+		if (directory == null)
+			throw new NullPointerException("directory is null");
+		if (segmentSize < MIN_SEGMENT_SIZE)
+			throw new IllegalArgumentException("segment size is less than " + MIN_SEGMENT_SIZE + ": " + segmentSize);
+		this.codec = codec;
+		this.directory = directory;
+		this.ownDirectory = ownDirectory;
+		this.segmentSize = segmentSize & ~7;
+		buffers = new MappedByteBuffer[4];
+		bases = new long[4];
+		used = new int[4];
+		fileNumbers = new int[4];
+		addSegment(this.segmentSize);
+		head = NONE;
+		tail = precursor = DUMMY;
+		assert wellFormed() : "invariant failed in constructor";
+	}
+
+	private static int recordSize(int length) {
+		return (HEADER + length + 7) & ~7;
+	}
+
+	/**
+	 * Return the segment holding the given offset of the log.
+	 */
+	private int segmentOf(long r) {
+		int i = lastSegment;
+		if (r < bases[i] || r >= bases[i] + used[i]) {
+			i = Arrays.binarySearch(bases, 0, numSegments, r);
+			if (i < 0)
+				i = -i - 2;
+			lastSegment = i;
+		}
+		return i;
+	}
+
+	/**
+	 * Return whether the given offset of the log is aligned, within the used part
+	 * of a segment, and has a header that fits there. (Checking that it is the
+	 * start of a record would mean reading the segment from its start.)
+	 */
+	private boolean looksLikeRecord(long r) {
+		if (r < 0 || r % 8 != 0 || r >= logSize())
+			return false;
+		int i = segmentOf(r);
+		int p = (int) (r - bases[i]);
+		if (p >= used[i])
+			return false;
+		int length = buffers[i].getInt(p);
+		int kind = buffers[i].getInt(p + 4);
+		return length >= 0 && kind >= ELEMENT && kind <= TOMBSTONE && p + (long) recordSize(length) <= used[i];
+	}
+
+	private int kind(long r) {
+		int i = segmentOf(r);
+		return buffers[i].getInt((int) (r - bases[i]) + 4);
+	}
+
+	private long link(long r) {
+		if (r == DUMMY)
+			return head;
+		int i = segmentOf(r);
+		return buffers[i].getLong((int) (r - bases[i]) + 8);
+	}
+
+	private void setLink(long r, long next) {
+		if (r == DUMMY) {
+			head = next;
+			return;
+		}
+		int i = segmentOf(r);
+		buffers[i].putLong((int) (r - bases[i]) + 8, next);
+	}
+
+	/**
+	 * Return the bytes of the element of a record, as a read-only buffer.
+	 */
+	private ByteBuffer bytes(long r) {
+		int i = segmentOf(r);
+		int p = (int) (r - bases[i]);
+		ByteBuffer b = buffers[i].asReadOnlyBuffer();
+		b.limit(p + HEADER + b.getInt(p)).position(p + HEADER);
+		return b.slice();
+	}
+
+	/**
+	 * Create, map and add a segment file with the given capacity.
+	 */
+	private void addSegment(int capacity) throws IOException {
+		if (numSegments == buffers.length) {
+			buffers = Arrays.copyOf(buffers, numSegments * 2);
+			bases = Arrays.copyOf(bases, numSegments * 2);
+			used = Arrays.copyOf(used, numSegments * 2);
+			fileNumbers = Arrays.copyOf(fileNumbers, numSegments * 2);
+		}
+		int number = nextFileNumber++;
+		try (FileChannel channel = FileChannel.open(fileFor(number), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+			buffers[numSegments] = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+		bases[numSegments] = numSegments == 0 ? 0 : bases[numSegments - 1] + buffers[numSegments - 1].capacity();
+		used[numSegments] = 0;
+		fileNumbers[numSegments] = number;
+		++numSegments;
+	}
+
+	private Path fileFor(int number) {
+		return directory.resolve(String.format("segment-%06d.log", number));
+	}
+
+	/**
+	 * Append a record to the log, starting a new segment if it doesn't fit in the
+	 * last one, and return its offset. The record is not linked to anything.
+	 */
+	private long append(int kind, ByteBuffer element) {
+		int length = element == null ? 0 : element.remaining();
+		if (length > Integer.MAX_VALUE - HEADER - 7)
+			throw new IllegalArgumentException("element is too large: " + length + " bytes");
+		int size = recordSize(length);
+		int last = numSegments - 1;
+		if (buffers[last].capacity() - used[last] < size) {
+			try {
+				addSegment(Math.max(segmentSize, size));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			++last;
+		}
+		MappedByteBuffer b = buffers[last];
+		int p = used[last];
+		b.putInt(p, length);
+		b.putInt(p + 4, kind);
+		b.putLong(p + 8, NONE);
+		if (element != null) {
+			ByteBuffer target = b.duplicate();
+			target.position(p + HEADER);
+			target.put(element.duplicate());
+		}
+		used[last] += size;
+		return bases[last] + p;
+	}
+
+	private long append(E element) {
+		if (element == null)
+			return append(NULL_ELEMENT, null);
+		return append(ELEMENT, ByteBuffer.wrap(codec.encode(element)));
+	}
+
+	private void checkOpen() {
+		if (buffers == null)
+			throw new IllegalStateException("sequence is closed");
+	}
+
+	/**
+	 * Determine the number of elements in this sequence.
+	 *
+	 * @param - none
+	 * @return the number of elements in this sequence
+	 **/
+	public int size() {
+		checkOpen();
+		assert wellFormed() : "invariant wrong at start of size()";
+		return size;
+	}
+
+	/**
+	 * Set the current element at the front of this sequence.
+	 *
+	 * @param - none
+	 * @postcondition The front element of this sequence is now the current element
+	 *                (but if this sequence has no elements at all, then there is no
+	 *                current element).
+	 **/
+	public void start() {
+		checkOpen();
+		assert wellFormed() : "invariant wrong at start of start()";
+		precursor = DUMMY;
+		assert wellFormed() : "invariant wrong at end of start()";
+	}
+
+	/**
+	 * Accessor method to determine whether this sequence has a specified current
+	 * element that can be retrieved with the getCurrent method.
+	 *
+	 * @param - none
+	 * @return true (there is a current element) or false (there is no current
+	 *         element at the moment)
+	 **/
+	public boolean isCurrent() {
+		checkOpen();
+		assert wellFormed() : "invariant wrong at start of isCurrent()";
+		return link(precursor) != NONE;
+	}
+
+	/**
+	 * Accessor method to get the current element of this sequence, decoded from
+	 * its record.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @return the current element of this sequence
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so getCurrent may not be called.
+	 **/
+	public E getCurrent() {
+		checkOpen();
+		assert wellFormed() : "invariant wrong at start of getCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		long cursor = link(precursor);
+		if (kind(cursor) == NULL_ELEMENT)
+			return null;
+		return codec.decode(bytes(cursor));
+	}
+
+	/**
+	 * Move forward, so that the current element is now the next element in this
+	 * sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition If the current element was already the end element of this
+	 *                sequence (with nothing after it), then there is no longer any
+	 *                current element. Otherwise, the new element is the element
+	 *                immediately after the original current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so advance may not be called.
+	 **/
+	public void advance() {
+		checkOpen();
+		assert wellFormed() : "invariant wrong at start of advance()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		precursor = link(precursor);
+		assert wellFormed() : "invariant wrong at end of advance()";
+	}
+
+	/**
+	 * Remove the current element from this sequence. Its record becomes a
+	 * tombstone, and the log is compacted if tombstones take up more than half of
+	 * it.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition The current element has been removed from this sequence, and
+	 *                the following element (if there is one) is now the new current
+	 *                element. If there was no following element, then there is now
+	 *                no current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so removeCurrent may not be called.
+	 * @exception UncheckedIOException  Indicates that compacting failed; the
+	 *                                  sequence is unchanged apart from the
+	 *                                  removal.
+	 **/
+	public void removeCurrent() {
+		checkOpen();
+		assert wellFormed() : "invariant wrong at start of removeCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		long cursor = link(precursor);
+		setLink(precursor, link(cursor));
+		if (cursor == tail)
+			tail = precursor;
+		int i = segmentOf(cursor);
+		int p = (int) (cursor - bases[i]);
+		buffers[i].putInt(p + 4, TOMBSTONE);
+		garbage += recordSize(buffers[i].getInt(p));
+		--size;
+		if (garbage * 2 > logSize() && logSize() > segmentSize)
+			compact();
+		assert wellFormed() : "invariant wrong at end of removeCurrent()";
+	}
+
+	private long logSize() {
+		return bases[numSegments - 1] + used[numSegments - 1];
+	}
+
+	/**
+	 * Add a new element to this sequence, before the current element (if any).
+	 * The element's record is appended to the log.
+	 *
+	 * @param element the new element that is being added
+	 * @postcondition A new copy of the element has been added to this sequence. If
+	 *                there was a current element, then the new element is placed
+	 *                before the current element. If there was no current element,
+	 *                then the new element is placed at the end of the sequence. In
+	 *                all cases, the new element becomes the new current element of
+	 *                this sequence.
+	 * @exception IllegalArgumentException Indicates that the element is too large
+	 *                                     for a record.
+	 * @exception UncheckedIOException     Indicates that a new segment could not
+	 *                                     be created.
+	 **/
+	public void insert(E element) {
+		checkOpen();
+		assert wellFormed() : "invariant failed at start of insert";
+		long r = append(element);
+		link(r, r, 1);
+		assert wellFormed() : "invariant failed at end of insert";
+	}
+
+	/**
+	 * Link the chain of records from first to last into the sequence before the
+	 * current element, or at the end if there is none, so that first becomes the
+	 * current element.
+	 */
+	private void link(long first, long last, int count) {
+		long cursor = link(precursor);
+		if (cursor != NONE) {
+			setLink(last, cursor);
+			setLink(precursor, first);
+		} else {
+			setLink(tail, first);
+			precursor = tail;
+			tail = last;
+		}
+		size = Math.addExact(size, count);
+	}
+
+	/**
+	 * Place the contents of another sequence (which may be the same one as this!)
+	 * into this sequence before the current element (if any). The records are
+	 * copied as bytes, without decoding the elements.
+	 *
+	 * @param addend a sequence whose contents will be placed into this sequence
+	 * @precondition The parameter, addend, is not null, and uses the same codec.
+	 * @postcondition The elements from addend have been placed into this sequence.
+	 *                The current element of this sequence (if any) is unchanged.
+	 *                The addend is unchanged.
+	 * @exception NullPointerException     Indicates that addend is null.
+	 * @exception IllegalArgumentException Indicates that addend uses a different
+	 *                                     codec.
+	 * @exception UncheckedIOException     Indicates that a new segment could not
+	 *                                     be created.
+	 **/
+	public void insertAll(MappedSequence<E> addend) {
+		checkOpen();
+		assert wellFormed() : "invariant failed at start of insertAll";
+		if (addend == null)
+			throw new NullPointerException("addend is null");
+		addend.checkOpen();
+		if (addend.codec != codec)
+			throw new IllegalArgumentException("addend uses a different codec");
+		int count = addend.size;
+		if (count == 0)
+			return;
+		// copy the addend's records into a new chain at the end of the log, then
+		// link it in (if addend is this, the new records are not linked yet)
+		long first = NONE;
+		long last = NONE;
+		long from = addend.head;
+		for (int k = 0; k < count; ++k) {
+			long r = append(addend.kind(from), addend.kind(from) == ELEMENT ? addend.bytes(from) : null);
+			if (last == NONE)
+				first = r;
+			else
+				setLink(last, r);
+			last = r;
+			from = addend.link(from);
+		}
+		link(first, last, count);
+		precursor = last;
+		assert wellFormed() : "invariant failed at end of insertAll";
+	}
+
+	/**
+	 * Copy the elements to new segments in sequence order, without tombstones,
+	 * and delete the old segment files. Afterwards, moving through the sequence
+	 * reads the files sequentially again. The current element is unchanged.
+	 *
+	 * @exception UncheckedIOException Indicates that a new segment could not be
+	 *                                  created; the sequence is unchanged.
+	 **/
+	public void compact() {
+		checkOpen();
+		assert wellFormed() : "invariant failed at start of compact";
+		MappedByteBuffer[] oldBuffers = buffers;
+		long[] oldBases = bases;
+		int[] oldUsed = used;
+		int[] oldNumbers = fileNumbers;
+		int oldNumSegments = numSegments;
+		long oldHead = head;
+		long oldTail = tail;
+		long oldPrecursor = precursor;
+		int oldLast = lastSegment;
+		try {
+			buffers = new MappedByteBuffer[4];
+			bases = new long[4];
+			used = new int[4];
+			fileNumbers = new int[4];
+			numSegments = 0;
+			lastSegment = 0;
+			addSegment(segmentSize);
+		} catch (IOException e) {
+			restore(oldBuffers, oldBases, oldUsed, oldNumbers, oldNumSegments, oldLast);
+			throw new UncheckedIOException(e);
+		}
+		head = NONE;
+		tail = precursor = DUMMY;
+		// the copies are appended in order, so each is linked from the one before
+		long last = DUMMY;
+		long from = oldHead;
+		while (from != NONE) {
+			int i = Arrays.binarySearch(oldBases, 0, oldNumSegments, from);
+			if (i < 0)
+				i = -i - 2;
+			MappedByteBuffer b = oldBuffers[i];
+			int p = (int) (from - oldBases[i]);
+			int kind = b.getInt(p + 4);
+			ByteBuffer element = null;
+			if (kind == ELEMENT) {
+				element = b.asReadOnlyBuffer();
+				element.limit(p + HEADER + b.getInt(p)).position(p + HEADER);
+			}
+			long r;
+			try {
+				r = append(kind, element);
+			} catch (UncheckedIOException e) {
+				deleteSegments(buffers, fileNumbers, numSegments);
+				restore(oldBuffers, oldBases, oldUsed, oldNumbers, oldNumSegments, oldLast);
+				head = oldHead;
+				tail = oldTail;
+				precursor = oldPrecursor;
+				throw e;
+			}
+			setLink(last, r);
+			if (from == oldPrecursor)
+				precursor = r;
+			last = r;
+			from = b.getLong(p + 8);
+		}
+		tail = last;
+		garbage = 0;
+		deleteSegments(oldBuffers, oldNumbers, oldNumSegments);
+		assert wellFormed() : "invariant failed at end of compact";
+	}
+
+	private void restore(MappedByteBuffer[] oldBuffers, long[] oldBases, int[] oldUsed, int[] oldNumbers,
+			int oldNumSegments, int oldLast) {
+		buffers = oldBuffers;
+		bases = oldBases;
+		used = oldUsed;
+		fileNumbers = oldNumbers;
+		numSegments = oldNumSegments;
+		lastSegment = oldLast;
+	}
+
+	/**
+	 * Delete the files of the given segments, as far as possible. A mapped file
+	 * stays on disk (on some systems) until its buffer is garbage collected.
+	 */
+	private void deleteSegments(MappedByteBuffer[] segments, int[] numbers, int count) {
+		for (int i = 0; i < count; ++i) {
+			segments[i] = null;
+			try {
+				Files.deleteIfExists(fileFor(numbers[i]));
+			} catch (IOException e) {
+				// the file is left behind, as it would be after a crash
+			}
+		}
+	}
+
+	/**
+	 * Delete the segment files (and the directory, if it was created for this
+	 * sequence). The sequence may not be used afterwards. Closing a closed
+	 * sequence has no effect.
+	 *
+	 * @exception IOException Indicates that the directory could not be deleted.
+	 **/
+	@Override // implementation
+	public void close() throws IOException {
+		if (buffers == null)
+			return;
+		deleteSegments(buffers, fileNumbers, numSegments);
+		buffers = null;
+		numSegments = 0;
+		if (ownDirectory)
+			Files.deleteIfExists(directory);
+	}
+}
@@ -0,0 +1,361 @@
+package edu.uwm.cs351;
+
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import edu.uwm.cs351.util.Primes;
+
+/**
+ * Multiset of n-grams (sequences of n consecutive words). Each word is given
+ * an int id by a {@link WordDictionary}, and an n-gram is stored as the ids
+ * packed into a single long, so an n-gram costs the same whatever n is and
+ * no strings are built for it. The keys and counts are kept in parallel
+ * primitive arrays, using double hashing over twin primes.
+ * <p>
+ * Tokens can be fed one at a time with {@link #accept(String)}: every token
+ * completes an n-gram with the n-1 tokens before it.
+ * <p>
+ * Each id gets 63/n bits of a key (at most 31), so n-grams can only use the
+ * first {@link #getMaxWords()} words of the dictionary: 2^31 for n of 1 or 2,
+ * 2^21 for 3, and 2^15 = 32768 for 4. A shared dictionary counts the words
+ * added by all its users. Adding a word beyond the limit fails without giving
+ * it an id.
+ */
+public class NGramMultiset implements Consumer<String> {
+	/** The largest n supported: each id gets 63/n bits of the key. */
+	public static final int MAX_N = 4;
+
+	private static final int INITIAL_CAPACITY = 7;
+
+	private final int n;
+	private final int bits; // bits for each id in a key, at most 63 in all
+	private final WordDictionary dictionary;
+
+	private long[] keys;
+	private int[] counts; // zero for an empty slot
+	private int numEntries;
+
+	private long window; // ids of the last tokens, packed like a key
+	private int windowSize; // number of tokens in the window, at most n
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private static boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	/**
+	 * Hash the key to a table index, following double hashing, returning the
+	 * first index that either has the key or is empty.
+	 *
+	 * @param key packed n-gram to look for
+	 * @return index where the key is or belongs
+	 */
+	private int hash(long key) {
+		int h = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+		int hOne = DoubleHashing.first(h, keys.length);
+		int hTwo = DoubleHashing.step(h, keys.length);
+		while (counts[hOne] != 0 && keys[hOne] != key) {
+			hOne = DoubleHashing.next(hOne, hTwo, keys.length);
+		}
+		return hOne;
+	}
+
+	/**
+	 * Check the invariant. Returns false if any problem is found.
+	 *
+	 * @return whether invariant is currently true. If false is returned then
+	 *         exactly one problem has been reported.
+	 */
+	private boolean wellFormed() {
+		// 1. The arrays have the same length, which is the larger of twin primes.
+		if (keys == null || counts == null)
+			return report("arrays are null");
+		if (keys.length != counts.length)
+			return report("keys and counts have different lengths");
+		if (keys.length < INITIAL_CAPACITY || !Primes.isPrime(keys.length) || !Primes.isPrime(keys.length - 2))
+			return report("table size is not the larger of twin primes");
+		// 2. No count is negative, numEntries counts the positive ones, and each
+		// key can be found and uses only ids that the dictionary has given out.
+		int count = 0;
+		int numIds = dictionary.size();
+		for (int i = 0; i < keys.length; ++i) {
+			if (counts[i] < 0)
+				return report("negative count");
+			if (counts[i] == 0)
+				continue;
+			++count;
+			if (hash(keys[i]) != i)
+				return report("key can't be found");
+			for (int k = 0; k < n; ++k) {
+				if (idAt(keys[i], k) >= numIds)
+					return report("key uses an unknown id");
+			}
+		}
+		if (count != numEntries)
+			return report("numEntries is " + numEntries + " but should be " + count);
+		// 3. The table is never more than half full.
+		if (numEntries * 2 > keys.length)
+			return report("table is too full");
+		// 4. The window holds fewer than n tokens, or exactly n.
+		if (windowSize < 0 || windowSize > n)
+			return report("bad window size");
+		return true;
+	}
+
+	/**
+	 * Creates an empty multiset of n-grams with its own dictionary.
+	 *
+	 * @param n number of words in each n-gram, from 1 to {@link #MAX_N}
+	 * @throws IllegalArgumentException if n is out of range
+	 */
+	public NGramMultiset(int n) {
+		this(n, new WordDictionary());
+	}
+
+	/**
+	 * Creates an empty multiset of n-grams using the given dictionary, which may
+	 * be shared with other multisets.
+	 *
+	 * @param n          number of words in each n-gram, from 1 to {@link #MAX_N}
+	 * @param dictionary dictionary of words to ids, must not be null
+	 * @throws IllegalArgumentException if n is out of range
+	 * @throws NullPointerException     if dictionary is null
+	 */
+	public NGramMultiset(int n, WordDictionary dictionary) {
+		if (n < 1 || n > MAX_N)
+			throw new IllegalArgumentException("n must be from 1 to " + MAX_N + ": " + n);
+		if (dictionary == null)
+			throw new NullPointerException("dictionary is null");
+		this.n = n;
+		this.bits = Math.min(31, 63 / n);
+		this.dictionary = dictionary;
+		keys = new long[INITIAL_CAPACITY];
+		counts = new int[INITIAL_CAPACITY];
+		assert wellFormed() : "invariant false at end of constructor";
+	}
+
+	/**
+	 * Return the number of words in each n-gram.
+	 *
+	 * @return n
+	 */
+	public int getN() {
+		return n;
+	}
+
+	/**
+	 * Return the number of distinct words that the n-grams may use: ids from the
+	 * dictionary must be less than this.
+	 *
+	 * @return 2 to the power of the bits for each id in a key
+	 */
+	public int getMaxWords() {
+		return bits == 31 ? Integer.MAX_VALUE : 1 << bits;
+	}
+
+	/**
+	 * Return the dictionary giving the ids of words.
+	 *
+	 * @return dictionary, never null
+	 */
+	public WordDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Return the number of distinct n-grams.
+	 *
+	 * @return number of n-grams with a positive count
+	 */
+	public int size() {
+		assert wellFormed() : "invariant false at start of size()";
+		return numEntries;
+	}
+
+	private int idAt(long key, int k) {
+		return (int) ((key >>> (bits * (n - 1 - k))) & ((1L << bits) - 1));
+	}
+
+	private String[] wordsOf(long key) {
+		String[] result = new String[n];
+		for (int k = 0; k < n; ++k)
+			result[k] = dictionary.wordOf(idAt(key, k));
+		return result;
+	}
+
+	/**
+	 * Return the id of the word, checking that it fits in a key. A new word is
+	 * only given an id if the id would fit.
+	 */
+	private int idFor(String word) {
+		int id = dictionary.idOf(word, getMaxWords());
+		if (id < 0 || id >= (1L << bits))
+			throw new IllegalStateException("too many distinct words for " + n + "-grams: more than " + getMaxWords());
+		return id;
+	}
+
+	/**
+	 * Pack the given words into a key, or return -1 if some word has no id.
+	 */
+	private long keyOf(String[] words) {
+		if (words.length != n)
+			throw new IllegalArgumentException("expected " + n + " words, got " + words.length);
+		long key = 0;
+		for (String w : words) {
+			int id = dictionary.find(w);
+			if (id < 0 || id >= (1L << bits))
+				return -1;
+			key = (key << bits) | id;
+		}
+		return key;
+	}
+
+	private void increment(long key) {
+		int i = hash(key);
+		if (counts[i] == 0) {
+			keys[i] = key;
+			++numEntries;
+		}
+		counts[i] = Math.addExact(counts[i], 1);
+		if (numEntries * 2 > keys.length)
+			rehash();
+	}
+
+	/**
+	 * Create new arrays at least four times the number of entries.
+	 */
+	private void rehash() {
+		int newSize = INITIAL_CAPACITY;
+		while (newSize < 4 * numEntries)
+			newSize = Primes.nextTwinPrime(newSize);
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new long[newSize];
+		counts = new int[newSize];
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldCounts[i] != 0) {
+				int j = hash(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				counts[j] = oldCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * Add the next token of the stream. Once at least n tokens have been seen
+	 * since the start (or the last {@link #reset()}), each token adds the n-gram
+	 * ending with it.
+	 *
+	 * @param token next word, must not be null
+	 * @throws NullPointerException  if token is null
+	 * @throws IllegalStateException if there are too many distinct words to pack
+	 *                               n of them in a key
+	 */
+	@Override // implementation
+	public void accept(String token) {
+		assert wellFormed() : "invariant false at start of accept()";
+		if (token == null)
+			throw new NullPointerException("token is null");
+		window = ((window << bits) | idFor(token)) & ((1L << (n * bits)) - 1);
+		if (windowSize < n)
+			++windowSize;
+		if (windowSize == n)
+			increment(window);
+		assert wellFormed() : "invariant false at end of accept()";
+	}
+
+	/**
+	 * Forget the tokens seen so far, so that the next n-gram starts with the next
+	 * token. Use this at sentence or document boundaries.
+	 */
+	public void reset() {
+		window = 0;
+		windowSize = 0;
+	}
+
+	/**
+	 * Add one copy of an n-gram.
+	 *
+	 * @param words the n words of the n-gram, none null
+	 * @throws IllegalArgumentException if the number of words is not n
+	 * @throws NullPointerException     if a word is null
+	 * @throws IllegalStateException    if the new words would be too many to
+	 *                                  pack n of them in a key (in which case
+	 *                                  none of them is given an id, unless other
+	 *                                  threads add words meanwhile)
+	 */
+	public void add(String... words) {
+		assert wellFormed() : "invariant false at start of add()";
+		if (words.length != n)
+			throw new IllegalArgumentException("expected " + n + " words, got " + words.length);
+		// check that the new words fit before giving any of them an id
+		int numNew = 0;
+		for (int k = 0; k < n; ++k) {
+			if (words[k] == null)
+				throw new NullPointerException("word is null");
+			if (dictionary.find(words[k]) < 0 && !repeats(words, k))
+				++numNew;
+		}
+		if (numNew > 0 && (long) dictionary.size() + numNew > getMaxWords())
+			throw new IllegalStateException("too many distinct words for " + n + "-grams: more than " + getMaxWords());
+		long key = 0;
+		for (String w : words)
+			key = (key << bits) | idFor(w);
+		increment(key);
+		assert wellFormed() : "invariant false at end of add()";
+	}
+
+	/**
+	 * Return whether the word at index k also comes earlier in the array.
+	 */
+	private static boolean repeats(String[] words, int k) {
+		for (int j = 0; j < k; ++j) {
+			if (words[j].equals(words[k]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return the number of copies of an n-gram.
+	 *
+	 * @param words the n words of the n-gram, none null
+	 * @return count of the n-gram, zero if absent
+	 * @throws IllegalArgumentException if the number of words is not n
+	 * @throws NullPointerException     if a word is null
+	 */
+	public int get(String... words) {
+		assert wellFormed() : "invariant false at start of get()";
+		long key = keyOf(words);
+		if (key < 0)
+			return 0;
+		return counts[hash(key)];
+	}
+
+	/**
+	 * Pass every n-gram with its count to the consumer, in no particular order.
+	 * A new array of words is created for each n-gram.
+	 *
+	 * @param consumer consumer of the words and count of each n-gram, must not be
+	 *                 null
+	 * @throws NullPointerException if consumer is null
+	 */
+	public void forEach(ObjIntConsumer<String[]> consumer) {
+		assert wellFormed() : "invariant false at start of forEach()";
+		if (consumer == null)
+			throw new NullPointerException("consumer is null");
+		for (int i = 0; i < keys.length; ++i) {
+			if (counts[i] != 0)
+				consumer.accept(wordsOf(keys[i]), counts[i]);
+		}
+	}
+}
@@ -0,0 +1,413 @@
+package edu.uwm.cs351;
+
+import java.util.function.Consumer;
+
+/**
+ * A sequence with the same cursor interface as {@link LinkedSequence} whose
+ * elements are kept in an immutable AVL tree ordered by position. Every change
+ * builds new nodes only along one path of the tree and shares the rest with
+ * the previous version, so {@link #clone()} takes constant time and copies
+ * nothing: the clone and the original simply share the tree until one of them
+ * changes. Concatenation ({@link #concat}, {@link #insertAll}) and
+ * {@link #split()} take O(log n) time, as do insertion, removal and reading the
+ * current element.
+ */
+public class PersistentSequence<E> implements Cloneable {
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private int reportNeg(String error) {
+		report(error);
+		return -1;
+	}
+
+	private static final class Node<X> {
+		final X data;
+		final Node<X> left, right;
+		final int height;
+		final int size;
+
+		Node(Node<X> l, X d, Node<X> r) {
+			left = l;
+			data = d;
+			right = r;
+			height = 1 + Math.max(height(l), height(r));
+			size = 1 + size(l) + size(r);
+		}
+	}
+
+	/**
+	 * The two parts of a tree that has been split.
+	 */
+	private static final class Split<X> {
+		Node<X> before, after;
+	}
+
+	private Node<E> root;
+	private int cursor; // position of the current element, or size if none
+
+	private static int height(Node<?> n) {
+		return n == null ? 0 : n.height;
+	}
+
+	private static int size(Node<?> n) {
+		return n == null ? 0 : n.size;
+	}
+
+	/**
+	 * Check that the subtree has the heights and sizes recorded in it and is
+	 * balanced.
+	 *
+	 * @return number of nodes in the subtree, or -1 if a problem was reported
+	 */
+	private int checkSubtree(Node<E> n, int depth) {
+		if (n == null)
+			return 0;
+		if (depth > 64)
+			return reportNeg("tree too deep");
+		int l = checkSubtree(n.left, depth + 1);
+		if (l < 0)
+			return -1;
+		int r = checkSubtree(n.right, depth + 1);
+		if (r < 0)
+			return -1;
+		if (n.size != l + r + 1)
+			return reportNeg("size is " + n.size + " but should be " + (l + r + 1));
+		if (n.height != 1 + Math.max(height(n.left), height(n.right)))
+			return reportNeg("height is wrong");
+		if (Math.abs(height(n.left) - height(n.right)) > 1)
+			return reportNeg("tree is not balanced");
+		return n.size;
+	}
+
+	/**
+	 * Check the invariant. Report any problem precisely once. Return false if any
+	 * problem is found.
+	 *
+	 * @return whether invariant is currently true
+	 */
+	private boolean wellFormed() {
+		// 1. The tree records correct sizes and heights and is AVL balanced.
+		if (checkSubtree(root, 0) < 0)
+			return false;
+		// 2. The cursor is a position in the sequence, or just past the end.
+		if (cursor < 0 || cursor > size(root))
+			return report("cursor out of range: " + cursor);
+		return true;
+	}
+
+	/**
+	 * Create an empty sequence.
+	 *
+	 * @param - none
+	 * @postcondition This sequence is empty
+	 **/
+	public PersistentSequence() {
+		root = null;
+		cursor = 0;
+		assert wellFormed() : "invariant failed in constructor";
+	}
+
+	/**
+	 * Build a node from two balanced subtrees whose heights differ by at most
+	 * two, rotating if necessary so that the result is balanced.
+	 */
+	private static <X> Node<X> balance(Node<X> l, X x, Node<X> r) {
+		int bf = height(l) - height(r);
+		if (bf > 1) {
+			if (height(l.left) >= height(l.right))
+				return new Node<>(l.left, l.data, new Node<>(l.right, x, r));
+			Node<X> lr = l.right;
+			return new Node<>(new Node<>(l.left, l.data, lr.left), lr.data, new Node<>(lr.right, x, r));
+		}
+		if (bf < -1) {
+			if (height(r.right) >= height(r.left))
+				return new Node<>(new Node<>(l, x, r.left), r.data, r.right);
+			Node<X> rl = r.left;
+			return new Node<>(new Node<>(l, x, rl.left), rl.data, new Node<>(rl.right, r.data, r.right));
+		}
+		return new Node<>(l, x, r);
+	}
+
+	/**
+	 * Join two balanced trees of any heights with an element between them, in
+	 * time proportional to the difference in heights.
+	 */
+	private static <X> Node<X> join(Node<X> l, X x, Node<X> r) {
+		if (height(l) > height(r) + 1)
+			return balance(l.left, l.data, join(l.right, x, r));
+		if (height(r) > height(l) + 1)
+			return balance(join(l, x, r.left), r.data, r.right);
+		return new Node<>(l, x, r);
+	}
+
+	/**
+	 * Join two balanced trees of any heights, in O(log n) time.
+	 */
+	private static <X> Node<X> join(Node<X> l, Node<X> r) {
+		if (l == null)
+			return r;
+		if (r == null)
+			return l;
+		Split<X> s = new Split<>();
+		split(l, l.size - 1, s);
+		return join(s.before, s.after.data, r);
+	}
+
+	/**
+	 * Split a tree into the first i elements and the rest, in O(log n) time.
+	 */
+	private static <X> void split(Node<X> n, int i, Split<X> result) {
+		if (n == null) {
+			result.before = result.after = null;
+			return;
+		}
+		int ls = size(n.left);
+		if (i <= ls) {
+			split(n.left, i, result);
+			result.after = join(result.after, n.data, n.right);
+		} else {
+			split(n.right, i - ls - 1, result);
+			result.before = join(n.left, n.data, result.before);
+		}
+	}
+
+	/**
+	 * Determine the number of elements in this sequence.
+	 *
+	 * @param - none
+	 * @return the number of elements in this sequence
+	 **/
+	public int size() {
+		assert wellFormed() : "invariant wrong at start of size()";
+		return size(root);
+	}
+
+	/**
+	 * Set the current element at the front of this sequence.
+	 *
+	 * @param - none
+	 * @postcondition The front element of this sequence is now the current element
+	 *                (but if this sequence has no elements at all, then there is no
+	 *                current element).
+	 **/
+	public void start() {
+		assert wellFormed() : "invariant wrong at start of start()";
+		cursor = 0;
+		assert wellFormed() : "invariant wrong at end of start()";
+	}
+
+	/**
+	 * Accessor method to determine whether this sequence has a specified current
+	 * element that can be retrieved with the getCurrent method.
+	 *
+	 * @param - none
+	 * @return true (there is a current element) or false (there is no current
+	 *         element at the moment)
+	 **/
+	public boolean isCurrent() {
+		assert wellFormed() : "invariant wrong at start of isCurrent()";
+		return cursor < size(root);
+	}
+
+	/**
+	 * Accessor method to get the current element of this sequence, in O(log n)
+	 * time.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @return the current element of this sequence
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so getCurrent may not be called.
+	 **/
+	public E getCurrent() {
+		assert wellFormed() : "invariant wrong at start of getCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		Node<E> n = root;
+		int i = cursor;
+		for (;;) {
+			int ls = size(n.left);
+			if (i < ls)
+				n = n.left;
+			else if (i > ls) {
+				i -= ls + 1;
+				n = n.right;
+			} else
+				return n.data;
+		}
+	}
+
+	/**
+	 * Move forward, so that the current element is now the next element in this
+	 * sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition If the current element was already the end element of this
+	 *                sequence (with nothing after it), then there is no longer any
+	 *                current element. Otherwise, the new element is the element
+	 *                immediately after the original current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so advance may not be called.
+	 **/
+	public void advance() {
+		assert wellFormed() : "invariant wrong at start of advance()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		++cursor;
+		assert wellFormed() : "invariant wrong at end of advance()";
+	}
+
+	/**
+	 * Remove the current element from this sequence, in O(log n) time.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition The current element has been removed from this sequence, and
+	 *                the following element (if there is one) is now the new current
+	 *                element. If there was no following element, then there is now
+	 *                no current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so removeCurrent may not be called.
+	 **/
+	public void removeCurrent() {
+		assert wellFormed() : "invariant wrong at start of removeCurrent()";
+		if (!isCurrent())
+			throw new IllegalStateException("no current element");
+		Split<E> s = new Split<>();
+		split(root, cursor, s);
+		Node<E> before = s.before;
+		split(s.after, 1, s);
+		root = join(before, s.after);
+		assert wellFormed() : "invariant wrong at end of removeCurrent()";
+	}
+
+	/**
+	 * Add a new element to this sequence, before the current element (if any), in
+	 * O(log n) time.
+	 *
+	 * @param element the new element that is being added
+	 * @postcondition A new copy of the element has been added to this sequence. If
+	 *                there was a current element, then the new element is placed
+	 *                before the current element. If there was no current element,
+	 *                then the new element is placed at the end of the sequence. In
+	 *                all cases, the new element becomes the new current element of
+	 *                this sequence.
+	 * @exception OutOfMemoryError Indicates insufficient memory for increasing the
+	 *                             sequence.
+	 * @exception ArithmeticException Indicates that the sequence already has
+	 *                                Integer.MAX_VALUE elements.
+	 **/
+	public void insert(E element) {
+		assert wellFormed() : "invariant failed at start of insert";
+		Math.addExact(size(root), 1); // check before anything is changed
+		Split<E> s = new Split<>();
+		split(root, cursor, s);
+		root = join(s.before, element, s.after);
+		assert wellFormed() : "invariant failed at end of insert";
+	}
+
+	/**
+	 * Place the contents of another sequence (which may be the same one as this!)
+	 * into this sequence before the current element (if any), in O(log n) time.
+	 * The two sequences share the nodes of the addend.
+	 *
+	 * @param addend a sequence whose contents will be placed into this sequence
+	 * @precondition The parameter, addend, is not null.
+	 * @postcondition The elements from addend have been placed into this sequence.
+	 *                The current element of this sequence (if any) is unchanged.
+	 *                The addend is unchanged.
+	 * @exception NullPointerException Indicates that addend is null.
+	 * @exception ArithmeticException Indicates that the result would have more
+	 *                                than Integer.MAX_VALUE elements, in which
+	 *                                case this sequence is unchanged.
+	 **/
+	public void insertAll(PersistentSequence<E> addend) {
+		assert wellFormed() : "invariant failed at start of insertAll";
+		if (addend == null)
+			throw new NullPointerException("addend is null");
+		Node<E> added = addend.root;
+		// the nodes are shared, so adding a sequence to itself doubles its size
+		// without allocating much: check before anything is changed
+		Math.addExact(size(root), size(added));
+		Split<E> s = new Split<>();
+		split(root, cursor, s);
+		root = join(join(s.before, added), s.after);
+		cursor += size(added);
+		assert wellFormed() : "invariant failed at end of insertAll";
+	}
+
+	/**
+	 * Place the contents of another sequence (which may be the same one as this!)
+	 * at the end of this sequence, in O(log n) time. The current element (if any)
+	 * is unchanged; if there was none, there still is none.
+	 *
+	 * @param other a sequence whose contents will be placed at the end
+	 * @exception NullPointerException Indicates that other is null.
+	 * @exception ArithmeticException Indicates that the result would have more
+	 *                                than Integer.MAX_VALUE elements, in which
+	 *                                case this sequence is unchanged.
+	 **/
+	public void concat(PersistentSequence<E> other) {
+		assert wellFormed() : "invariant failed at start of concat";
+		if (other == null)
+			throw new NullPointerException("other is null");
+		int newSize = Math.addExact(size(root), size(other.root));
+		boolean hadCurrent = isCurrent();
+		root = join(root, other.root);
+		if (!hadCurrent)
+			cursor = newSize;
+		assert wellFormed() : "invariant failed at end of concat";
+	}
+
+	/**
+	 * Remove the current element and all the elements after it, returning them as
+	 * a new sequence, in O(log n) time. Afterwards this sequence has no current
+	 * element, and the current element of the result is its first element.
+	 *
+	 * @return a new sequence holding the elements from the current one on (empty
+	 *         if there is no current element)
+	 **/
+	public PersistentSequence<E> split() {
+		assert wellFormed() : "invariant failed at start of split";
+		Split<E> s = new Split<>();
+		split(root, cursor, s);
+		root = s.before;
+		PersistentSequence<E> result = new PersistentSequence<>();
+		result.root = s.after;
+		assert wellFormed() : "invariant failed at end of split";
+		assert result.wellFormed() : "invariant failed for result of split";
+		return result;
+	}
+
+	/**
+	 * Generate a copy of this sequence in constant time. The copy shares the
+	 * (immutable) tree with this sequence.
+	 *
+	 * @param - none
+	 * @return The return value is a copy of this sequence. Subsequent changes to
+	 *         the copy will not affect the original, nor vice versa. Whatever was
+	 *         current in the original object is now current in the clone.
+	 **/
+	@SuppressWarnings("unchecked")
+	public PersistentSequence<E> clone() {
+		assert wellFormed() : "invariant wrong at start of clone()";
+		try {
+			return (PersistentSequence<E>) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException("This class does not implement Cloneable");
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package edu.uwm.cs351;
+
+import java.util.function.Consumer;
+
+/**
+ * A sequence with the same cursor interface as {@link LinkedSequence}, stored
+ * as an unrolled linked list: a doubly-linked list of chunks, each holding a
+ * small array of consecutive elements. Advancing through a chunk is an array
+ * step rather than a pointer chase, and there is one node per chunk rather
+ * than per element. The cursor is a (chunk, offset) pair.
+ */
+public class UnrolledSequence<E> implements Cloneable {
+	private static final int CHUNK_CAPACITY = 32;
+	private static final int MERGE_THRESHOLD = CHUNK_CAPACITY / 4;
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private static class Chunk {
+		Object[] items = new Object[CHUNK_CAPACITY];
+		int count;
+		Chunk prev, next;
+	}
+
+	private Chunk head, tail; // both null when empty
+	private int size;
+	private Chunk cursorChunk; // null when there is no current element
+	private int cursorOffset;
+
+	/**
+	 * Check the invariant. Report any problem precisely once. Return false if any
+	 * problem is found.
+	 *
+	 * @return whether invariant is currently true
+	 */
+	private boolean wellFormed() {
+		// 1. head and tail are both null exactly when the sequence is empty.
+		if ((head == null) != (tail == null))
+			return report("only one of head and tail is null");
+		if ((head == null) != (size == 0))
+			return report("size is " + size + " but head is " + head);
+		// 2. The chunks are doubly linked from head to tail, each holds between 1
+		// and CHUNK_CAPACITY elements, with null after the elements, and the counts
+		// add up to size. Every chunk holds at least one element, so there can be
+		// no more chunks than size.
+		int count = 0;
+		int chunks = 0;
+		boolean sawCursor = false;
+		Chunk prev = null;
+		for (Chunk c = head; c != null; c = c.next) {
+			if (++chunks > size)
+				return report("too many chunks (cycle?)");
+			if (c.prev != prev)
+				return report("chunk has wrong prev");
+			if (c.items == null || c.items.length != CHUNK_CAPACITY)
+				return report("chunk array is wrong");
+			if (c.count < 1 || c.count > CHUNK_CAPACITY)
+				return report("chunk count out of range: " + c.count);
+			for (int i = c.count; i < CHUNK_CAPACITY; ++i) {
+				if (c.items[i] != null)
+					return report("chunk holds a stale element");
+			}
+			if (c == cursorChunk)
+				sawCursor = true;
+			count += c.count;
+			prev = c;
+		}
+		if (prev != tail)
+			return report("tail is not the last chunk");
+		if (count != size)
+			return report("size is " + size + " but chunks hold " + count);
+		// 3. The cursor is either absent or at an element of a chunk in the list.
+		if (cursorChunk != null) {
+			if (!sawCursor)
+				return report("cursor chunk not in the list");
+			if (cursorOffset < 0 || cursorOffset >= cursorChunk.count)
+				return report("cursor offset out of range: " + cursorOffset);
+		}
+		return true;
+	}
+
+	/**
+	 * Create an empty sequence.
+	 *
+	 * @param - none
+	 * @postcondition This sequence is empty
+	 **/
+	public UnrolledSequence() {
+		head = tail = null;
+		size = 0;
+		cursorChunk = null;
+		assert wellFormed() : "invariant failed in constructor";
+	}
+
+	/**
+	 * Determine the number of elements in this sequence.
+	 *
+	 * @param - none
+	 * @return the number of elements in this sequence
+	 **/
+	public int size() {
+		assert wellFormed() : "invariant wrong at start of size()";
+		return size;
+	}
+
+	/**
+	 * Set the current element at the front of this sequence.
+	 *
+	 * @param - none
+	 * @postcondition The front element of this sequence is now the current element
+	 *                (but if this sequence has no elements at all, then there is no
+	 *                current element).
+	 **/
+	public void start() {
+		assert wellFormed() : "invariant wrong at start of start()";
+		cursorChunk = head;
+		cursorOffset = 0;
+		assert wellFormed() : "invariant wrong at end of start()";
+	}
+
+	/**
+	 * Accessor method to determine whether this sequence has a specified current
+	 * element that can be retrieved with the getCurrent method.
+	 *
+	 * @param - none
+	 * @return true (there is a current element) or false (there is no current
+	 *         element at the moment)
+	 **/
+	public boolean isCurrent() {
+		assert wellFormed() : "invariant wrong at start of isCurrent()";
+		return cursorChunk != null;
+	}
+
+	/**
+	 * Accessor method to get the current element of this sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @return the current element of this sequence
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so getCurrent may not be called.
+	 **/
+	@SuppressWarnings("unchecked")
+	public E getCurrent() {
+		assert wellFormed() : "invariant wrong at start of getCurrent()";
+		if (cursorChunk == null)
+			throw new IllegalStateException("no current element");
+		return (E) cursorChunk.items[cursorOffset];
+	}
+
+	/**
+	 * Move forward, so that the current element is now the next element in this
+	 * sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition If the current element was already the end element of this
+	 *                sequence (with nothing after it), then there is no longer any
+	 *                current element. Otherwise, the new element is the element
+	 *                immediately after the original current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so advance may not be called.
+	 **/
+	public void advance() {
+		assert wellFormed() : "invariant wrong at start of advance()";
+		if (cursorChunk == null)
+			throw new IllegalStateException("no current element");
+		if (++cursorOffset == cursorChunk.count) {
+			cursorChunk = cursorChunk.next;
+			cursorOffset = 0;
+		}
+		assert wellFormed() : "invariant wrong at end of advance()";
+	}
+
+	/**
+	 * Remove the current element from this sequence.
+	 *
+	 * @param - none
+	 * @precondition isCurrent() returns true.
+	 * @postcondition The current element has been removed from this sequence, and
+	 *                the following element (if there is one) is now the new current
+	 *                element. If there was no following element, then there is now
+	 *                no current element.
+	 * @exception IllegalStateException Indicates that there is no current element,
+	 *                                  so removeCurrent may not be called.
+	 **/
+	public void removeCurrent() {
+		assert wellFormed() : "invariant wrong at start of removeCurrent()";
+		if (cursorChunk == null)
+			throw new IllegalStateException("no current element");
+		Chunk c = cursorChunk;
+		System.arraycopy(c.items, cursorOffset + 1, c.items, cursorOffset, c.count - cursorOffset - 1);
+		c.items[--c.count] = null;
+		--size;
+		if (c.count == 0) {
+			cursorChunk = c.next;
+			cursorOffset = 0;
+			unlink(c);
+		} else {
+			if (c.count < MERGE_THRESHOLD) {
+				if (c.prev != null && c.prev.count + c.count <= CHUNK_CAPACITY) {
+					cursorOffset += c.prev.count;
+					c = c.prev;
+					cursorChunk = c;
+				}
+				if (c.next != null && c.count + c.next.count <= CHUNK_CAPACITY)
+					mergeNext(c);
+			}
+			if (cursorOffset == c.count) {
+				cursorChunk = c.next;
+				cursorOffset = 0;
+			}
+		}
+		assert wellFormed() : "invariant wrong at end of removeCurrent()";
+	}
+
+	/**
+	 * Move all the elements of the chunk after c into c, and unlink the emptied
+	 * chunk. The elements must fit.
+	 */
+	private void mergeNext(Chunk c) {
+		Chunk n = c.next;
+		System.arraycopy(n.items, 0, c.items, c.count, n.count);
+		c.count += n.count;
+		n.count = 0;
+		unlink(n);
+	}
+
+	private void unlink(Chunk c) {
+		if (c.prev == null)
+			head = c.next;
+		else
+			c.prev.next = c.next;
+		if (c.next == null)
+			tail = c.prev;
+		else
+			c.next.prev = c.prev;
+	}
+
+	/**
+	 * Create a new empty chunk and link it after the given one (or at the front if
+	 * it is null).
+	 */
+	private Chunk linkAfter(Chunk c) {
+		Chunk n = new Chunk();
+		n.prev = c;
+		n.next = c == null ? head : c.next;
+		if (n.next == null)
+			tail = n;
+		else
+			n.next.prev = n;
+		if (c == null)
+			head = n;
+		else
+			c.next = n;
+		return n;
+	}
+
+	/**
+	 * Add an element without checking the invariant: before the current element,
+	 * or at the end if there is none. The new element becomes current.
+	 */
+	private void doInsert(Object element) {
+		Chunk c = cursorChunk;
+		int off = cursorOffset;
+		if (c == null) {
+			c = tail;
+			if (c == null || c.count == CHUNK_CAPACITY)
+				c = linkAfter(c);
+			off = c.count;
+		} else if (c.count == CHUNK_CAPACITY) {
+			// split the full chunk in half
+			Chunk n = linkAfter(c);
+			int half = CHUNK_CAPACITY / 2;
+			System.arraycopy(c.items, half, n.items, 0, CHUNK_CAPACITY - half);
+			for (int i = half; i < CHUNK_CAPACITY; ++i)
+				c.items[i] = null;
+			n.count = CHUNK_CAPACITY - half;
+			c.count = half;
+			if (off >= half) {
+				c = n;
+				off -= half;
+			}
+		}
+		System.arraycopy(c.items, off, c.items, off + 1, c.count - off);
+		c.items[off] = element;
+		++c.count;
+		++size;
+		cursorChunk = c;
+		cursorOffset = off;
+	}
+
+	/**
+	 * Add a new element to this sequence, before the current element (if any).
+	 *
+	 * @param element the new element that is being added
+	 * @postcondition A new copy of the element has been added to this sequence. If
+	 *                there was a current element, then the new element is placed
+	 *                before the current element. If there was no current element,
+	 *                then the new element is placed at the end of the sequence. In
+	 *                all cases, the new element becomes the new current element of
+	 *                this sequence.
+	 * @exception OutOfMemoryError Indicates insufficient memory for increasing the
+	 *                             sequence.
+	 **/
+	public void insert(E element) {
+		assert wellFormed() : "invariant failed at start of insert";
+		doInsert(element);
+		assert wellFormed() : "invariant failed at end of insert";
+	}
+
+	/**
+	 * Place the contents of another sequence (which may be the same one as this!)
+	 * into this sequence before the current element (if any).
+	 *
+	 * @param addend a sequence whose contents will be placed into this sequence
+	 * @precondition The parameter, addend, is not null.
+	 * @postcondition The elements from addend have been placed into this sequence.
+	 *                The current element of this sequence (if any) is unchanged.
+	 *                The addend is unchanged.
+	 * @exception NullPointerException Indicates that addend is null.
+	 * @exception OutOfMemoryError     Indicates insufficient memory to increase the
+	 *                                 size of this sequence.
+	 **/
+	public void insertAll(UnrolledSequence<E> addend) {
+		assert wellFormed() : "invariant failed at start of insertAll";
+		if (addend == null)
+			throw new NullPointerException("addend is null");
+		if (addend.size == 0)
+			return;
+		Object[] copy = new Object[addend.size];
+		int i = 0;
+		for (Chunk c = addend.head; c != null; c = c.next) {
+			System.arraycopy(c.items, 0, copy, i, c.count);
+			i += c.count;
+		}
+		boolean hadCurrent = cursorChunk != null;
+		for (Object x : copy) {
+			doInsert(x);
+			// move back to the original current element (or off the end)
+			if (++cursorOffset == cursorChunk.count) {
+				cursorChunk = cursorChunk.next;
+				cursorOffset = 0;
+			}
+		}
+		assert hadCurrent == (cursorChunk != null);
+		assert wellFormed() : "invariant failed at end of insertAll";
+	}
+
+	/**
+	 * Generate a copy of this sequence.
+	 *
+	 * @param - none
+	 * @return The return value is a copy of this sequence. Subsequent changes to
+	 *         the copy will not affect the original, nor vice versa. Whatever was
+	 *         current in the original object is now current in the clone.
+	 * @exception OutOfMemoryError Indicates insufficient memory for creating the
+	 *                             clone.
+	 **/
+	@SuppressWarnings("unchecked")
+	public UnrolledSequence<E> clone() {
+		assert wellFormed() : "invariant wrong at start of clone()";
+		UnrolledSequence<E> result;
+		try {
+			result = (UnrolledSequence<E>) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException("This class does not implement Cloneable");
+		}
+		result.head = result.tail = result.cursorChunk = null;
+		for (Chunk c = head; c != null; c = c.next) {
+			Chunk copy = result.linkAfter(result.tail);
+			System.arraycopy(c.items, 0, copy.items, 0, c.count);
+			copy.count = c.count;
+			if (c == cursorChunk)
+				result.cursorChunk = copy;
+		}
+		assert wellFormed() : "invariant wrong at end of clone()";
+		assert result.wellFormed() : "invariant wrong for result of clone()";
+		return result;
+	}
+}
@@ -0,0 +1,479 @@
+package edu.uwm.cs351;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.util.AbstractEntry;
+import edu.uwm.cs351.util.Primes;
+
+/**
+ * Multiset of strings counted over a sliding window of time buckets. The
+ * counts are kept in a double-hashed table (the same as {@link WordMultiset})
+ * holding the total for the whole window, and each bucket of the window
+ * remembers which entries it added to and by how much. When the window
+ * moves forward with {@link #tick()}, only the entries touched in the
+ * expiring bucket are adjusted, and entries whose count reaches zero are
+ * removed from the table. Looking up a count never depends on the window
+ * length.
+ */
+public class WindowedWordMultiset extends AbstractMap<String, Integer> {
+	private static class MyEntry extends AbstractEntry<String, Integer> {
+		String string;
+		int count; // total over all buckets in the window
+		long lastTick = -1; // tick in which this entry was last added to
+		int lastPos; // index in the bucket of lastTick
+
+		MyEntry(String s) {
+			string = s;
+		}
+
+		@Override // required
+		public String getKey() {
+			return string;
+		}
+
+		@Override // required
+		public Integer getValue() {
+			return count;
+		}
+	}
+
+	/**
+	 * The additions made during one tick: parallel arrays of entries and the
+	 * amount each one was increased by.
+	 */
+	private static class Bucket {
+		MyEntry[] entries = new MyEntry[INITIAL_BUCKET_CAPACITY];
+		int[] counts = new int[INITIAL_BUCKET_CAPACITY];
+		int size;
+
+		void append(MyEntry e, int c) {
+			if (size == entries.length) {
+				MyEntry[] newEntries = new MyEntry[size * 2];
+				int[] newCounts = new int[size * 2];
+				System.arraycopy(entries, 0, newEntries, 0, size);
+				System.arraycopy(counts, 0, newCounts, 0, size);
+				entries = newEntries;
+				counts = newCounts;
+			}
+			entries[size] = e;
+			counts[size] = c;
+			++size;
+		}
+	}
+
+	private static final int INITIAL_CAPACITY = 7;
+	private static final int INITIAL_BUCKET_CAPACITY = 8;
+
+	private MyEntry[] data;
+	private int numUsed;
+	private int numEntries;
+	private int version;
+
+	private final Bucket[] window;
+	private int current; // index of the bucket receiving additions
+	private long tick; // number of times tick() has been called
+
+	private static MyEntry PLACE_HOLDER = new MyEntry(null);
+
+	/**
+	 * Hash the key to a table index, following double hashing, returning the first
+	 * index that (1) includes an entry with the key, or (2) has null, or (3) has a
+	 * placeholder (if phOK is true *and* the key cannot be found).
+	 *
+	 * @param key  string to look for, must not be null
+	 * @param phOK whether we return a slot with a placeholder in preference to an
+	 *             empty slot
+	 * @return first index meeting the requirements using double hashing.
+	 */
+	private int hash(String key, boolean phOK) {
+		int phIndex = -1;
+		int h = key.hashCode();
+		int hOne = DoubleHashing.first(h, data.length);
+		if (data[hOne] == PLACE_HOLDER)
+			phIndex = hOne;
+		else if (data[hOne] == null || data[hOne].getKey().equals(key))
+			return hOne;
+
+		int hTwo = DoubleHashing.step(h, data.length);
+
+		for (;;) {
+			hOne = DoubleHashing.next(hOne, hTwo, data.length);
+			if (data[hOne] == PLACE_HOLDER) {
+				if (phIndex == -1)
+					phIndex = hOne;
+			} else if (data[hOne] == null) {
+				if (phOK && phIndex != -1) {
+					return phIndex;
+				} else
+					return hOne;
+			} else if (data[hOne].getKey().equals(key))
+				return hOne;
+		}
+	}
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private static boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	/**
+	 * Check the invariant. Returns false if any problem is found.
+	 *
+	 * @return whether invariant is currently true. If false is returned then
+	 *         exactly one problem has been reported.
+	 */
+	private boolean wellFormed() {
+		// 1. The data array must not be null, and must have the larger of twin
+		// primes as its length.
+		if (data == null)
+			return report("data is null");
+		if (data.length < INITIAL_CAPACITY)
+			return report("data.length is too small");
+		if (!Primes.isPrime(data.length) || !Primes.isPrime(data.length - 2))
+			return report("array size is not the larger of twin primes");
+		// 2. numUsed and numEntries count the non-null and real entries, every real
+		// entry has a key and a positive count and can be found by hash.
+		int countUsed = 0;
+		int countEntries = 0;
+		for (int i = 0; i < data.length; ++i) {
+			if (data[i] != null) {
+				++countUsed;
+				if (data[i] != PLACE_HOLDER) {
+					++countEntries;
+					if (data[i].string == null)
+						return report("entry key is null");
+					if (data[i].count < 1)
+						return report("invalid entry count");
+					if (hash(data[i].string, false) != i)
+						return report("entry can't be found");
+				}
+			}
+		}
+		if (countUsed != numUsed)
+			return report("incorrect numUsed");
+		if (countEntries != numEntries)
+			return report("incorrect numEntries");
+		// 3. The number of used entries is never more than half the array length.
+		if ((numUsed * 2) > data.length)
+			return report("array is too full");
+		// 4. The window has at least one bucket and current is in range.
+		if (window == null || window.length < 1)
+			return report("window is empty");
+		if (current < 0 || current >= window.length)
+			return report("current bucket out of range");
+		// 5. Each bucket records positive additions, and the count of every live
+		// entry is the sum of its additions in the window.
+		Map<MyEntry, Integer> sums = new IdentityHashMap<>();
+		for (Bucket b : window) {
+			if (b == null)
+				return report("null bucket");
+			for (int i = 0; i < b.size; ++i) {
+				if (b.entries[i] == null)
+					return report("null entry in bucket");
+				if (b.counts[i] < 1)
+					return report("non-positive addition in bucket");
+				if (b.entries[i].count > 0)
+					sums.merge(b.entries[i], b.counts[i], Integer::sum);
+			}
+		}
+		for (int i = 0; i < data.length; ++i) {
+			MyEntry e = data[i];
+			if (e == null || e == PLACE_HOLDER)
+				continue;
+			Integer sum = sums.get(e);
+			if (sum == null || sum != e.count)
+				return report("count for " + e.string + " is " + e.count + " but window has " + sum);
+			// 6. An entry added to this tick knows where its addition is.
+			if (e.lastTick == tick) {
+				Bucket b = window[current];
+				if (e.lastPos < 0 || e.lastPos >= b.size || b.entries[e.lastPos] != e)
+					return report("lastPos wrong for " + e.string);
+			} else if (e.lastTick > tick)
+				return report("lastTick in the future for " + e.string);
+		}
+		return true;
+	}
+
+	/**
+	 * Creates an empty windowed multiset.
+	 *
+	 * @param numBuckets number of ticks a count stays in the multiset, must be
+	 *                   positive
+	 * @throws IllegalArgumentException if numBuckets is not positive
+	 */
+	public WindowedWordMultiset(int numBuckets) {
+		if (numBuckets < 1)
+			throw new IllegalArgumentException("window must have at least one bucket: " + numBuckets);
+		data = new MyEntry[INITIAL_CAPACITY];
+		window = new Bucket[numBuckets];
+		for (int i = 0; i < numBuckets; ++i)
+			window[i] = new Bucket();
+		current = 0;
+		tick = 0;
+		assert wellFormed() : "invariant false at end of constructor";
+	}
+
+	/**
+	 * Return the number of buckets in the window.
+	 *
+	 * @return number of ticks that a count is kept
+	 */
+	public int getWindowLength() {
+		return window.length;
+	}
+
+	@Override // required
+	public int size() {
+		assert wellFormed() : "invariant false at start of size()";
+		return numEntries;
+	}
+
+	@Override // efficiency
+	public Integer get(Object o) {
+		assert wellFormed() : "invariant false at start of get()";
+		if (!(o instanceof String))
+			return null;
+		int i = hash((String) o, false);
+		if (data[i] == null)
+			return null;
+		return data[i].count;
+	}
+
+	@Override // efficiency
+	public boolean containsKey(Object o) {
+		return get(o) != null;
+	}
+
+	/**
+	 * Add one copy of a string to the current bucket.
+	 *
+	 * @param str the string to add (must not be null)
+	 * @return true if str was not already in the window
+	 * @throws NullPointerException if str is null
+	 */
+	public boolean add(String str) {
+		return add(str, 1);
+	}
+
+	/**
+	 * Add copies of a string to the current bucket. The copies are counted until
+	 * the bucket expires.
+	 *
+	 * @param str the string to add (must not be null)
+	 * @param n   number of copies to add, must be positive
+	 * @return true if str was not already in the window
+	 * @throws NullPointerException     if str is null
+	 * @throws IllegalArgumentException if n is not positive
+	 * @throws ArithmeticException      if the count of str, in the window or in
+	 *                                  the current bucket, would overflow
+	 */
+	public boolean add(String str, int n) {
+		assert wellFormed() : "invariant false at start of add";
+		if (str == null)
+			throw new NullPointerException("str is null");
+		if (n < 1)
+			throw new IllegalArgumentException("must add a positive number: " + n);
+		boolean result = false;
+		int index = hash(str, true);
+		MyEntry e = data[index];
+		Bucket b = window[current];
+		// check both sums before anything is changed
+		boolean present = e != null && e != PLACE_HOLDER;
+		int newCount = present ? Math.addExact(e.count, n) : n;
+		int newBucketCount = present && e.lastTick == tick ? Math.addExact(b.counts[e.lastPos], n) : n;
+		if (!present) {
+			if (e == null)
+				++numUsed;
+			e = new MyEntry(str);
+			data[index] = e;
+			++numEntries;
+			++version;
+			result = true;
+		}
+		e.count = newCount;
+		if (e.lastTick == tick) {
+			b.counts[e.lastPos] = newBucketCount;
+		} else {
+			e.lastTick = tick;
+			e.lastPos = b.size;
+			b.append(e, n);
+		}
+		if ((numUsed * 2) > data.length)
+			rehash();
+		assert wellFormed() : "invariant false at end of add";
+		return result;
+	}
+
+	/**
+	 * Move the window forward one tick. The oldest bucket expires: everything
+	 * added during it is subtracted, and strings whose count drops to zero are
+	 * removed. The cost is proportional to the number of distinct strings added
+	 * in the expiring bucket, and so is constant amortized over the additions.
+	 */
+	public void tick() {
+		assert wellFormed() : "invariant false at start of tick";
+		current = (current + 1) % window.length;
+		++tick;
+		Bucket b = window[current];
+		for (int i = 0; i < b.size; ++i) {
+			MyEntry e = b.entries[i];
+			b.entries[i] = null;
+			if (e.count == 0)
+				continue; // removed explicitly
+			e.count -= b.counts[i];
+			if (e.count == 0) {
+				data[hash(e.string, false)] = PLACE_HOLDER;
+				--numEntries;
+				++version;
+			}
+		}
+		b.size = 0;
+		if (numUsed > 0 && numEntries * 4 < numUsed && data.length > INITIAL_CAPACITY)
+			rehash();
+		assert wellFormed() : "invariant false at end of tick";
+	}
+
+	/**
+	 * Create a new data array that is at least four times the number of entries
+	 * (at least INITIAL_CAPACITY). The new array will have no place holders.
+	 */
+	private void rehash() {
+		int newSize = INITIAL_CAPACITY;
+		while (newSize < (4 * numEntries)) {
+			newSize = Primes.nextTwinPrime(newSize);
+		}
+		MyEntry[] oldData = data;
+		data = new MyEntry[newSize];
+		for (MyEntry e : oldData) {
+			if (e != null && e != PLACE_HOLDER)
+				data[hash(e.string, false)] = e;
+		}
+		numUsed = numEntries;
+	}
+
+	/**
+	 * Remove the entry at the given index, which must be a real entry. Its
+	 * additions stay in their buckets and are ignored when they expire.
+	 */
+	private void removeAt(int i) {
+		data[i].count = 0;
+		data[i] = PLACE_HOLDER;
+		--numEntries;
+		++version;
+	}
+
+	@Override // efficiency
+	public Integer remove(Object key) {
+		assert wellFormed() : "invariant false at start of remove";
+		if (!(key instanceof String))
+			return null;
+		int i = hash((String) key, false);
+		if (data[i] == null)
+			return null;
+		Integer result = data[i].count;
+		removeAt(i);
+		assert wellFormed() : "invariant false at end of remove";
+		return result;
+	}
+
+	@Override // efficiency
+	public void clear() {
+		assert wellFormed() : "invariant false at start of clear";
+		if (numUsed == 0)
+			return;
+		data = new MyEntry[INITIAL_CAPACITY];
+		for (Bucket b : window) {
+			for (int i = 0; i < b.size; ++i)
+				b.entries[i] = null;
+			b.size = 0;
+		}
+		numUsed = 0;
+		numEntries = 0;
+		++version;
+		assert wellFormed() : "invariant false at end of clear";
+	}
+
+	private final EntrySet entrySet = new EntrySet();
+
+	@Override // required
+	public Set<Map.Entry<String, Integer>> entrySet() {
+		assert wellFormed() : "invariant broken in entrySet";
+		return entrySet;
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Integer>> {
+		@Override // required
+		public int size() {
+			return WindowedWordMultiset.this.size();
+		}
+
+		@Override // required
+		public Iterator<Map.Entry<String, Integer>> iterator() {
+			assert wellFormed() : "invariant broken in iterator";
+			return new EntrySetIterator();
+		}
+
+		@Override // efficiency
+		public void clear() {
+			WindowedWordMultiset.this.clear();
+		}
+	}
+
+	private class EntrySetIterator implements Iterator<Map.Entry<String, Integer>> {
+		private int index = -1; // last index returned
+		private int remaining = numEntries;
+		private boolean canRemove;
+		private int colVersion = version;
+
+		private void checkVersion() {
+			if (version != colVersion)
+				throw new ConcurrentModificationException("stale");
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			checkVersion();
+			return remaining > 0;
+		}
+
+		@Override // required
+		public Map.Entry<String, Integer> next() {
+			if (!hasNext())
+				throw new NoSuchElementException("no more");
+			do {
+				++index;
+			} while (data[index] == null || data[index] == PLACE_HOLDER);
+			--remaining;
+			canRemove = true;
+			return data[index];
+		}
+
+		@Override // implementation
+		public void remove() {
+			checkVersion();
+			if (!canRemove)
+				throw new IllegalStateException("Can't remove");
+			removeAt(index);
+			canRemove = false;
+			colVersion = version;
+			assert wellFormed() : "invariant broken by iterator remove";
+		}
+	}
+}
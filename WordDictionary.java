@@ -0,0 +1,252 @@
+package edu.uwm.cs351;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.util.Primes;
+
+/**
+ * Dictionary assigning each distinct word a small int id, in the order that
+ * the words are first seen. Ids are never reused or removed. The words are
+ * placed in a hash table (double hashing over twin primes, like
+ * {@link WordMultiset}) whose slots hold ids rather than references.
+ * <p>
+ * A dictionary may be shared by any number of threads. Looking up a word or
+ * an id never locks: an id is written into the table (with release
+ * semantics) only after its word is in place and counted, and the table and
+ * the words are replaced together when the table grows. Giving out a new id
+ * locks the dictionary. With assertions enabled, every operation also locks
+ * the dictionary to check the invariant.
+ */
+public class WordDictionary {
+	private static final int INITIAL_CAPACITY = 7;
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * The table and the words it refers to. The words array has room for as
+	 * many ids as the table can hold before it must grow, so it is only
+	 * replaced when the table is.
+	 */
+	private static final class Tables {
+		final String[] words; // words[id] is the word with that id
+		final int[] table; // id+1 of the word hashed here, or 0 if empty
+
+		Tables(String[] words, int[] table) {
+			this.words = words;
+			this.table = table;
+		}
+	}
+
+	private volatile Tables tables;
+	private volatile int numWords; // written after the word, before its slot
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
+
+	/**
+	 * Used to report an error found when checking the invariant. By providing a
+	 * string, this will help debugging the class if the invariant should fail.
+	 *
+	 * @param error string to print to report the exact error found
+	 * @return false always
+	 */
+	private static boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private static int slot(Tables t, int index) {
+		return (int) SLOT.getAcquire(t.table, index);
+	}
+
+	/**
+	 * Hash the word to a table index, following double hashing, returning the
+	 * first index that is either empty or holds the id of the word.
+	 *
+	 * @param t    tables to look in
+	 * @param word string to look for, must not be null
+	 * @return index where the word is or belongs
+	 */
+	private static int hash(Tables t, String word) {
+		int[] table = t.table;
+		int h = word.hashCode();
+		int hOne = DoubleHashing.first(h, table.length);
+		int hTwo = DoubleHashing.step(h, table.length);
+		for (;;) {
+			int id = slot(t, hOne) - 1;
+			if (id < 0 || t.words[id].equals(word))
+				return hOne;
+			hOne = DoubleHashing.next(hOne, hTwo, table.length);
+		}
+	}
+
+	/**
+	 * Check the invariant, holding the lock so that no id can be given out
+	 * meanwhile. Returns false if any problem is found.
+	 *
+	 * @return whether invariant is currently true. If false is returned then
+	 *         exactly one problem has been reported.
+	 */
+	private synchronized boolean wellFormed() {
+		// 1. The arrays exist, and the table length is the larger of twin primes.
+		Tables t = tables;
+		if (t == null || t.words == null || t.table == null)
+			return report("arrays are null");
+		String[] words = t.words;
+		int[] table = t.table;
+		if (table.length < INITIAL_CAPACITY || !Primes.isPrime(table.length)
+				|| !Primes.isPrime(table.length - 2))
+			return report("table size is not the larger of twin primes");
+		if (words.length != table.length / 2 + 1)
+			return report("words has room for " + words.length + " ids, but the table holds " + (table.length / 2 + 1));
+		// 2. Every id below numWords has a non-null word, and no others.
+		if (numWords < 0 || numWords > words.length)
+			return report("numWords out of range");
+		for (int i = 0; i < words.length; ++i) {
+			if ((words[i] == null) == (i < numWords))
+				return report("wrong word at id " + i);
+		}
+		// 3. The table holds each id exactly once, where hash would find it.
+		int count = 0;
+		for (int i = 0; i < table.length; ++i) {
+			int id = table[i] - 1;
+			if (id < 0)
+				continue;
+			++count;
+			if (id >= numWords)
+				return report("table has unknown id " + id);
+			if (hash(t, words[id]) != i)
+				return report("word " + words[id] + " can't be found");
+		}
+		if (count != numWords)
+			return report("table has " + count + " ids, but there are " + numWords + " words");
+		// 4. The table is never more than half full.
+		if (numWords * 2 > table.length)
+			return report("table is too full");
+		return true;
+	}
+
+	/**
+	 * Creates an empty dictionary.
+	 */
+	public WordDictionary() {
+		tables = new Tables(new String[INITIAL_CAPACITY / 2 + 1], new int[INITIAL_CAPACITY]);
+		numWords = 0;
+		assert wellFormed() : "invariant false at end of constructor";
+	}
+
+	/**
+	 * Return the number of words with ids.
+	 *
+	 * @return number of distinct words seen
+	 */
+	public int size() {
+		assert wellFormed() : "invariant false at start of size()";
+		return numWords;
+	}
+
+	/**
+	 * Return the id of a word, or -1 if the word has no id.
+	 *
+	 * @param word word to look for, must not be null
+	 * @return id of the word, or -1
+	 * @throws NullPointerException if word is null
+	 */
+	public int find(String word) {
+		assert wellFormed() : "invariant false at start of find()";
+		if (word == null)
+			throw new NullPointerException("word is null");
+		Tables t = tables;
+		return slot(t, hash(t, word)) - 1;
+	}
+
+	/**
+	 * Return the id of a word, giving it the next id if it doesn't have one.
+	 *
+	 * @param word word to look up, must not be null
+	 * @return id of the word
+	 * @throws NullPointerException if word is null
+	 */
+	public int idOf(String word) {
+		return idOf(word, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Return the id of a word, giving it the next id if it doesn't have one and
+	 * that id would be less than the limit. Checking the limit and giving out the
+	 * id happen together, so no other thread can give out an id in between.
+	 *
+	 * @param word  word to look up, must not be null
+	 * @param limit number of ids that may be given out
+	 * @return id of the word (which may be at least the limit, if it was given
+	 *         earlier), or -1 if the word has no id and there are already limit
+	 *         words
+	 * @throws NullPointerException if word is null
+	 */
+	public int idOf(String word, int limit) {
+		int id = find(word);
+		if (id >= 0)
+			return id;
+		synchronized (this) {
+			// another thread may have given it an id since
+			Tables t = tables;
+			int index = hash(t, word);
+			if (t.table[index] != 0)
+				return t.table[index] - 1;
+			if (numWords >= limit)
+				return -1;
+			id = numWords;
+			t.words[id] = word;
+			// count the word before publishing its id, so that wordOf accepts
+			// the id in any thread that finds it
+			numWords = id + 1;
+			SLOT.setRelease(t.table, index, id + 1);
+			if (numWords * 2 > t.table.length)
+				rehash();
+		}
+		assert wellFormed() : "invariant false at end of idOf()";
+		return id;
+	}
+
+	/**
+	 * Return the dictionary's copy of a word, giving it an id if it doesn't have
+	 * one, so that equal words from different sources become the same object.
+	 *
+	 * @param word word to look up, must not be null
+	 * @return the word with the same id, equal to the given one
+	 * @throws NullPointerException if word is null
+	 */
+	public String intern(String word) {
+		return wordOf(idOf(word));
+	}
+
+	/**
+	 * Return the word with the given id.
+	 *
+	 * @param id id given to the word
+	 * @return the word with the id
+	 * @throws IndexOutOfBoundsException if no word has the id
+	 */
+	public String wordOf(int id) {
+		assert wellFormed() : "invariant false at start of wordOf()";
+		if (id < 0 || id >= numWords)
+			throw new IndexOutOfBoundsException("no word has id " + id);
+		return tables.words[id];
+	}
+
+	/**
+	 * Create a new table that is at least four times the number of words, and
+	 * publish it with room for the words it can hold. Called with the lock.
+	 */
+	private void rehash() {
+		int newSize = INITIAL_CAPACITY;
+		while (newSize < 4 * numWords)
+			newSize = Primes.nextTwinPrime(newSize);
+		Tables t = new Tables(Arrays.copyOf(tables.words, newSize / 2 + 1), new int[newSize]);
+		for (int id = 0; id < numWords; ++id)
+			t.table[hash(t, t.words[id])] = id + 1;
+		tables = t;
+	}
+}
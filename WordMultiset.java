@@ -1,7 +1,16 @@
 package edu.uwm.cs351;
 
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
@@ -19,6 +28,7 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 	private static class MyEntry extends AbstractEntry<String, Integer> {
 		String string;
 		int count;
+		int epoch; // snapshot epoch in which this entry was created
 
 		MyEntry(String s) {
 			this(s, 1);
@@ -49,12 +59,43 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 		}
 	}
 
+	/**
+	 * How collisions are resolved in the hash table.
+	 */
+	public enum Probing {
+		/**
+		 * Double hashing over tables whose size is the larger of twin primes. Removed
+		 * entries leave place holders until the next rehash.
+		 */
+		DOUBLE_HASHING,
+		/**
+		 * Robin Hood linear probing over power-of-two tables, indexed by masking a
+		 * mixed hash code. Removal shifts the following entries back, so there are
+		 * no place holders.
+		 */
+		ROBIN_HOOD
+	}
+
 	private static final int INITIAL_CAPACITY = 7;
+	private static final int INITIAL_POWER_CAPACITY = 8;
+	private static final int MAX_CAPACITY = 1 << 30; // largest size rehash aims for
+	private static final int MIN_SNAPSHOT_ENTRY = 2; // varint length and count
+	private static final int MAX_SNAPSHOT_SLACK = 4; // recorded capacity / what rehash would pick
+	private static final int SNAPSHOT_MAGIC = 0x574D5332; // "WMS2"; "WMS1" had no probing
 
 	private MyEntry[] data;
 	private int numUsed;
 	private int numEntries;
 	private int version;
+	private final Probing probing;
+	private int epoch; // number of snapshots taken, or -1 in a snapshot
+	private boolean dataShared; // whether data is part of lastSnapshot
+	private Map<String, Integer> lastSnapshot;
+
+	private final CheckPolicy.Checker checker; // checks nothing in a snapshot
+	private int sliceStart; // first slot for the next slice of an incremental check
+	private int sliceUsed, sliceEntries; // counted before sliceStart in this pass
+	private MyEntry[] sliceData; // table of this pass; a new table starts a new pass
 
 	private static MyEntry PLACE_HOLDER = new MyEntry(null);
 
@@ -63,7 +104,8 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 	 * index that (1) includes an entry with the key, or (2) has null, or (3) has a
 	 * placeholder (if phOK is true *and* the key cannot be found). This code
 	 * assumes that double hashing will find a valid index. It may run forever
-	 * otherwise.
+	 * otherwise. With Robin Hood probing, the index returned for a missing key may
+	 * instead hold an entry for a different key (see {@link #robinHoodFind}).
 	 * 
 	 * @param key  string to look for, must not be null
 	 * @param phOK whether we return a slot with a placeholder in preference to an
@@ -71,25 +113,31 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 	 * @return first index meeting the requirements using double hashing.
 	 */
 	private int hash(String key, boolean phOK) {
+		int index = locate(key, phOK);
+		if (CollectionMetrics.ENABLED)
+			CollectionMetrics.get().recordProbe(probesTo(key, index));
+		return index;
+	}
+
+	/**
+	 * Find the index as {@link #hash} does, without recording metrics, so that
+	 * checking the invariant and rehashing do not count as lookups.
+	 */
+	private int locate(String key, boolean phOK) {
+		if (probing == Probing.ROBIN_HOOD)
+			return robinHoodFind(key);
 		int phIndex = -1;
 		int h = key.hashCode();
-		int hOne = h % data.length;
-		if (hOne < 0)
-			hOne += data.length;
+		int hOne = DoubleHashing.first(h, data.length);
 		if (data[hOne] == PLACE_HOLDER)
 			phIndex = hOne;
 		else if (data[hOne] == null || data[hOne].getKey().equals(key))
 			return hOne;
 
-		int hTwo = h % (data.length - 2);
-		if (hTwo < 0)
-			hTwo += (data.length - 2);
-		hTwo += 1;
+		int hTwo = DoubleHashing.step(h, data.length);
 
 		for (;;) {
-			hOne += hTwo;
-			if (hOne >= data.length)
-				hOne = hOne % data.length;
+			hOne = DoubleHashing.next(hOne, hTwo, data.length);
 			if (data[hOne] == PLACE_HOLDER) {
 				if (phIndex == -1)
 					phIndex = hOne;
@@ -103,6 +151,131 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 		}
 	}
 
+	/**
+	 * Return the number of slots that {@link #locate} examined for the key,
+	 * given the index it returned. The count is worked out again here rather
+	 * than kept in a field, so that looking up keys in a snapshot changes
+	 * nothing and any number of threads can do it at once.
+	 */
+	private int probesTo(String key, int index) {
+		if (probing == Probing.ROBIN_HOOD) {
+			int mask = data.length - 1;
+			return ((index - (mix(key.hashCode()) & mask)) & mask) + 1;
+		}
+		// locate stops at the first slot that is empty or has the key
+		int h = key.hashCode();
+		int i = DoubleHashing.first(h, data.length);
+		int step = DoubleHashing.step(h, data.length);
+		int probes = 1;
+		while (data[i] != null && (data[i] == PLACE_HOLDER || !data[i].getKey().equals(key))) {
+			i = DoubleHashing.next(i, step, data.length);
+			++probes;
+		}
+		return probes;
+	}
+
+	/**
+	 * Scramble the bits of a hash code so that the low bits, which are all that
+	 * a power-of-two table uses, depend on every bit of the original (the
+	 * finalizer of MurmurHash3).
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Return how far the entry at index i is from the index it hashes to, in a
+	 * power-of-two table.
+	 */
+	private int probeDistance(MyEntry e, int i) {
+		int mask = data.length - 1;
+		return (i - (mix(e.string.hashCode()) & mask)) & mask;
+	}
+
+	/**
+	 * Find the key in a Robin Hood table. Entries are kept so that, along any
+	 * probe sequence, no entry is further from its home index than the next
+	 * one is from its home index plus one. So the search can stop as soon as it
+	 * reaches an entry closer to home than the key would be.
+	 * 
+	 * @param key string to look for, must not be null
+	 * @return index of the entry with the key if there is one, otherwise the index
+	 *         where the key belongs, which is either empty or holds an entry that
+	 *         the key would displace
+	 */
+	private int robinHoodFind(String key) {
+		int mask = data.length - 1;
+		int i = mix(key.hashCode()) & mask;
+		for (int dist = 0;; ++dist) {
+			MyEntry e = data[i];
+			if (e == null || e.string.equals(key) || probeDistance(e, i) < dist)
+				return i;
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Place an entry whose key is not in the Robin Hood table. Whenever the entry
+	 * being placed is further from home than the one in the slot, they swap, and
+	 * the displaced entry continues along the probe sequence.
+	 */
+	private void robinHoodInsert(MyEntry e) {
+		int mask = data.length - 1;
+		int i = mix(e.string.hashCode()) & mask;
+		for (int dist = 0;; ++dist) {
+			MyEntry there = data[i];
+			if (there == null) {
+				data[i] = e;
+				sliceCounted(i, 1, 1); // the only slot that was not in use before
+				return;
+			}
+			int d = probeDistance(there, i);
+			if (d < dist) {
+				data[i] = e;
+				e = there;
+				dist = d;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Remove the entry at index i of the Robin Hood table, shifting each following
+	 * entry that is not at its home index back by one slot.
+	 */
+	private void robinHoodRemove(int i) {
+		int mask = data.length - 1;
+		int j = (i + 1) & mask;
+		while (data[j] != null && probeDistance(data[j], j) > 0) {
+			data[i] = data[j];
+			i = j;
+			j = (j + 1) & mask;
+		}
+		data[i] = null;
+		sliceCounted(i, -1, -1); // the only slot that is no longer in use
+	}
+
+	/**
+	 * Note for the incremental check that the slot at index i gained or lost a
+	 * use and an entry. Slots before sliceStart have already been counted in this
+	 * pass, so the counts are brought up to date; later slots will be counted
+	 * when the pass reaches them.
+	 * 
+	 * @param used    change in the number of slots in use at i
+	 * @param entries change in the number of real entries at i
+	 */
+	private void sliceCounted(int i, int used, int entries) {
+		if (sliceData == data && i < sliceStart) {
+			sliceUsed += used;
+			sliceEntries += entries;
+		}
+	}
+
 	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: " + s);
 
 	/**
@@ -118,21 +291,109 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 	}
 
 	/**
-	 * Check the invariant. Returns false if any problem is found.
+	 * Check the invariant, as much of it as the check policy asks for. Returns
+	 * false if any problem is found.
+	 * 
+	 * @return whether invariant is currently true (as far as checked). If false
+	 *         is returned then exactly one problem has been reported.
+	 */
+	private boolean wellFormed() {
+		switch (checker.next()) {
+		case SKIP:
+			return true;
+		case SLICE:
+			return checkSlice(checker.getPolicy().getSliceSize());
+		default:
+			return checkAll();
+		}
+	}
+
+	/**
+	 * Check the parts of the invariant that take constant time (1, 7 and 8), and
+	 * the entries in the next slots after the previous slice (5, 6 and the epoch).
+	 * When the slots run out, check the length of the array (2) and the counts (3
+	 * and 4), which changes since the pass started have kept up to date (see
+	 * {@link #sliceCounted}), and start over. A new table starts a new pass.
+	 * 
+	 * @param limit largest number of slots to check
+	 * @return whether the slice is correct. If false is returned then exactly one
+	 *         problem has been reported.
+	 */
+	private boolean checkSlice(int limit) {
+		if (data == null)
+			return report("data is null");
+		if ((numUsed * 2) > data.length)
+			return report("array is too full");
+		if (dataShared && lastSnapshot == null)
+			return report("data shared with a missing snapshot");
+		if (sliceData != data) {
+			sliceData = data;
+			sliceStart = sliceUsed = sliceEntries = 0;
+		}
+		int start = sliceStart;
+		int end = (int) Math.min(data.length, (long) start + limit);
+		for (int i = start; i < end; ++i) {
+			if (data[i] == null)
+				continue;
+			++sliceUsed;
+			if (data[i] == PLACE_HOLDER) {
+				if (probing == Probing.ROBIN_HOOD)
+					return report("place holder in Robin Hood table");
+				continue;
+			}
+			++sliceEntries;
+			if (data[i].getKey() == null)
+				return report("entry key is null");
+			if (data[i].getValue() == null || data[i].getValue() < 1)
+				return report("invalid entry count");
+			if (locate(data[i].getKey(), false) != i)
+				return report("entry can't be found");
+			if (epoch >= 0 && data[i].epoch > epoch)
+				return report("entry from a later epoch");
+		}
+		if (end < data.length) {
+			sliceStart = end;
+			return true;
+		}
+		// the pass is over
+		if (probing == Probing.ROBIN_HOOD) {
+			if (data.length < INITIAL_POWER_CAPACITY || (data.length & (data.length - 1)) != 0)
+				return report("array size is not a power of two, at least eight");
+		} else if (data.length < 7 || !Primes.isPrime(data.length) || !Primes.isPrime(data.length - 2)) {
+			return report("array size is not the larger of twin primes");
+		}
+		if (sliceUsed != numUsed)
+			return report("incorrect numUsed");
+		if (sliceEntries != numEntries)
+			return report("incorrect numEntries");
+		sliceStart = sliceUsed = sliceEntries = 0;
+		return true;
+	}
+
+	/**
+	 * Check the whole invariant. Returns false if any problem is found.
 	 * 
 	 * @return whether invariant is currently true. If false is returned then
 	 *         exactly one problem has been reported.
 	 */
-	private boolean wellFormed() {
+	private boolean checkAll() {
 		// 1. The data array must not be null.
 		if (data == null)
 			return report("data is null");
 		// 2. The length of the array should be the larger of twin primes and at least
-		// the initial capacity (seven).
-		if (data.length < 7)
-			return report("data.length is too small");
-		if (!Primes.isPrime(data.length) || !Primes.isPrime(data.length - 2))
-			return report("array size is not the larger of twin primes");
+		// the initial capacity (seven). With Robin Hood probing, it should be a power
+		// of two, at least eight.
+		if (probing == Probing.ROBIN_HOOD) {
+			if (data.length < INITIAL_POWER_CAPACITY)
+				return report("data.length is too small");
+			if ((data.length & (data.length - 1)) != 0)
+				return report("array size is not a power of two");
+		} else {
+			if (data.length < 7)
+				return report("data.length is too small");
+			if (!Primes.isPrime(data.length) || !Primes.isPrime(data.length - 2))
+				return report("array size is not the larger of twin primes");
+		}
 		// 3. The numUsed should be the number of non-null entries in the array.
 		// 4. The numEntries should be the number of real (non-zombie) entries in the
 		// table.
@@ -143,14 +404,19 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 		for (int i = 0; i < data.length; ++i) {
 			if (data[i] != null) {
 				++countUsed;
-				if (data[i] != PLACE_HOLDER) {
+				if (data[i] == PLACE_HOLDER) {
+					if (probing == Probing.ROBIN_HOOD)
+						return report("place holder in Robin Hood table");
+				} else {
 					++countEntries;
 					if (data[i].getKey() == null)
 						return report("entry key is null");
 					if (data[i].getValue() == null || data[i].getValue() < 1)
 						return report("invalid entry count");
-					if (hash(data[i].getKey(), false) != i)
+					if (locate(data[i].getKey(), false) != i)
 						return report("entry can't be found");
+					if (epoch >= 0 && data[i].epoch > epoch)
+						return report("entry from a later epoch");
 				}
 			}
 		}
@@ -162,6 +428,9 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 		// 7. The number of used entries is never more than half the array length.
 		if ((numUsed * 2) > data.length)
 			return report("array is too full");
+		// 8. If the array is shared with a snapshot, we still have the snapshot.
+		if (dataShared && lastSnapshot == null)
+			return report("data shared with a missing snapshot");
 		return true;
 	}
 
@@ -169,11 +438,78 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 	 * Creates an empty multiset
 	 */
 	public WordMultiset() {
-		data = new MyEntry[INITIAL_CAPACITY];
+		this(Probing.DOUBLE_HASHING);
+	}
+
+	/**
+	 * Creates an empty multiset that resolves collisions in the given way.
+	 * 
+	 * @param probing probing strategy for the table, must not be null
+	 * @throws NullPointerException if probing is null
+	 */
+	public WordMultiset(Probing probing) {
+		this(probing, capacityFor(probing, 0));
+		assert wellFormed() : "invariant false at end of constructor";
+	}
+
+	/**
+	 * Creates an empty multiset with a table of the given size, which must suit
+	 * the probing strategy.
+	 */
+	private WordMultiset(Probing probing, int capacity) {
+		if (probing == null)
+			throw new NullPointerException("probing is null");
+		this.probing = probing;
+		checker = CheckPolicy.getDefault().newChecker();
+		data = new MyEntry[capacity];
 		numEntries = 0;
 		numUsed = 0;
 		version = 0;
-		assert wellFormed() : "invariant false at end of constructor";
+	}
+
+	/**
+	 * Creates a read-only multiset that shares the table of the given one. The
+	 * source must not change the table or its entries afterwards. Its invariant
+	 * is not checked, since checking it would change the checker and the slice
+	 * fields while other threads read the snapshot.
+	 */
+	private WordMultiset(WordMultiset source) {
+		probing = source.probing;
+		checker = CheckPolicy.off().newChecker();
+		data = source.data;
+		numEntries = source.numEntries;
+		numUsed = source.numUsed;
+		epoch = -1;
+	}
+
+	/**
+	 * Return the probing strategy chosen when this multiset was created.
+	 * 
+	 * @return probing strategy, never null
+	 */
+	public Probing getProbing() {
+		return probing;
+	}
+
+	/**
+	 * Return the table size that rehash would choose for the given number of
+	 * entries: the smallest larger twin prime starting from INITIAL_CAPACITY (or
+	 * the smallest power of two starting from INITIAL_POWER_CAPACITY) that is at
+	 * least four times the entries, or at least MAX_CAPACITY if that is less.
+	 */
+	private static int capacityFor(Probing probing, int entries) {
+		long target = Math.min(4L * entries, MAX_CAPACITY);
+		if (probing == Probing.ROBIN_HOOD) {
+			int newSize = INITIAL_POWER_CAPACITY;
+			while (newSize < target)
+				newSize *= 2;
+			return newSize;
+		}
+		int newSize = INITIAL_CAPACITY;
+		while (newSize < target || newSize < 6) {
+			newSize = Primes.nextTwinPrime(newSize);
+		}
+		return newSize;
 	}
 
 	@Override
@@ -184,19 +520,32 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 			throw new IllegalArgumentException("key can't be null");
 		assert wellFormed() : "invariant false at start of put()";
 		Integer oldValue = null;
+		beforeWrite();
 		int index = hash(key, false);
-		if (data[index] == null) {
+		if (probing == Probing.ROBIN_HOOD) {
+			if (data[index] != null && data[index].string.equals(key)) {
+				oldValue = data[index].count;
+				writable(index).count = value;
+			} else {
+				++numEntries;
+				++numUsed;
+				++version;
+				robinHoodInsert(newEntry(key, value));
+			}
+		} else if (data[index] == null) {
 			++numEntries;
 			++numUsed;
 			++version;
-			data[index] = new MyEntry(key, value);
+			data[index] = newEntry(key, value);
+			sliceCounted(index, 1, 1);
 		} else if (data[index] == PLACE_HOLDER) {
 			++numEntries;
 			++version;
-			data[index] = new MyEntry(key, value);
+			data[index] = newEntry(key, value);
+			sliceCounted(index, 0, 1);
 		} else {
 			oldValue = data[index].getValue();
-			data[index].count = value;
+			writable(index).count = value;
 		}
 
 		if ((numUsed * 2) > data.length)
@@ -236,21 +585,34 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 	 * appear in the original array. The new array will have no place holders.
 	 */
 	private void rehash() {
-		int newSize = INITIAL_CAPACITY;
-		while (newSize < (4 * numEntries) || newSize < 6) {
-			newSize = Primes.nextTwinPrime(newSize);
-		}
+		rehash(numEntries);
+	}
+
+	/**
+	 * Rehash into a data array big enough for the given number of entries, which
+	 * must be at least the current number.
+	 */
+	private void rehash(int expected) {
+		long start = CollectionMetrics.ENABLED ? System.nanoTime() : 0;
+		int newSize = capacityFor(probing, expected);
 		MyEntry[] oldData = this.data;
 		data = new MyEntry[newSize];
+		dataShared = false;
+		lastSnapshot = null;
 		int countEntries = 0;
 		for (int i = 0; i < oldData.length; ++i) {
 			if (oldData[i] != null && oldData[i] != PLACE_HOLDER) {
-				data[this.hash(oldData[i].getKey(), false)] = oldData[i];
+				if (probing == Probing.ROBIN_HOOD)
+					robinHoodInsert(oldData[i]);
+				else
+					data[locate(oldData[i].getKey(), false)] = oldData[i];
 				++countEntries;
 				if (countEntries == numEntries)
 					break;
 			}
 		}
+		if (CollectionMetrics.ENABLED)
+			CollectionMetrics.get().recordRehash(System.nanoTime() - start, numUsed - numEntries, oldData.length);
 		numUsed = numEntries;
 	}
 
@@ -286,18 +648,72 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 		if (str == null)
 			return null;
 		int i = hash(str, false);
-		if (data[i] == null || data[i] == PLACE_HOLDER)
+		if (data[i] == null || data[i] == PLACE_HOLDER || !data[i].string.equals(str))
 			return null;
 		else {
-			Integer toReturn = get(str);
-			data[i] = PLACE_HOLDER;
-			++version;
-			--numEntries;
+			Integer toReturn = data[i].count;
+			removeAt(i);
 			assert wellFormed() : "invariant false at end of remove";
 			return toReturn;
 		}
 	}
 
+	/**
+	 * Remove the real entry at index i: leave a place holder, or with Robin Hood
+	 * probing, shift the following entries back.
+	 */
+	private void removeAt(int i) {
+		beforeWrite();
+		if (probing == Probing.ROBIN_HOOD) {
+			robinHoodRemove(i);
+			--numUsed;
+		} else {
+			data[i] = PLACE_HOLDER;
+			sliceCounted(i, 0, -1);
+		}
+		++version;
+		--numEntries;
+	}
+
+	/**
+	 * Prepare to change the data array: if the array is part of a snapshot, work
+	 * on a copy from now on. This copies at most once per snapshot.
+	 */
+	private void beforeWrite() {
+		if (dataShared) {
+			boolean slicing = sliceData == data;
+			data = data.clone();
+			if (slicing)
+				sliceData = data; // same slots, so the pass goes on
+			dataShared = false;
+			lastSnapshot = null;
+		}
+	}
+
+	/**
+	 * Create an entry that belongs to the current epoch.
+	 */
+	private MyEntry newEntry(String key, int count) {
+		MyEntry e = new MyEntry(key, count);
+		e.epoch = epoch;
+		return e;
+	}
+
+	/**
+	 * Return the real entry at index i, ready to have its count changed. An entry
+	 * created before the last snapshot may be seen by the snapshot, so it is
+	 * replaced by a copy first.
+	 */
+	private MyEntry writable(int i) {
+		MyEntry e = data[i];
+		if (e.epoch < epoch) {
+			beforeWrite();
+			e = newEntry(e.string, e.count);
+			data[i] = e;
+		}
+		return e;
+	}
+
 	/**
 	 * Remove one copy of a word from the multiset. If there are multiple copies,
 	 * then we just adjust the count, and the map is unaffected (iterators don't go
@@ -328,18 +744,407 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 		if (str == null)
 			return false;
 		int i = hash(str, false);
-		if (data[i] == null)
+		if (data[i] == null || !data[i].string.equals(str))
 			return false;
 		else
 			return true;
 	}
 
+	@Override // efficiency
+	public void clear() {
+		assert wellFormed() : "invariant false at start of clear";
+		if (numUsed == 0)
+			return;
+		data = new MyEntry[capacityFor(probing, 0)];
+		dataShared = false;
+		lastSnapshot = null;
+		numUsed = 0;
+		numEntries = 0;
+		++version;
+		assert wellFormed() : "invariant false at end of clear";
+	}
+
+	/**
+	 * Make sure that the given number of new entries can be added without the
+	 * table becoming more than half full, rehashing at most once.
+	 */
+	private void reserve(int more) {
+		if ((numUsed + (long) more) * 2 > data.length)
+			rehash(numEntries + more);
+	}
+
+	/**
+	 * Add to the count of a key, adding an entry if necessary. The caller must
+	 * have reserved room for a new entry.
+	 */
+	private void addCount(String key, int count) {
+		beforeWrite();
+		int index = hash(key, true);
+		MyEntry e = data[index];
+		if (e != null && e != PLACE_HOLDER && e.string.equals(key)) {
+			e = writable(index);
+			e.count = Math.addExact(e.count, count);
+			return;
+		}
+		++numEntries;
+		++version;
+		if (probing == Probing.ROBIN_HOOD) {
+			++numUsed;
+			robinHoodInsert(newEntry(key, count));
+		} else {
+			if (e == null)
+				++numUsed;
+			data[index] = newEntry(key, count);
+			sliceCounted(index, e == null ? 1 : 0, 1);
+		}
+	}
+
+	/**
+	 * Add every copy of every word in another multiset to this one, so that each
+	 * count becomes the sum of the two counts. The table is grown at most once.
+	 * 
+	 * @param other multiset to add, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException if other is null
+	 * @throws ArithmeticException  if a count overflows
+	 */
+	public boolean addAll(WordMultiset other) {
+		assert wellFormed() : "invariant false at start of addAll";
+		if (other.numEntries == 0)
+			return false;
+		if (other == this) {
+			for (int i = 0; i < data.length; ++i) {
+				if (data[i] != null && data[i] != PLACE_HOLDER) {
+					MyEntry e = writable(i);
+					e.count = Math.addExact(e.count, e.count);
+				}
+			}
+			return true;
+		}
+		reserve(other.numEntries);
+		for (MyEntry e : other.data) {
+			if (e != null && e != PLACE_HOLDER)
+				addCount(e.string, e.count);
+		}
+		assert wellFormed() : "invariant false at end of addAll";
+		return true;
+	}
+
+	/**
+	 * Remove every copy of every word in another multiset from this one. Each
+	 * count becomes the difference of the two counts, and words whose count
+	 * would not be positive are removed.
+	 * 
+	 * @param other multiset to subtract, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException if other is null
+	 */
+	public boolean subtractAll(WordMultiset other) {
+		assert wellFormed() : "invariant false at start of subtractAll";
+		if (other == this) {
+			boolean result = numEntries > 0;
+			clear();
+			return result;
+		}
+		boolean result = false;
+		for (MyEntry e : other.data) {
+			if (e == null || e == PLACE_HOLDER)
+				continue;
+			int i = hash(e.string, false);
+			MyEntry mine = data[i];
+			if (mine == null || !mine.string.equals(e.string))
+				continue;
+			result = true;
+			if (mine.count > e.count)
+				writable(i).count -= e.count;
+			else
+				removeAt(i);
+		}
+		assert wellFormed() : "invariant false at end of subtractAll";
+		return result;
+	}
+
+	/**
+	 * Keep only the words that are also in another multiset, each with the
+	 * smaller of the two counts.
+	 * 
+	 * @param other multiset to intersect with, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException if other is null
+	 */
+	public boolean intersectMin(WordMultiset other) {
+		assert wellFormed() : "invariant false at start of intersectMin";
+		if (other == this)
+			return false;
+		boolean result = false;
+		for (int i = 0; i < data.length; ++i) {
+			MyEntry mine = data[i];
+			if (mine == null || mine == PLACE_HOLDER)
+				continue;
+			int j = other.hash(mine.string, false);
+			MyEntry e = other.data[j];
+			if (e == null || !e.string.equals(mine.string)) {
+				removeAt(i);
+				result = true;
+				// Robin Hood removal may have shifted the next entry into this slot
+				if (data[i] != null)
+					--i;
+			} else if (e.count < mine.count) {
+				writable(i).count = e.count;
+				result = true;
+			}
+		}
+		assert wellFormed() : "invariant false at end of intersectMin";
+		return result;
+	}
+
+	/**
+	 * Add the words of another multiset to this one, so that each count becomes
+	 * the larger of the two counts. The table is grown at most once.
+	 * 
+	 * @param other multiset to combine with, must not be null (may be this)
+	 * @return true if this multiset changed
+	 * @throws NullPointerException if other is null
+	 */
+	public boolean unionMax(WordMultiset other) {
+		assert wellFormed() : "invariant false at start of unionMax";
+		if (other == this)
+			return false;
+		boolean result = false;
+		reserve(other.numEntries);
+		for (MyEntry e : other.data) {
+			if (e == null || e == PLACE_HOLDER)
+				continue;
+			int i = hash(e.string, false);
+			MyEntry mine = data[i];
+			if (mine != null && mine != PLACE_HOLDER && mine.string.equals(e.string)) {
+				if (mine.count < e.count) {
+					writable(i).count = e.count;
+					result = true;
+				}
+			} else {
+				addCount(e.string, e.count);
+				result = true;
+			}
+		}
+		assert wellFormed() : "invariant false at end of unionMax";
+		return result;
+	}
+
 	private String objToStr(Object o) {
 		if (o == null || !(o instanceof String))
 			return null;
 		return (String) o;
 	}
 
+	/**
+	 * Write a binary snapshot of this multiset. The snapshot starts with a header
+	 * of four big-endian ints: a magic number ("WMS2"), the ordinal of the
+	 * probing strategy, the table capacity and the number of entries. Then each
+	 * entry follows in table order as the varint length of its UTF-8 key, the key
+	 * bytes and the varint count. The stream is flushed but not closed.
+	 * 
+	 * @param out stream to write to, must not be null
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		assert wellFormed() : "invariant false at start of writeTo";
+		BufferedOutputStream buf = new BufferedOutputStream(out);
+		writeInt(buf, SNAPSHOT_MAGIC);
+		writeInt(buf, probing.ordinal());
+		writeInt(buf, data.length);
+		writeInt(buf, numEntries);
+		for (MyEntry e : data) {
+			if (e == null || e == PLACE_HOLDER)
+				continue;
+			byte[] key = e.string.getBytes(StandardCharsets.UTF_8);
+			writeVarint(buf, key.length);
+			buf.write(key);
+			writeVarint(buf, e.count);
+		}
+		buf.flush();
+	}
+
+	/**
+	 * Read a multiset from a snapshot written by {@link #writeTo(OutputStream)},
+	 * starting at the channel's current position. The rest of the file is mapped
+	 * into memory and the table is allocated once at the recorded capacity, so no
+	 * rehashing happens while reloading. The channel position is left after the
+	 * snapshot.
+	 * 
+	 * @param channel file to read from, must not be null
+	 * @return new multiset with the contents of the snapshot
+	 * @throws IOException if the file cannot be read or is not a valid snapshot
+	 */
+	public static WordMultiset readFrom(FileChannel channel) throws IOException {
+		long start = channel.position();
+		ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, channel.size() - start);
+		WordMultiset result = readFrom(in);
+		channel.position(start + in.position());
+		return result;
+	}
+
+	/**
+	 * Read a multiset from a snapshot written by {@link #writeTo(OutputStream)},
+	 * starting at the buffer's position. The result uses the recorded probing
+	 * strategy, and its table is allocated once at the recorded capacity, so no
+	 * rehashing happens while reloading. A capacity that is not valid for the
+	 * entries, or is much larger than they need, is replaced by the one rehash
+	 * would choose. The position is left after the snapshot.
+	 * 
+	 * @param in buffer to read from, must not be null
+	 * @return new multiset with the contents of the snapshot
+	 * @throws IOException if the buffer does not hold a valid snapshot
+	 */
+	public static WordMultiset readFrom(ByteBuffer in) throws IOException {
+		try {
+			if (in.getInt() != SNAPSHOT_MAGIC)
+				throw new IOException("not a WordMultiset snapshot");
+			int kind = in.getInt();
+			if (kind < 0 || kind >= Probing.values().length)
+				throw new IOException("bad snapshot: unknown probing " + kind);
+			Probing probing = Probing.values()[kind];
+			int capacity = in.getInt();
+			int entries = in.getInt();
+			if (entries < 0)
+				throw new IOException("bad snapshot: negative entry count " + entries);
+			// every entry takes at least two bytes, and the table must have room
+			if (entries > in.remaining() / MIN_SNAPSHOT_ENTRY)
+				throw new EOFException("truncated WordMultiset snapshot: " + entries + " entries in "
+						+ in.remaining() + " bytes");
+			if (entries > MAX_CAPACITY / 2)
+				throw new IOException("bad snapshot: too many entries " + entries);
+			if (!isCapacityFor(probing, capacity, entries))
+				capacity = capacityFor(probing, entries);
+			WordMultiset result = new WordMultiset(probing, capacity);
+			byte[] buf = new byte[64];
+			for (int i = 0; i < entries; ++i) {
+				int len = readVarint(in);
+				if (len < 0 || len > in.remaining())
+					throw new EOFException("truncated WordMultiset snapshot");
+				String key;
+				if (in.hasArray()) {
+					key = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+					in.position(in.position() + len);
+				} else {
+					if (len > buf.length)
+						buf = new byte[Math.max(len, buf.length * 2)];
+					in.get(buf, 0, len);
+					key = new String(buf, 0, len, StandardCharsets.UTF_8);
+				}
+				int count = readVarint(in);
+				if (count < 1)
+					throw new IOException("bad snapshot: count " + count + " for " + key);
+				int index = result.locate(key, false);
+				if (result.data[index] != null && result.data[index].string.equals(key))
+					throw new IOException("bad snapshot: duplicate key " + key);
+				if (probing == Probing.ROBIN_HOOD)
+					result.robinHoodInsert(new MyEntry(key, count));
+				else
+					result.data[index] = new MyEntry(key, count);
+			}
+			result.numEntries = entries;
+			result.numUsed = entries;
+			assert result.wellFormed() : "invariant false at end of readFrom";
+			return result;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new EOFException("truncated WordMultiset snapshot");
+		}
+	}
+
+	/**
+	 * Return whether a table of the given size is valid for the probing strategy
+	 * and can hold the entries without being more than half full. The size must
+	 * also be no more than MAX_CAPACITY, and at most MAX_SNAPSHOT_SLACK times the
+	 * size that rehash would choose, so that a bad header can't make us allocate
+	 * a table far larger than its entries need.
+	 */
+	private static boolean isCapacityFor(Probing probing, int capacity, int entries) {
+		if (entries * 2L > capacity || capacity > MAX_CAPACITY)
+			return false;
+		if (capacity > (long) MAX_SNAPSHOT_SLACK * capacityFor(probing, entries))
+			return false;
+		if (probing == Probing.ROBIN_HOOD)
+			return capacity >= INITIAL_POWER_CAPACITY && (capacity & (capacity - 1)) == 0;
+		return capacity >= INITIAL_CAPACITY && Primes.isPrime(capacity) && Primes.isPrime(capacity - 2);
+	}
+
+	private static void writeInt(OutputStream out, int v) throws IOException {
+		out.write(v >>> 24);
+		out.write(v >>> 16);
+		out.write(v >>> 8);
+		out.write(v);
+	}
+
+	private static void writeVarint(OutputStream out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.write((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+
+	private static int readVarint(ByteBuffer in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.get();
+			result |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return result;
+		}
+		throw new IOException("bad snapshot: varint too long");
+	}
+
+	/**
+	 * Return a read-only view of the current contents that does not change when
+	 * this multiset changes. The view shares the table with this multiset, and
+	 * the first change after the snapshot copies the table (and each entry as its
+	 * count changes) instead of modifying the shared one. So taking a snapshot
+	 * costs nothing until the next change, and any number of threads can read or
+	 * iterate the view while this multiset continues to be updated by the thread
+	 * that took the snapshot. Snapshots taken with no change in between are the
+	 * same object.
+	 * 
+	 * @return unmodifiable map with the current counts
+	 */
+	public Map<String, Integer> snapshot() {
+		assert wellFormed() : "invariant false at start of snapshot";
+		if (!dataShared) {
+			lastSnapshot = Collections.unmodifiableMap(new WordMultiset(this));
+			dataShared = true;
+			++epoch;
+		}
+		return lastSnapshot;
+	}
+
+	/**
+	 * An entry that is still shared with a snapshot, as returned by the entry set
+	 * iterator. It reads the count from the table, and makes the entry writable
+	 * only if the count is set, so reading the map copies nothing.
+	 */
+	private class SharedEntry extends AbstractEntry<String, Integer> {
+		private final int slot;
+
+		SharedEntry(int slot) {
+			this.slot = slot;
+		}
+
+		@Override // required
+		public String getKey() {
+			return data[slot].string;
+		}
+
+		@Override // required
+		public Integer getValue() {
+			return data[slot].count;
+		}
+
+		@Override // implementation
+		public Integer setValue(Integer v) {
+			return writable(slot).setValue(v);
+		}
+	}
+
 	private final EntrySet entrySet = new EntrySet();
 
 	@Override // required
@@ -385,32 +1190,45 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 
 	private class EntrySetIterator implements Iterator<Map.Entry<String, Integer>> {
 
-		private int index;
+		private int index; // position in iteration order, see slot(int)
 		int remaining;
 		private boolean canRemove;
 		private int colVersion;
+		private int origin; // slot of position 0
+
+		/**
+		 * Return the table slot at the given position of the iteration. A Robin Hood
+		 * table is visited starting just after an empty slot. Removing an entry only
+		 * shifts back entries from later in the run it belongs to, and a run never
+		 * crosses an empty slot, so an entry that has already been visited is never
+		 * shifted to a later position.
+		 */
+		private int slot(int p) {
+			p += origin;
+			return p >= data.length ? p - data.length : p;
+		}
 
 		private boolean wellFormed() {
 			if (!WordMultiset.this.wellFormed())
 				return false;
-			if (version != colVersion)
+			if (!checker.lastWasFull() || version != colVersion)
 				return true;
 			int r = 0;
 			if (index == data.length) {
 				if (canRemove)
 					return report("cannot remove when no element");
 			} else {
-				if (data[index] == null)
+				if (data[slot(index)] == null)
 					return report("index is on null");
-				if (data[index] == PLACE_HOLDER)
+				if (data[slot(index)] == PLACE_HOLDER)
 					return report("index is on place holder");
 				if (!canRemove)
 					++r;
 			}
 			for (int i = index + 1; i < data.length; ++i) {
-				if (data[i] == null)
+				if (data[slot(i)] == null)
 					continue;
-				if (data[i] != PLACE_HOLDER)
+				if (data[slot(i)] != PLACE_HOLDER)
 					++r;
 			}
 			if (r != remaining)
@@ -424,13 +1242,19 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 			} else {
 				do {
 					++start;
-				} while (data[start] == null || data[start] == PLACE_HOLDER);
+				} while (data[slot(start)] == null || data[slot(start)] == PLACE_HOLDER);
 				return start;
 			}
 
 		}
 
 		EntrySetIterator() {
+			origin = 0;
+			if (probing == Probing.ROBIN_HOOD) {
+				while (data[origin] != null)
+					++origin;
+				origin = (origin + 1) & (data.length - 1);
+			}
 			remaining = numEntries;
 			index = nextSpot(-1);
 			canRemove = false;
@@ -463,7 +1287,10 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 			}
 			--remaining;
 			assert wellFormed() : "invariant broken by next";
-			return data[index];
+			// the entry may be changed with setValue, so one shared with a
+			// snapshot is copied then, not now
+			MyEntry e = data[slot(index)];
+			return e.epoch < epoch ? new SharedEntry(slot(index)) : e;
 		}
 
 		@Override // implementation
@@ -472,11 +1299,9 @@ public class WordMultiset extends AbstractMap<String, Integer> {
 			checkVersion();
 			if (!canRemove)
 				throw new IllegalStateException("Can't remove");
-			data[index] = PLACE_HOLDER;
-			--numEntries;
-			++version;
+			removeAt(slot(index));
 			canRemove = false;
-			index = nextSpot(index);
+			index = nextSpot(index - 1);
 			colVersion = version;
 			assert wellFormed() : "invariant broken by remove";
 		}
@@ -0,0 +1,132 @@
+package edu.uwm.cs351.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A small timing harness for the benchmarks in this package. Each benchmark
+ * body is run several times to let the JIT compiler settle, then measured
+ * several more times, and the best measured run is reported.
+ */
+final class Bench {
+	/**
+	 * The work to measure. It returns a value computed from the work so that the
+	 * compiler cannot discard it.
+	 */
+	@FunctionalInterface
+	interface Body {
+		long run();
+	}
+
+	private static final int WARMUP_RUNS = 5;
+	private static final int MEASURED_RUNS = 5;
+
+	private static volatile long sink;
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+			return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		return null;
+	}
+
+	private Bench() {
+	}
+
+	/**
+	 * Return whether assertions are enabled for the collections being measured.
+	 * Every public method of the collections checks its invariant in an
+	 * assertion, so timings with assertions on are not comparable.
+	 *
+	 * @return true if assertions are enabled
+	 */
+	static boolean assertionsEnabled() {
+		boolean enabled = false;
+		assert enabled = true;
+		return enabled;
+	}
+
+	/**
+	 * Print a warning if assertions are enabled.
+	 */
+	static void warnIfAsserting() {
+		if (assertionsEnabled())
+			System.out.println("# warning: assertions are enabled, so each operation checks the whole invariant");
+	}
+
+	/**
+	 * Measure the body and print the time per operation.
+	 *
+	 * @param name name to print
+	 * @param ops  number of operations that one run of the body performs
+	 * @param body work to measure
+	 * @return best time for one run, in nanoseconds
+	 */
+	static long run(String name, int ops, Body body) {
+		long sum = 0;
+		for (int i = 0; i < WARMUP_RUNS; ++i)
+			sum += body.run();
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < MEASURED_RUNS; ++i) {
+			long start = System.nanoTime();
+			sum += body.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		sink = sum;
+		System.out.printf("%-48s %12.1f ns/op%n", name, (double) best / ops);
+		return best;
+	}
+
+	/**
+	 * Return the number of bytes allocated so far by the current thread, or -1
+	 * if the JVM cannot measure it.
+	 *
+	 * @return bytes allocated by this thread
+	 */
+	static long allocatedBytes() {
+		if (THREADS == null || !THREADS.isThreadAllocatedMemorySupported())
+			return -1;
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Return the total number of collections, and the total time spent in them
+	 * in milliseconds, over all garbage collectors.
+	 */
+	private static long[] gcTotals() {
+		long[] totals = new long[2];
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			totals[0] += Math.max(0, gc.getCollectionCount());
+			totals[1] += Math.max(0, gc.getCollectionTime());
+		}
+		return totals;
+	}
+
+	/**
+	 * Measure the body as {@link #run} does, and also print the bytes allocated
+	 * per operation in an extra run after the measured ones (so this is the
+	 * steady-state allocation rate), with the collections during that run.
+	 *
+	 * @param name name to print
+	 * @param ops  number of operations that one run of the body performs
+	 * @param body work to measure
+	 * @return bytes allocated per operation, or -1 if it cannot be measured
+	 */
+	static double runAllocating(String name, int ops, Body body) {
+		run(name, ops, body);
+		long[] gcBefore = gcTotals();
+		long before = allocatedBytes();
+		sink = body.run();
+		long after = allocatedBytes();
+		long[] gcAfter = gcTotals();
+		String gcs = String.format("%d GCs, %d ms", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+		if (before < 0) {
+			System.out.printf("%-48s %12s   %s%n", "", "(allocation not measurable)", gcs);
+			return -1;
+		}
+		double perOp = (double) (after - before) / ops;
+		System.out.printf("%-48s %12.2f B/op   %s%n", "", perOp, gcs);
+		return perOp;
+	}
+}
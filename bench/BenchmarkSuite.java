@@ -0,0 +1,60 @@
+package edu.uwm.cs351.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Run the benchmarks for {@link edu.uwm.cs351.Lexicon},
+ * {@link edu.uwm.cs351.WordMultiset} and {@link edu.uwm.cs351.LinkedSequence},
+ * each in a fresh JVM, once with assertions disabled and once with them
+ * enabled. With assertions enabled every operation checks the whole invariant
+ * of the collection, which takes linear time, so those runs use fewer
+ * elements; their times show the cost of checking, and are not comparable
+ * with the others.
+ * <p>
+ * Compile the collections and this package onto one class path and run
+ *
+ * <pre>
+ * java -cp &lt;classes&gt; edu.uwm.cs351.bench.BenchmarkSuite [size] [checked-size]
+ * </pre>
+ *
+ * The sizes are passed to every benchmark (defaults 100000 and 1000). Any JVM
+ * options given to this process, such as a heap size, are not passed on.
+ */
+public class BenchmarkSuite {
+	private static final Class<?>[] BENCHMARKS = { LexiconBenchmark.class, LcpBenchmark.class,
+			CollationBenchmark.class, FrozenLexiconBenchmark.class, WordMultisetBenchmark.class,
+			InternedWordMultisetBenchmark.class, SequenceBenchmark.class };
+
+	private static int run(Class<?> benchmark, boolean assertions, int size) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add(assertions ? "-ea" : "-da");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(benchmark.getName());
+		command.add(Integer.toString(size));
+		System.out.printf("%n== %s, assertions %s, size %d ==%n", benchmark.getSimpleName(),
+				assertions ? "enabled" : "disabled", size);
+		System.out.flush();
+		return new ProcessBuilder(command).inheritIO().start().waitFor();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int checkedSize = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+		int failures = 0;
+		for (Class<?> benchmark : BENCHMARKS) {
+			if (run(benchmark, false, size) != 0)
+				++failures;
+			if (run(benchmark, true, checkedSize) != 0)
+				++failures;
+		}
+		if (failures > 0) {
+			System.err.println(failures + " benchmark runs failed");
+			System.exit(1);
+		}
+	}
+}
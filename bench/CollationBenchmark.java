@@ -0,0 +1,82 @@
+package edu.uwm.cs351.bench;
+
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.Locale;
+
+import edu.uwm.cs351.Lexicon;
+
+/**
+ * Compare the ways a {@link Lexicon} can be ordered other than by
+ * {@link String#compareTo}: with a comparator called in every comparison, and
+ * with sort keys computed once for each string. Both are measured for a
+ * French collator and for ignoring case, with the natural order for
+ * reference. The words are capitalized at random, so that ignoring case
+ * matters. The operations measured are add, contains and getNext.
+ * <p>
+ * The optional argument is the number of words (default 20000).
+ */
+public class CollationBenchmark {
+	private interface Factory {
+		Lexicon create();
+	}
+
+	private static Lexicon build(Factory factory, String[] words) {
+		Lexicon lex = factory.create();
+		for (String w : words)
+			lex.add(w);
+		return lex;
+	}
+
+	private static void measure(String name, Factory factory, String[] words, String[] absent) {
+		int n = words.length;
+		Bench.runAllocating("Lexicon add, " + name, n, () -> build(factory, words).size());
+		Lexicon lex = build(factory, words);
+		Bench.runAllocating("Lexicon contains present, " + name, n, () -> {
+			long found = 0;
+			for (String w : words)
+				if (lex.contains(w))
+					++found;
+			return found;
+		});
+		Bench.runAllocating("Lexicon contains absent, " + name, n, () -> {
+			long found = 0;
+			for (String w : absent)
+				if (lex.contains(w))
+					++found;
+			return found;
+		});
+		Bench.runAllocating("Lexicon getNext, " + name, n, () -> {
+			long sum = 0;
+			for (String w : words) {
+				String next = lex.getNext(w);
+				if (next != null)
+					sum += next.length();
+			}
+			return sum;
+		});
+	}
+
+	private static String[] capitalize(String[] words) {
+		String[] result = new String[words.length];
+		for (int i = 0; i < words.length; ++i)
+			result[i] = i % 3 == 0 ? words[i].toUpperCase() : i % 3 == 1 && !words[i].isEmpty()
+					? Character.toUpperCase(words[i].charAt(0)) + words[i].substring(1) : words[i];
+		return result;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		String[] words = capitalize(WordFixtures.distinctWords(n, 351));
+		String[] absent = capitalize(WordFixtures.distinctWords(n, 352));
+		Collator collator = Collator.getInstance(Locale.FRENCH);
+		// a lambda, so that the lexicon cannot tell that a collator is behind it
+		Comparator<String> perComparison = (a, b) -> collator.compare(a, b);
+		measure("natural", Lexicon::new, words, absent);
+		measure("collator comparator", () -> new Lexicon(perComparison), words, absent);
+		measure("collation keys", () -> new Lexicon(collator), words, absent);
+		measure("case-insensitive comparator", () -> new Lexicon(String.CASE_INSENSITIVE_ORDER), words, absent);
+		measure("case-folded keys", Lexicon::caseInsensitive, words, absent);
+	}
+}
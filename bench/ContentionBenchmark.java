@@ -0,0 +1,141 @@
+package edu.uwm.cs351.bench;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import edu.uwm.cs351.ConcurrentLinkedSequence;
+
+/**
+ * Measure producer/consumer throughput of {@link ConcurrentLinkedSequence}
+ * against the JDK's {@link LinkedBlockingQueue} (the same two-lock design) and
+ * {@link ConcurrentLinkedQueue} (lock-free, but consumers must spin when it is
+ * empty). Each run moves a fixed number of items from the producers to the
+ * consumers; the time reported is per item. Run with assertions disabled.
+ */
+public class ContentionBenchmark {
+	private static final int ITEMS = 1_000_000;
+	private static final int BOUND = 1024;
+	private static final Integer POISON = Integer.MIN_VALUE;
+
+	/**
+	 * Move ITEMS items through a blocking queue with the given number of
+	 * producers and consumers. Each consumer stops when it takes a poison item.
+	 */
+	private static long blocking(BlockingQueue<Integer> q, int producers, int consumers) {
+		long[] sums = new long[consumers];
+		Thread[] threads = new Thread[producers + consumers];
+		for (int p = 0; p < producers; ++p) {
+			final int id = p;
+			threads[p] = new Thread(() -> {
+				try {
+					for (int i = id; i < ITEMS; i += producers)
+						q.put(i);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		for (int c = 0; c < consumers; ++c) {
+			final int id = c;
+			threads[producers + c] = new Thread(() -> {
+				try {
+					long sum = 0;
+					for (Integer x = q.take(); x != POISON; x = q.take())
+						sum += x;
+					sums[id] = sum;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		return runAll(threads, producers, sums, () -> {
+			try {
+				for (int c = 0; c < consumers; ++c)
+					q.put(POISON);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	/**
+	 * Move ITEMS items through a non-blocking queue, with consumers spinning
+	 * while it is empty.
+	 */
+	private static long spinning(Queue<Integer> q, int producers, int consumers) {
+		long[] sums = new long[consumers];
+		Thread[] threads = new Thread[producers + consumers];
+		for (int p = 0; p < producers; ++p) {
+			final int id = p;
+			threads[p] = new Thread(() -> {
+				for (int i = id; i < ITEMS; i += producers)
+					q.offer(i);
+			});
+		}
+		for (int c = 0; c < consumers; ++c) {
+			final int id = c;
+			threads[producers + c] = new Thread(() -> {
+				long sum = 0;
+				for (;;) {
+					Integer x = q.poll();
+					if (x == null) {
+						Thread.onSpinWait();
+						continue;
+					}
+					if (x == POISON)
+						break;
+					sum += x;
+				}
+				sums[id] = sum;
+			});
+		}
+		return runAll(threads, producers, sums, () -> {
+			for (int c = 0; c < consumers; ++c)
+				q.offer(POISON);
+		});
+	}
+
+	/**
+	 * Start the threads, wait for the producers, send one poison item per
+	 * consumer, and wait for the consumers (the rest of the threads).
+	 */
+	private static long runAll(Thread[] threads, int producers, long[] sums, Runnable poison) {
+		for (Thread t : threads)
+			t.start();
+		try {
+			for (int p = 0; p < producers; ++p)
+				threads[p].join();
+			poison.run();
+			for (int i = producers; i < threads.length; ++i)
+				threads[i].join();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+		long sum = 0;
+		for (long s : sums)
+			sum += s;
+		if (sum != (long) ITEMS * (ITEMS - 1) / 2)
+			throw new IllegalStateException("items were lost: " + sum);
+		return sum;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int[][] shapes = { { 1, 1 }, { 2, 2 }, { 4, 4 } };
+		for (int[] shape : shapes) {
+			int p = shape[0], c = shape[1];
+			String suffix = " " + p + "P/" + c + "C";
+			Bench.run("ConcurrentLinkedSequence" + suffix, ITEMS,
+					() -> blocking(new ConcurrentLinkedSequence<>(), p, c));
+			Bench.run("ConcurrentLinkedSequence bounded" + suffix, ITEMS,
+					() -> blocking(new ConcurrentLinkedSequence<>(BOUND), p, c));
+			Bench.run("LinkedBlockingQueue" + suffix, ITEMS, () -> blocking(new LinkedBlockingQueue<>(), p, c));
+			Bench.run("LinkedBlockingQueue bounded" + suffix, ITEMS,
+					() -> blocking(new LinkedBlockingQueue<>(BOUND), p, c));
+			Bench.run("ConcurrentLinkedQueue (spinning)" + suffix, ITEMS,
+					() -> spinning(new ConcurrentLinkedQueue<>(), p, c));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package edu.uwm.cs351.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.FrozenLexicon;
+import edu.uwm.cs351.Lexicon;
+
+/**
+ * Compare a {@link Lexicon} with its {@link FrozenLexicon}, on heap and mapped
+ * from a file, for ordinary words and for path-like keys. The size of the
+ * automaton is printed with the bytes that building the lexicon allocated (a
+ * little more than it keeps). The operations measured are freeze, contains,
+ * getNext and consumeAllWithPrefix.
+ * <p>
+ * The optional argument is the number of words (default 100000).
+ */
+public class FrozenLexiconBenchmark {
+	private interface Lookup {
+		boolean contains(String s);
+	}
+
+	private interface Next {
+		String getNext(String s);
+	}
+
+	private interface Prefixes {
+		void consume(Consumer<String> consumer, String prefix);
+	}
+
+	private static void measure(String name, Set<String> set, Next next, Prefixes prefixes, String[] words,
+			String[] absent) {
+		int n = words.length;
+		Lookup lookup = set::contains;
+		Bench.runAllocating("contains present, " + name, n, () -> {
+			long found = 0;
+			for (String w : words)
+				if (lookup.contains(w))
+					++found;
+			return found;
+		});
+		Bench.runAllocating("contains absent, " + name, n, () -> {
+			long found = 0;
+			for (String w : absent)
+				if (lookup.contains(w))
+					++found;
+			return found;
+		});
+		Bench.runAllocating("getNext, " + name, n, () -> {
+			long sum = 0;
+			for (String w : absent) {
+				String s = next.getNext(w);
+				if (s != null)
+					sum += s.length();
+			}
+			return sum;
+		});
+		Bench.runAllocating("consumeAllWithPrefix, " + name, n, () -> {
+			long[] count = new long[1];
+			for (String w : words)
+				prefixes.consume((s) -> ++count[0], w.substring(0, Math.min(w.length(), 3 * w.length() / 4)));
+			return count[0];
+		});
+	}
+
+	private static void compare(String data, String[] words, String[] absent) throws IOException {
+		int n = words.length;
+		Bench.runAllocating("Lexicon add, " + data, n, () -> {
+			Lexicon lex = new Lexicon();
+			for (String w : words)
+				lex.add(w);
+			return lex.size();
+		});
+		Lexicon lex = new Lexicon();
+		for (String w : words)
+			lex.add(w);
+		Bench.runAllocating("Lexicon freeze, " + data, n, () -> lex.freeze().size());
+		FrozenLexicon frozen = lex.freeze();
+		System.out.printf("FrozenLexicon of %s: %d bytes, %.1f B/word%n", data, frozen.sizeInBytes(),
+				(double) frozen.sizeInBytes() / n);
+
+		measure("Lexicon, " + data, lex, lex::getNext, lex::consumeAllWithPrefix, words, absent);
+		measure("FrozenLexicon, " + data, frozen, frozen::getNext, frozen::consumeAllWithPrefix, words, absent);
+		Path file = Files.createTempFile("frozen", ".dawg");
+		try {
+			frozen.writeTo(file);
+			FrozenLexicon mapped = FrozenLexicon.map(file);
+			measure("mapped FrozenLexicon, " + data, mapped, mapped::getNext, mapped::consumeAllWithPrefix, words,
+					absent);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		compare("words", WordFixtures.distinctWords(n, 351), WordFixtures.distinctWords(n, 352));
+		compare("paths", WordFixtures.paths(n, 351), WordFixtures.paths(n, 352));
+	}
+}
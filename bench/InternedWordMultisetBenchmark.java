@@ -0,0 +1,113 @@
+package edu.uwm.cs351.bench;
+
+import java.lang.ref.Reference;
+
+import edu.uwm.cs351.InternedWordMultiset;
+import edu.uwm.cs351.WordDictionary;
+import edu.uwm.cs351.WordMultiset;
+
+/**
+ * Compare a {@link WordMultiset} per document with an
+ * {@link InternedWordMultiset} per document over one shared
+ * {@link WordDictionary}. Every document is a Zipf text over the same
+ * vocabulary, and every token is a new string, as if each document had been
+ * parsed separately. The operations measured are counting the documents and
+ * adding them all into one total; the heap kept by all the documents is
+ * printed (measured after a collection, so it is approximate).
+ * <p>
+ * The optional argument is the number of tokens in all (default 100000), split
+ * into documents of 1000 tokens.
+ */
+public class InternedWordMultisetBenchmark {
+	private static final int DOCUMENT_LENGTH = 1000;
+
+	private static String[][] parse(int n) {
+		String[] vocabulary = WordFixtures.distinctWords(Math.max(1, n / 10), 351);
+		String[][] documents = new String[Math.max(1, n / DOCUMENT_LENGTH)][];
+		for (int d = 0; d < documents.length; ++d) {
+			documents[d] = WordFixtures.zipfText(vocabulary, DOCUMENT_LENGTH, 352 + d);
+			for (int i = 0; i < DOCUMENT_LENGTH; ++i)
+				documents[d][i] = new String(documents[d][i]);
+		}
+		return documents;
+	}
+
+	private static WordMultiset[] countPlain(String[][] documents) {
+		WordMultiset[] result = new WordMultiset[documents.length];
+		for (int d = 0; d < documents.length; ++d) {
+			result[d] = new WordMultiset();
+			for (String w : documents[d])
+				result[d].add(w);
+		}
+		return result;
+	}
+
+	private static InternedWordMultiset[] countInterned(WordDictionary dictionary, String[][] documents) {
+		InternedWordMultiset[] result = new InternedWordMultiset[documents.length];
+		for (int d = 0; d < documents.length; ++d) {
+			result[d] = new InternedWordMultiset(dictionary);
+			for (String w : documents[d])
+				result[d].add(w);
+		}
+		return result;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void printRetained(String name, long before, long after, int words) {
+		System.out.printf("%-48s %12.1f B/distinct word%n", "retained, " + name, (double) (after - before) / words);
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		String[][] documents = parse(n);
+		int tokens = documents.length * DOCUMENT_LENGTH;
+		WordDictionary shared = new WordDictionary();
+
+		Bench.runAllocating("count documents, WordMultiset", tokens, () -> countPlain(documents).length);
+		Bench.runAllocating("count documents, InternedWordMultiset", tokens,
+				() -> countInterned(shared, documents).length);
+
+		WordMultiset[] plain = countPlain(documents);
+		InternedWordMultiset[] interned = countInterned(shared, documents);
+		int distinct = 0;
+		for (WordMultiset m : plain)
+			distinct += m.size();
+		Bench.runAllocating("addAll documents, WordMultiset", distinct, () -> {
+			WordMultiset total = new WordMultiset();
+			for (WordMultiset m : plain)
+				total.addAll(m);
+			return total.size();
+		});
+		Bench.runAllocating("addAll documents, InternedWordMultiset", distinct, () -> {
+			InternedWordMultiset total = new InternedWordMultiset(shared);
+			for (InternedWordMultiset m : interned)
+				total.addAll(m);
+			return total.size();
+		});
+		retained(n, distinct, shared);
+	}
+
+	/**
+	 * Print the heap kept by the multisets of a fresh parse, without the parsed
+	 * documents (the shared dictionary already has every word).
+	 */
+	private static void retained(int n, int distinct, WordDictionary shared) {
+		long before = usedHeap();
+		WordMultiset[] plain = countPlain(parse(n));
+		long after = usedHeap();
+		printRetained("WordMultiset", before, after, distinct);
+		Reference.reachabilityFence(plain);
+		before = usedHeap();
+		InternedWordMultiset[] interned = countInterned(shared, parse(n));
+		after = usedHeap();
+		printRetained("InternedWordMultiset", before, after, distinct);
+		Reference.reachabilityFence(interned);
+	}
+}
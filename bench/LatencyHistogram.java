@@ -0,0 +1,123 @@
+package edu.uwm.cs351.bench;
+
+/**
+ * A histogram of latencies in nanoseconds, with buckets whose width grows
+ * with the value, in the manner of HdrHistogram: values below 128 have a
+ * bucket each, and each later power of two is split into 64 buckets, so any
+ * value is known to within about 1.6%. All the buckets are allocated up front,
+ * so recording never allocates. A histogram is not thread-safe; give each
+ * thread its own and {@link #add} them afterwards.
+ */
+final class LatencyHistogram {
+	private static final int SUB_BITS = 7;
+	private static final int SUB_COUNT = 1 << SUB_BITS; // 128
+	private static final int HALF = SUB_COUNT / 2; // buckets per power of two
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+	private final long[] counts = new long[BUCKETS];
+	private long total;
+	private long max;
+	private double sum;
+
+	/**
+	 * Return the bucket of a non-negative value. Values below SUB_COUNT are
+	 * their own buckets; a larger value keeps its top SUB_BITS bits, from
+	 * HALF to SUB_COUNT - 1, and the number of bits dropped chooses the group.
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return shift * HALF + (int) (value >>> shift);
+	}
+
+	/**
+	 * Return the largest value that falls into the given bucket.
+	 */
+	private static long highestIn(int bucket) {
+		if (bucket < SUB_COUNT)
+			return bucket;
+		int shift = bucket / HALF - 1;
+		long sub = bucket % HALF + HALF;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Record a latency.
+	 *
+	 * @param nanos latency; negative values (from a clock going backwards) count
+	 *              as zero
+	 */
+	void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		++counts[bucketOf(nanos)];
+		++total;
+		sum += nanos;
+		if (nanos > max)
+			max = nanos;
+	}
+
+	/**
+	 * Add all the latencies recorded in another histogram to this one.
+	 *
+	 * @param other histogram to add, must not be null
+	 */
+	void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; ++i)
+			counts[i] += other.counts[i];
+		total += other.total;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Return the number of latencies recorded.
+	 *
+	 * @return count
+	 */
+	long count() {
+		return total;
+	}
+
+	/**
+	 * Return the largest latency recorded, exactly.
+	 *
+	 * @return maximum, or 0 if none were recorded
+	 */
+	long max() {
+		return max;
+	}
+
+	/**
+	 * Return the mean of the latencies recorded, exactly.
+	 *
+	 * @return mean, or 0 if none were recorded
+	 */
+	double mean() {
+		return total == 0 ? 0 : sum / total;
+	}
+
+	/**
+	 * Return a latency that the given percentage of the recorded latencies do
+	 * not exceed: the top of the bucket holding that rank, but never more than
+	 * the maximum.
+	 *
+	 * @param percentile from 0 to 100
+	 * @return latency at that percentile, or 0 if none were recorded
+	 */
+	long valueAt(double percentile) {
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100 * total);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestIn(i), max);
+		}
+		return max;
+	}
+}
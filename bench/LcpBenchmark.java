@@ -0,0 +1,81 @@
+package edu.uwm.cs351.bench;
+
+import edu.uwm.cs351.Lexicon;
+
+/**
+ * Compare {@link Lexicon} with and without LCP search, on path-like keys (which
+ * share prefixes of 25 to 50 characters), on the same keys under one deep
+ * directory, and on ordinary words (which share little). The operations
+ * measured are those that compare strings on the way down the tree: add,
+ * contains, remove and starting an iterator in the middle.
+ * <p>
+ * The optional argument is the number of keys (default 50000).
+ */
+public class LcpBenchmark {
+	private static Lexicon build(boolean lcp, String[] keys) {
+		Lexicon lex = new Lexicon(lcp);
+		for (String k : keys)
+			lex.add(k);
+		return lex;
+	}
+
+	private static void measure(String data, String[] keys, String[] absent) {
+		int n = keys.length;
+		for (boolean lcp : new boolean[] { false, true }) {
+			String name = data + (lcp ? ", LCP" : ", plain");
+			Bench.runAllocating("Lexicon add, " + name, n, () -> build(lcp, keys).size());
+			Lexicon lex = build(lcp, keys);
+			Bench.runAllocating("Lexicon contains present, " + name, n, () -> {
+				long found = 0;
+				for (String k : keys)
+					if (lex.contains(k))
+						++found;
+				return found;
+			});
+			Bench.runAllocating("Lexicon contains absent, " + name, n, () -> {
+				long found = 0;
+				for (String k : absent)
+					if (lex.contains(k))
+						++found;
+				return found;
+			});
+			Bench.runAllocating("Lexicon iterator(start), " + name, n, () -> {
+				long sum = 0;
+				for (String k : absent)
+					if (lex.iterator(k).hasNext())
+						++sum;
+				return sum;
+			});
+			Bench.run("Lexicon remove all, " + name, n, () -> {
+				Lexicon copy = build(lcp, keys);
+				for (String k : keys)
+					copy.remove(k);
+				return copy.size();
+			});
+		}
+	}
+
+	/**
+	 * Put each key under the same deep directory, as in a build tree, so that
+	 * all of them share a prefix of about 200 characters.
+	 */
+	private static String[] deeper(String[] keys) {
+		String root = "/home/builder/workspace/release-pipeline/checkouts/main/build/intermediates/"
+				+ "generated/sources/annotation-processors/debug/compileDebugJavaWithJavac/out/"
+				+ "edu/uwm/cs351/generated/";
+		String[] result = new String[keys.length];
+		for (int i = 0; i < keys.length; ++i)
+			result[i] = root + keys[i];
+		return result;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+		String[] paths = WordFixtures.paths(n, 351);
+		String[] absentPaths = WordFixtures.paths(n, 352);
+		measure("paths", paths, absentPaths);
+		measure("deep paths", deeper(paths), deeper(absentPaths));
+		measure("words", WordFixtures.distinctWords(n, 351), WordFixtures.distinctWords(n, 352));
+	}
+}
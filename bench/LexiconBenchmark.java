@@ -0,0 +1,76 @@
+package edu.uwm.cs351.bench;
+
+import java.util.Arrays;
+
+import edu.uwm.cs351.Lexicon;
+
+/**
+ * Measure {@link Lexicon} add, contains (one at a time and as a sorted batch),
+ * getNext and consumeAllWithPrefix, for words added in random order and in
+ * sorted order. Lexicon is an unbalanced binary search tree, so sorted
+ * insertion builds a list-shaped tree; that case uses a tenth as many words to
+ * keep its quadratic cost bounded.
+ * <p>
+ * The optional argument is the number of words (default 20000).
+ */
+public class LexiconBenchmark {
+	private static Lexicon build(String[] words) {
+		Lexicon lex = new Lexicon();
+		for (String w : words)
+			lex.add(w);
+		return lex;
+	}
+
+	private static void measure(String order, String[] words, String[] absent) {
+		int n = words.length;
+		Bench.runAllocating("Lexicon add, " + order, n, () -> build(words).size());
+		Lexicon lex = build(words);
+		Bench.runAllocating("Lexicon contains present, " + order, n, () -> {
+			long found = 0;
+			for (String w : words)
+				if (lex.contains(w))
+					++found;
+			return found;
+		});
+		Bench.runAllocating("Lexicon contains absent, " + order, n, () -> {
+			long found = 0;
+			for (String w : absent)
+				if (lex.contains(w))
+					++found;
+			return found;
+		});
+		String[] batch = words.clone();
+		Arrays.sort(batch);
+		boolean[] out = new boolean[n];
+		Bench.runAllocating("Lexicon containsAll sorted batch, " + order, n, () -> lex.containsAll(batch, out));
+		Bench.runAllocating("Lexicon getNext, " + order, n, () -> {
+			long sum = 0;
+			for (String w : words) {
+				String next = lex.getNext(w);
+				if (next != null)
+					sum += next.length();
+			}
+			return sum;
+		});
+		String[] prefixes = new String[n];
+		for (int i = 0; i < n; ++i)
+			prefixes[i] = words[i].substring(0, Math.min(3, words[i].length()));
+		Bench.runAllocating("Lexicon consumeAllWithPrefix, " + order, n, () -> {
+			long[] count = new long[1];
+			for (String p : prefixes)
+				lex.consumeAllWithPrefix((s) -> ++count[0], p);
+			return count[0];
+		});
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		String[] words = WordFixtures.distinctWords(n, 351);
+		String[] absent = WordFixtures.distinctWords(n, 352);
+		measure("random order", words, absent);
+		String[] sorted = Arrays.copyOf(words, Math.max(1, n / 10));
+		Arrays.sort(sorted);
+		measure("sorted order", sorted, Arrays.copyOf(absent, sorted.length));
+	}
+}
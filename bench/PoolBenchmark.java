@@ -0,0 +1,89 @@
+package edu.uwm.cs351.bench;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+import edu.uwm.cs351.LinkedSequence;
+
+/**
+ * Measure time and allocation for a round-robin scheduler workload on
+ * {@link LinkedSequence}, with and without its node pool. The cursor cycles
+ * through a sequence of steady size; at each step the current element is
+ * removed and a new one inserted in its place. With the pool on, the steady
+ * state should allocate nothing. {@link LinkedList} (through a list iterator)
+ * and {@link ArrayDeque} are measured for comparison. The elements are boxed
+ * once in advance, so boxing is not counted. Run with assertions disabled.
+ */
+public class PoolBenchmark {
+	private static final int STEADY_SIZE = 1_000;
+	private static final int STEPS = 500_000;
+	private static final int OPS = STEPS * 2; // each step removes and inserts
+
+	private static final Integer[] VALUES = new Integer[STEADY_SIZE];
+
+	static {
+		for (int i = 0; i < STEADY_SIZE; ++i)
+			VALUES[i] = 1_000_000 + i;
+	}
+
+	private static LinkedSequence<Integer> filled(int poolCapacity) {
+		LinkedSequence<Integer> s = new LinkedSequence<>();
+		s.setPoolCapacity(poolCapacity);
+		for (Integer v : VALUES)
+			s.insert(v);
+		s.start();
+		return s;
+	}
+
+	private static long churn(LinkedSequence<Integer> s) {
+		long sum = 0;
+		for (int i = 0; i < STEPS; ++i) {
+			sum += s.getCurrent();
+			s.removeCurrent();
+			s.insert(VALUES[i % STEADY_SIZE]);
+			s.advance();
+			if (!s.isCurrent())
+				s.start();
+		}
+		return sum;
+	}
+
+	private static long churn(LinkedList<Integer> list) {
+		long sum = 0;
+		ListIterator<Integer> it = list.listIterator();
+		for (int i = 0; i < STEPS; ++i) {
+			if (!it.hasNext())
+				it = list.listIterator();
+			sum += it.next();
+			it.remove();
+			it.add(VALUES[i % STEADY_SIZE]);
+		}
+		return sum;
+	}
+
+	private static long churn(ArrayDeque<Integer> deque) {
+		long sum = 0;
+		for (int i = 0; i < STEPS; ++i) {
+			sum += deque.removeFirst();
+			deque.addLast(VALUES[i % STEADY_SIZE]);
+		}
+		return sum;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		LinkedSequence<Integer> plain = filled(0);
+		Bench.runAllocating("LinkedSequence, no pool", OPS, () -> churn(plain));
+		LinkedSequence<Integer> pooled = filled(16);
+		Bench.runAllocating("LinkedSequence, pool of 16", OPS, () -> churn(pooled));
+		LinkedList<Integer> list = new LinkedList<>();
+		for (Integer v : VALUES)
+			list.add(v);
+		Bench.runAllocating("LinkedList", OPS, () -> churn(list));
+		ArrayDeque<Integer> deque = new ArrayDeque<>();
+		for (Integer v : VALUES)
+			deque.add(v);
+		Bench.runAllocating("ArrayDeque", OPS, () -> churn(deque));
+	}
+}
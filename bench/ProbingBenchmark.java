@@ -0,0 +1,70 @@
+package edu.uwm.cs351.bench;
+
+import java.util.Random;
+
+import edu.uwm.cs351.WordMultiset;
+import edu.uwm.cs351.WordMultiset.Probing;
+
+/**
+ * Compare the probing strategies of {@link WordMultiset}: double hashing over
+ * twin-prime tables, and Robin Hood probing over power-of-two tables. Run with
+ * assertions disabled.
+ */
+public class ProbingBenchmark {
+	private static final int WORDS = 200_000;
+
+	/**
+	 * Generate distinct random lower-case words.
+	 */
+	private static String[] words(Random r, int n, String prefix) {
+		String[] result = new String[n];
+		for (int i = 0; i < n; ++i) {
+			StringBuilder sb = new StringBuilder(prefix);
+			int len = 4 + r.nextInt(8);
+			for (int j = 0; j < len; ++j)
+				sb.append((char) ('a' + r.nextInt(26)));
+			sb.append(i);
+			result[i] = sb.toString();
+		}
+		return result;
+	}
+
+	private static WordMultiset build(Probing probing, String[] keys) {
+		WordMultiset m = new WordMultiset(probing);
+		for (String k : keys)
+			m.add(k);
+		return m;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		Random r = new Random(351);
+		String[] present = words(r, WORDS, "p");
+		String[] absent = words(r, WORDS, "a");
+		for (Probing probing : Probing.values()) {
+			Bench.run(probing + " add (with rehashes)", WORDS, () -> build(probing, present).size());
+			WordMultiset m = build(probing, present);
+			Bench.run(probing + " get present", WORDS, () -> {
+				long sum = 0;
+				for (String k : present)
+					sum += m.get(k);
+				return sum;
+			});
+			Bench.run(probing + " get absent", WORDS, () -> {
+				long sum = 0;
+				for (String k : absent)
+					if (m.get(k) == null)
+						++sum;
+				return sum;
+			});
+			Bench.run(probing + " remove then re-add", WORDS, () -> {
+				long sum = 0;
+				for (String k : present) {
+					sum += m.remove(k);
+					m.put(k, 1);
+				}
+				return sum;
+			});
+		}
+	}
+}
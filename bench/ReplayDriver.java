@@ -0,0 +1,240 @@
+package edu.uwm.cs351.bench;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import edu.uwm.cs351.Lexicon;
+import edu.uwm.cs351.LinkedSequence;
+import edu.uwm.cs351.WordMultiset;
+import edu.uwm.cs351.WordMultiset.Probing;
+
+/**
+ * Replay a {@link Trace} against fresh collections, and report the throughput,
+ * the latency of single operations at several percentiles, and the bytes
+ * allocated per operation. The replay is deterministic: each instance sees
+ * exactly the operations of the trace, in order, and a checksum of the results
+ * is printed so that runs can be compared.
+ * <p>
+ * With more than one thread, the instances are partitioned among the threads
+ * (instance i goes to thread i mod threads), and each thread replays the
+ * events of its own instances in trace order. The collections are not
+ * thread-safe, so this is the only partition that keeps the replay faithful;
+ * a trace with a single instance runs on one thread however many are asked
+ * for.
+ * <p>
+ * Each operation is timed separately, which adds the cost of two clock reads
+ * to every operation, so the throughput is lower than a benchmark without
+ * timing would show. Operations that throw (as they did when recorded) count
+ * as errors and are timed like the others.
+ *
+ * <pre>
+ * java edu.uwm.cs351.bench.ReplayDriver &lt;trace&gt; [threads] [rounds]
+ * </pre>
+ *
+ * The trace is replayed the given number of times (default 5), each time
+ * against new collections; the first rounds let the JIT compiler settle.
+ */
+public class ReplayDriver {
+	/**
+	 * The result of replaying one partition of a trace.
+	 */
+	static final class Result {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final long[] checksums; // per instance, zero for those of other threads
+		long allocated = -1;
+		long errors;
+
+		Result(int instances) {
+			checksums = new long[instances];
+		}
+	}
+
+	private static long hash(Object o) {
+		return o == null ? 0 : o.hashCode();
+	}
+
+	/**
+	 * Perform one event on the given instances, returning a value that depends on
+	 * its result.
+	 */
+	@SuppressWarnings("unchecked")
+	private static long perform(Trace trace, int i, Object[] instances) {
+		Object target = instances[trace.instanceAt(i)];
+		String word = trace.wordAt(i);
+		switch (trace.opAt(i)) {
+		case NEW_LEXICON:
+			instances[trace.instanceAt(i)] = new Lexicon();
+			return 0;
+		case NEW_MULTISET:
+			instances[trace.instanceAt(i)] = new WordMultiset(Probing.valueOf(word));
+			return 0;
+		case NEW_SEQUENCE:
+			instances[trace.instanceAt(i)] = new LinkedSequence<String>();
+			return 0;
+		case LEXICON_ADD:
+			return ((Lexicon) target).add(word) ? 1 : 0;
+		case LEXICON_CONTAINS:
+			return ((Lexicon) target).contains(word) ? 1 : 0;
+		case LEXICON_REMOVE:
+			return ((Lexicon) target).remove(word) ? 1 : 0;
+		case LEXICON_NEXT:
+			return hash(((Lexicon) target).getNext(word));
+		case MULTISET_ADD:
+			return ((WordMultiset) target).add(word) ? 1 : 0;
+		case MULTISET_GET:
+			return hash(((WordMultiset) target).get(word));
+		case MULTISET_CONTAINS:
+			return ((WordMultiset) target).containsKey(word) ? 1 : 0;
+		case MULTISET_REMOVE:
+			return hash(((WordMultiset) target).remove(word));
+		case MULTISET_REMOVE_ONE:
+			return ((WordMultiset) target).removeOne(word) ? 1 : 0;
+		case MULTISET_PUT:
+			return hash(((WordMultiset) target).put(word, trace.numberAt(i)));
+		case SEQUENCE_START:
+			((LinkedSequence<String>) target).start();
+			return 0;
+		case SEQUENCE_ADVANCE:
+			((LinkedSequence<String>) target).advance();
+			return 0;
+		case SEQUENCE_IS_CURRENT:
+			return ((LinkedSequence<String>) target).isCurrent() ? 1 : 0;
+		case SEQUENCE_GET_CURRENT:
+			return hash(((LinkedSequence<String>) target).getCurrent());
+		case SEQUENCE_INSERT:
+			((LinkedSequence<String>) target).insert(word);
+			return 0;
+		case SEQUENCE_REMOVE_CURRENT:
+			((LinkedSequence<String>) target).removeCurrent();
+			return 0;
+		default:
+			throw new AssertionError("unknown operation " + trace.opAt(i));
+		}
+	}
+
+	/**
+	 * Replay the events of the given thread's instances.
+	 *
+	 * @param trace   trace to replay
+	 * @param events  indices of the events for this thread, in order
+	 * @param result  where to record
+	 */
+	static void replay(Trace trace, int[] events, Result result) {
+		Object[] instances = new Object[result.checksums.length];
+		long before = Bench.allocatedBytes();
+		for (int i : events) {
+			long value;
+			long start = System.nanoTime();
+			try {
+				value = perform(trace, i, instances);
+			} catch (RuntimeException e) {
+				value = e.getClass().getName().hashCode();
+				++result.errors;
+			}
+			result.latencies.record(System.nanoTime() - start);
+			int inst = trace.instanceAt(i);
+			result.checksums[inst] = result.checksums[inst] * 31 + value;
+		}
+		long after = Bench.allocatedBytes();
+		if (before >= 0 && after >= 0)
+			result.allocated = after - before;
+	}
+
+	/**
+	 * Split the events of the trace among the threads, by instance.
+	 *
+	 * @return for each thread, the indices of its events in order
+	 */
+	static int[][] partition(Trace trace, int threads) {
+		int[] counts = new int[threads];
+		for (int i = 0; i < trace.size(); ++i)
+			++counts[trace.instanceAt(i) % threads];
+		int[][] events = new int[threads][];
+		for (int t = 0; t < threads; ++t)
+			events[t] = new int[counts[t]];
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < trace.size(); ++i) {
+			int t = trace.instanceAt(i) % threads;
+			events[t][counts[t]++] = i;
+		}
+		return events;
+	}
+
+	/**
+	 * Replay the whole trace once on the given number of threads and print a
+	 * line of results.
+	 *
+	 * @param trace   trace to replay
+	 * @param threads number of threads, at least one
+	 * @param label   what to print first
+	 * @return checksum of all the results
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	static int round(Trace trace, int threads, String label) throws InterruptedException {
+		int[][] events = partition(trace, threads);
+		Result[] results = new Result[threads];
+		Thread[] workers = new Thread[threads];
+		CountDownLatch go = new CountDownLatch(1);
+		for (int t = 0; t < threads; ++t) {
+			Result result = results[t] = new Result(trace.instances());
+			int[] mine = events[t];
+			workers[t] = new Thread(() -> {
+				try {
+					go.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				replay(trace, mine, result);
+			}, "replay-" + t);
+			workers[t].start();
+		}
+		long start = System.nanoTime();
+		go.countDown();
+		for (Thread w : workers)
+			w.join();
+		long elapsed = System.nanoTime() - start;
+
+		LatencyHistogram all = new LatencyHistogram();
+		long allocated = 0;
+		long errors = 0;
+		long[] checksums = new long[trace.instances()];
+		for (Result r : results) {
+			all.add(r.latencies);
+			allocated = allocated < 0 || r.allocated < 0 ? -1 : allocated + r.allocated;
+			errors += r.errors;
+			for (int k = 0; k < checksums.length; ++k)
+				checksums[k] += r.checksums[k];
+		}
+		int checksum = Arrays.hashCode(checksums);
+		int ops = trace.size();
+		System.out.printf(
+				"%-10s %10.0f ops/s  p50 %6d  p90 %6d  p99 %7d  p99.9 %8d  max %9d ns  %8s B/op  %d errors  checksum %08x%n",
+				label, ops * 1e9 / elapsed, all.valueAt(50), all.valueAt(90), all.valueAt(99), all.valueAt(99.9),
+				all.max(), allocated < 0 ? "?" : String.format("%.1f", (double) allocated / ops), errors, checksum);
+		return checksum;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("usage: ReplayDriver <trace> [threads] [rounds]");
+			System.exit(2);
+		}
+		Bench.warnIfAsserting();
+		Trace trace = Trace.load(Paths.get(args[0]));
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		if (threads < 1 || rounds < 1)
+			throw new IllegalArgumentException("threads and rounds must be positive");
+		threads = Math.max(1, Math.min(threads, trace.instances()));
+		System.out.printf("# %d events on %d instances, %d threads%n", trace.size(), trace.instances(), threads);
+		int first = 0;
+		for (int r = 1; r <= rounds; ++r) {
+			int checksum = round(trace, threads, "round " + r);
+			if (r == 1)
+				first = checksum;
+			else if (checksum != first)
+				System.out.println("# warning: checksum differs from the first round");
+		}
+	}
+}
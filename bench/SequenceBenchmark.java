@@ -0,0 +1,62 @@
+package edu.uwm.cs351.bench;
+
+import edu.uwm.cs351.LinkedSequence;
+
+/**
+ * Measure {@link LinkedSequence} insert, advance, removeCurrent, insertAll and
+ * clone. The elements are boxed once in advance, so boxing is not counted.
+ * <p>
+ * The optional argument is the number of elements (default 100000).
+ */
+public class SequenceBenchmark {
+	private static LinkedSequence<Integer> appended(Integer[] values) {
+		LinkedSequence<Integer> s = new LinkedSequence<>();
+		for (Integer v : values) {
+			s.insert(v); // with no current element, insert appends
+			s.advance();
+		}
+		return s;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		Integer[] values = new Integer[n];
+		for (int i = 0; i < n; ++i)
+			values[i] = i;
+		Bench.runAllocating("LinkedSequence insert at end", n, () -> appended(values).size());
+		Bench.runAllocating("LinkedSequence insert at front", n, () -> {
+			LinkedSequence<Integer> s = new LinkedSequence<>();
+			for (Integer v : values) {
+				s.start();
+				s.insert(v);
+			}
+			return s.size();
+		});
+		LinkedSequence<Integer> full = appended(values);
+		Bench.runAllocating("LinkedSequence start and advance", n, () -> {
+			long sum = 0;
+			full.start();
+			while (full.isCurrent()) {
+				sum += full.getCurrent();
+				full.advance();
+			}
+			return sum;
+		});
+		Bench.runAllocating("LinkedSequence removeCurrent (with rebuild)", n, () -> {
+			LinkedSequence<Integer> s = appended(values);
+			s.start();
+			while (s.isCurrent())
+				s.removeCurrent();
+			return s.size();
+		});
+		Bench.runAllocating("LinkedSequence insertAll in the middle", n, () -> {
+			LinkedSequence<Integer> s = new LinkedSequence<>();
+			s.insert(0);
+			s.insert(1);
+			s.insertAll(full);
+			return s.size();
+		});
+		Bench.runAllocating("LinkedSequence clone", n, () -> full.clone().size());
+	}
+}
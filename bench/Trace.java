@@ -0,0 +1,354 @@
+package edu.uwm.cs351.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A sequence of operations on Lexicon, WordMultiset and LinkedSequence
+ * instances, which can be saved, loaded and replayed. Each event names an
+ * instance (numbered from zero in the order they were created), an operation
+ * and its argument. An instance is created by an event of its own, and all the
+ * later events for it are operations of the same collection.
+ * <p>
+ * The text form has a header line, then one line per event:
+ *
+ * <pre>
+ * # cs351 trace 1
+ * &lt;instance&gt; &lt;code&gt; [&lt;number&gt;] [&lt;word&gt;]
+ * </pre>
+ *
+ * where the number is present only for {@link Op#MULTISET_PUT}, and the word
+ * is the rest of the line, with backslash, newline and carriage return escaped
+ * as {@code \\}, {@code \n} and {@code \r}. Lines starting with {@code #} are
+ * comments.
+ * <p>
+ * Events are held in parallel arrays rather than as objects, so that walking a
+ * trace during a replay allocates nothing.
+ */
+public final class Trace {
+	private static final String HEADER = "# cs351 trace 1";
+
+	/**
+	 * What the argument of an operation is.
+	 */
+	enum Arg {
+		NONE, WORD, NUMBER_AND_WORD
+	}
+
+	/**
+	 * The operations that can be recorded. Each has a two-letter code: the first
+	 * letter is N for creating an instance, or else L, M or S for Lexicon,
+	 * WordMultiset or LinkedSequence.
+	 */
+	public enum Op {
+		NEW_LEXICON("NL", Arg.NONE),
+		/** Create a WordMultiset; the word is the name of its probing strategy. */
+		NEW_MULTISET("NM", Arg.WORD),
+		NEW_SEQUENCE("NS", Arg.NONE),
+		LEXICON_ADD("LA", Arg.WORD),
+		LEXICON_CONTAINS("LC", Arg.WORD),
+		LEXICON_REMOVE("LR", Arg.WORD),
+		LEXICON_NEXT("LN", Arg.WORD),
+		MULTISET_ADD("MA", Arg.WORD),
+		MULTISET_GET("MG", Arg.WORD),
+		MULTISET_CONTAINS("MK", Arg.WORD),
+		MULTISET_REMOVE("MR", Arg.WORD),
+		MULTISET_REMOVE_ONE("MO", Arg.WORD),
+		MULTISET_PUT("MP", Arg.NUMBER_AND_WORD),
+		SEQUENCE_START("SS", Arg.NONE),
+		SEQUENCE_ADVANCE("SA", Arg.NONE),
+		SEQUENCE_IS_CURRENT("SC", Arg.NONE),
+		SEQUENCE_GET_CURRENT("SG", Arg.NONE),
+		SEQUENCE_INSERT("SI", Arg.WORD),
+		SEQUENCE_REMOVE_CURRENT("SR", Arg.NONE);
+
+		private final String code;
+		private final Arg arg;
+
+		private Op(String code, Arg arg) {
+			this.code = code;
+			this.arg = arg;
+		}
+
+		/**
+		 * Return the two-letter code of this operation in the text form.
+		 *
+		 * @return code, never null
+		 */
+		public String getCode() {
+			return code;
+		}
+
+		Arg getArg() {
+			return arg;
+		}
+
+		/**
+		 * Return whether this operation creates an instance.
+		 *
+		 * @return true for the NEW_ operations
+		 */
+		public boolean creates() {
+			return code.charAt(0) == 'N';
+		}
+
+		/**
+		 * Return whether this operation applies to instances created by the given
+		 * one: the second letter of a creating code is the first of its
+		 * operations.
+		 */
+		boolean appliesTo(Op creator) {
+			return !creates() && creator.code.charAt(1) == code.charAt(0);
+		}
+
+		static Op forCode(String code) {
+			for (Op op : values())
+				if (op.code.equals(code))
+					return op;
+			return null;
+		}
+	}
+
+	private static final Op[] OPS = Op.values();
+
+	private int size;
+	private int instances;
+	private int[] instance = new int[16];
+	private byte[] op = new byte[16];
+	private int[] number = new int[16];
+	private String[] word = new String[16];
+	private Op[] kind = new Op[4]; // the creating operation of each instance
+
+	/**
+	 * Create an empty trace.
+	 */
+	public Trace() {
+	}
+
+	/**
+	 * Return the number of events.
+	 *
+	 * @return number of events
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Return the number of instances created in this trace.
+	 *
+	 * @return number of instances
+	 */
+	public synchronized int instances() {
+		return instances;
+	}
+
+	/**
+	 * Add an event that creates a new instance.
+	 *
+	 * @param creator one of the NEW_ operations
+	 * @param arg     probing strategy name for NEW_MULTISET, else null
+	 * @return number of the new instance
+	 * @throws IllegalArgumentException if creator does not create an instance,
+	 *                                  or the argument does not suit it
+	 */
+	public synchronized int create(Op creator, String arg) {
+		if (!creator.creates())
+			throw new IllegalArgumentException(creator + " does not create an instance");
+		if (instances == kind.length)
+			kind = Arrays.copyOf(kind, instances * 2);
+		kind[instances] = creator;
+		append(instances, creator, 0, arg);
+		return instances++;
+	}
+
+	/**
+	 * Add an event for an existing instance.
+	 *
+	 * @param inst number of the instance
+	 * @param o    operation, which must suit the instance
+	 * @param n    number argument, used only by MULTISET_PUT
+	 * @param arg  word argument, or null if the operation takes none
+	 * @throws IllegalArgumentException if the instance does not exist, the
+	 *                                  operation does not apply to it, or the
+	 *                                  argument does not suit the operation
+	 */
+	public synchronized void add(int inst, Op o, int n, String arg) {
+		if (inst < 0 || inst >= instances)
+			throw new IllegalArgumentException("no instance " + inst);
+		if (!o.appliesTo(kind[inst]))
+			throw new IllegalArgumentException(o + " does not apply to instance " + inst + ", made by " + kind[inst]);
+		append(inst, o, n, arg);
+	}
+
+	private void append(int inst, Op o, int n, String arg) {
+		if ((arg == null) != (o.getArg() == Arg.NONE))
+			throw new IllegalArgumentException(o + (arg == null ? " needs" : " takes no") + " argument");
+		if (size == op.length) {
+			int capacity = size * 2;
+			instance = Arrays.copyOf(instance, capacity);
+			op = Arrays.copyOf(op, capacity);
+			number = Arrays.copyOf(number, capacity);
+			word = Arrays.copyOf(word, capacity);
+		}
+		instance[size] = inst;
+		op[size] = (byte) o.ordinal();
+		number[size] = n;
+		word[size] = arg;
+		++size;
+	}
+
+	/// Access to events; a trace must not be changed while it is being replayed
+
+	int instanceAt(int i) {
+		return instance[i];
+	}
+
+	Op opAt(int i) {
+		return OPS[op[i]];
+	}
+
+	int numberAt(int i) {
+		return number[i];
+	}
+
+	String wordAt(int i) {
+		return word[i];
+	}
+
+	/// Text form
+
+	private static String escape(String s) {
+		if (s.indexOf('\\') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0)
+			return s;
+		return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(String s) throws IOException {
+		if (s.indexOf('\\') < 0)
+			return s;
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (++i == s.length())
+				throw new IOException("backslash at end of word: " + s);
+			switch (s.charAt(i)) {
+			case '\\':
+				sb.append('\\');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			default:
+				throw new IOException("bad escape in word: " + s);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Write this trace in its text form.
+	 *
+	 * @param out where to write, must not be null; it is not closed
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void writeTo(Writer out) throws IOException {
+		out.write(HEADER);
+		out.write('\n');
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < size; ++i) {
+			line.setLength(0);
+			Op o = opAt(i);
+			line.append(instance[i]).append(' ').append(o.getCode());
+			if (o.getArg() == Arg.NUMBER_AND_WORD)
+				line.append(' ').append(number[i]);
+			if (o.getArg() != Arg.NONE)
+				line.append(' ').append(escape(word[i]));
+			out.append(line).append('\n');
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write this trace to a file, in UTF-8.
+	 *
+	 * @param file path of the file, which is replaced
+	 * @throws IOException if writing fails
+	 */
+	public void save(Path file) throws IOException {
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writeTo(out);
+		}
+	}
+
+	/**
+	 * Read a trace in its text form.
+	 *
+	 * @param in where to read, must not be null; it is not closed
+	 * @return the trace read
+	 * @throws IOException if reading fails or the text is not a valid trace
+	 */
+	public static Trace readFrom(Reader in) throws IOException {
+		BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		String line = lines.readLine();
+		if (!HEADER.equals(line))
+			throw new IOException("not a trace: missing header");
+		Trace result = new Trace();
+		int lineNumber = 1;
+		while ((line = lines.readLine()) != null) {
+			++lineNumber;
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			try {
+				int sp = line.indexOf(' ');
+				int inst = Integer.parseInt(line.substring(0, sp));
+				Op o = Op.forCode(line.substring(sp + 1, Math.min(line.length(), sp + 3)));
+				if (o == null)
+					throw new IOException("unknown operation");
+				String rest = line.length() > sp + 3 ? line.substring(sp + 4) : null;
+				int n = 0;
+				if (o.getArg() == Arg.NUMBER_AND_WORD) {
+					int sp2 = rest.indexOf(' ');
+					n = Integer.parseInt(rest.substring(0, sp2));
+					rest = rest.substring(sp2 + 1);
+				}
+				String arg = rest == null ? null : unescape(rest);
+				if (o.creates()) {
+					if (inst != result.instances)
+						throw new IOException("instance " + inst + " created out of order");
+					result.create(o, arg);
+				} else
+					result.add(inst, o, n, arg);
+			} catch (IOException | RuntimeException e) {
+				throw new IOException("bad trace line " + lineNumber + ": " + line + " (" + e.getMessage() + ")", e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Read a trace from a file, in UTF-8.
+	 *
+	 * @param file path of the file
+	 * @return the trace read
+	 * @throws IOException if reading fails or the file is not a valid trace
+	 */
+	public static Trace load(Path file) throws IOException {
+		try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return readFrom(in);
+		}
+	}
+}
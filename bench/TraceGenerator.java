@@ -0,0 +1,287 @@
+package edu.uwm.cs351.bench;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import edu.uwm.cs351.WordMultiset.Probing;
+import edu.uwm.cs351.bench.Trace.Op;
+
+/**
+ * Generate synthetic traces for {@link ReplayDriver}: realistic workloads with
+ * Zipf-distributed words, and adversarial ones that drive the collections into
+ * their worst cases. Every generator creates the given number of independent
+ * instances and interleaves their events at random, so that a replay can be
+ * partitioned across that many threads. The same arguments and seed always
+ * give the same trace.
+ *
+ * <pre>
+ * java edu.uwm.cs351.bench.TraceGenerator &lt;kind&gt; &lt;events&gt; &lt;file&gt; [instances] [seed]
+ * </pre>
+ *
+ * where kind is one of {@code lexicon-zipf}, {@code multiset-zipf},
+ * {@code sequence-edits}, {@code lexicon-sorted} or {@code multiset-colliding}.
+ * The multiset kinds use double hashing unless a probing strategy is added,
+ * as in {@code multiset-colliding:robin_hood}.
+ */
+public final class TraceGenerator {
+	/** Fraction of Lexicon operations that look a word up rather than add it. */
+	private static final double LEXICON_READS = 0.8;
+
+	private TraceGenerator() {
+	}
+
+	/**
+	 * Choose, for each of the events, the instance it goes to, so that each
+	 * instance gets an equal share, in random order.
+	 */
+	private static int[] interleave(int events, int instances, Random r) {
+		int[] owner = new int[events];
+		for (int i = 0; i < events; ++i)
+			owner[i] = i % instances;
+		for (int i = events - 1; i > 0; --i) {
+			int j = r.nextInt(i + 1);
+			int t = owner[i];
+			owner[i] = owner[j];
+			owner[j] = t;
+		}
+		return owner;
+	}
+
+	private static int[] createAll(Trace trace, int instances, Op creator, String arg) {
+		int[] ids = new int[instances];
+		for (int k = 0; k < instances; ++k)
+			ids[k] = trace.create(creator, arg);
+		return ids;
+	}
+
+	/**
+	 * Generate Lexicon traffic: mostly lookups (contains, and some getNext) of
+	 * Zipf-distributed words, with adds of the same words and occasional
+	 * removes.
+	 *
+	 * @param events    number of events, not counting creation
+	 * @param instances number of lexicons
+	 * @param seed      seed of the generator
+	 * @return new trace
+	 */
+	public static Trace lexiconZipf(int events, int instances, long seed) {
+		Random r = new Random(seed);
+		String[] vocabulary = WordFixtures.distinctWords(Math.max(1, events / 4), seed);
+		String[] text = WordFixtures.zipfText(vocabulary, events, seed + 1);
+		Trace trace = new Trace();
+		int[] ids = createAll(trace, instances, Op.NEW_LEXICON, null);
+		int[] owner = interleave(events, instances, r);
+		for (int i = 0; i < events; ++i) {
+			double p = r.nextDouble();
+			Op op = p < LEXICON_READS * 0.9 ? Op.LEXICON_CONTAINS
+					: p < LEXICON_READS ? Op.LEXICON_NEXT : p < 0.98 ? Op.LEXICON_ADD : Op.LEXICON_REMOVE;
+			trace.add(ids[owner[i]], op, 0, text[i]);
+		}
+		return trace;
+	}
+
+	/**
+	 * Generate WordMultiset traffic: counting the words of Zipf-distributed
+	 * text, with lookups of the counts and some removals.
+	 *
+	 * @param events    number of events, not counting creation
+	 * @param instances number of multisets
+	 * @param probing   probing strategy of the multisets
+	 * @param seed      seed of the generator
+	 * @return new trace
+	 */
+	public static Trace multisetZipf(int events, int instances, Probing probing, long seed) {
+		Random r = new Random(seed);
+		String[] vocabulary = WordFixtures.distinctWords(Math.max(1, events / 4), seed);
+		String[] text = WordFixtures.zipfText(vocabulary, events, seed + 1);
+		Trace trace = new Trace();
+		int[] ids = createAll(trace, instances, Op.NEW_MULTISET, probing.name());
+		int[] owner = interleave(events, instances, r);
+		for (int i = 0; i < events; ++i) {
+			double p = r.nextDouble();
+			Op op = p < 0.6 ? Op.MULTISET_ADD
+					: p < 0.9 ? Op.MULTISET_GET : p < 0.98 ? Op.MULTISET_REMOVE_ONE : Op.MULTISET_REMOVE;
+			trace.add(ids[owner[i]], op, 0, text[i]);
+		}
+		return trace;
+	}
+
+	/**
+	 * Generate LinkedSequence editing: a cursor that moves forward through the
+	 * sequence, inserting and removing as it goes, and sometimes starts over.
+	 * The generator follows the size and cursor of each sequence, so that every
+	 * operation is legal.
+	 *
+	 * @param events    number of events, not counting creation
+	 * @param instances number of sequences
+	 * @param seed      seed of the generator
+	 * @return new trace
+	 */
+	public static Trace sequenceEdits(int events, int instances, long seed) {
+		Random r = new Random(seed);
+		String[] words = WordFixtures.distinctWords(Math.max(1, Math.min(events, 10_000)), seed);
+		Trace trace = new Trace();
+		int[] ids = createAll(trace, instances, Op.NEW_SEQUENCE, null);
+		int[] owner = interleave(events, instances, r);
+		int[] size = new int[instances];
+		int[] cursor = new int[instances]; // index of the current element, or size if none
+		for (int i = 0; i < events; ++i) {
+			int k = owner[i];
+			boolean current = cursor[k] < size[k];
+			double p = r.nextDouble();
+			Op op;
+			if (!current)
+				op = p < 0.5 || size[k] == 0 ? Op.SEQUENCE_INSERT : Op.SEQUENCE_START;
+			else
+				op = p < 0.35 ? Op.SEQUENCE_INSERT
+						: p < 0.7 ? Op.SEQUENCE_ADVANCE
+								: p < 0.8 ? Op.SEQUENCE_GET_CURRENT
+										: p < 0.95 ? Op.SEQUENCE_REMOVE_CURRENT : Op.SEQUENCE_START;
+			switch (op) {
+			case SEQUENCE_INSERT:
+				// without a current element, insert appends
+				if (!current)
+					cursor[k] = size[k];
+				++size[k];
+				trace.add(ids[k], op, 0, words[r.nextInt(words.length)]);
+				continue;
+			case SEQUENCE_START:
+				cursor[k] = 0;
+				break;
+			case SEQUENCE_ADVANCE:
+				++cursor[k];
+				break;
+			case SEQUENCE_REMOVE_CURRENT:
+				--size[k];
+				break;
+			default:
+				break;
+			}
+			trace.add(ids[k], op, 0, null);
+		}
+		return trace;
+	}
+
+	/**
+	 * Generate the worst case of an unbalanced binary search tree: words added
+	 * in sorted order, so that each lexicon becomes a list, each followed by a
+	 * lookup of the last word added, which is at the bottom.
+	 *
+	 * @param events    number of events, not counting creation
+	 * @param instances number of lexicons
+	 * @param seed      seed of the generator
+	 * @return new trace
+	 */
+	public static Trace lexiconSorted(int events, int instances, long seed) {
+		Random r = new Random(seed);
+		Trace trace = new Trace();
+		int[] ids = createAll(trace, instances, Op.NEW_LEXICON, null);
+		int[] owner = interleave(events, instances, r);
+		String[] words = WordFixtures.distinctWords(Math.max(1, (events + 1) / 2), seed);
+		Arrays.sort(words);
+		int[] next = new int[instances]; // events so far for each lexicon
+		for (int i = 0; i < events; ++i) {
+			int k = owner[i];
+			int n = next[k]++;
+			String w = words[Math.min(n / 2, words.length - 1)];
+			trace.add(ids[k], n % 2 == 0 ? Op.LEXICON_ADD : Op.LEXICON_CONTAINS, 0, w);
+		}
+		return trace;
+	}
+
+	/**
+	 * Return distinct strings that all have the same hash code, built from the
+	 * blocks "Aa" and "BB", which hash alike.
+	 *
+	 * @param n number of strings
+	 * @return array of n strings with equal hash codes
+	 */
+	static String[] collidingWords(int n) {
+		int blocks = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, n - 1)));
+		String[] result = new String[n];
+		StringBuilder sb = new StringBuilder(2 * blocks);
+		for (int i = 0; i < n; ++i) {
+			sb.setLength(0);
+			for (int b = blocks - 1; b >= 0; --b)
+				sb.append((i >>> b & 1) == 0 ? "Aa" : "BB");
+			result[i] = sb.toString();
+		}
+		return result;
+	}
+
+	/**
+	 * Generate the worst case of a hash table: words whose hash codes are all
+	 * equal, so that every word has the same probe sequence (for Robin Hood
+	 * probing as well, since it mixes the hash code, not the string). Half the
+	 * events add new words and half look up words already added.
+	 *
+	 * @param events    number of events, not counting creation
+	 * @param instances number of multisets
+	 * @param probing   probing strategy of the multisets
+	 * @param seed      seed of the generator
+	 * @return new trace
+	 */
+	public static Trace multisetColliding(int events, int instances, Probing probing, long seed) {
+		Random r = new Random(seed);
+		Trace trace = new Trace();
+		int[] ids = createAll(trace, instances, Op.NEW_MULTISET, probing.name());
+		int[] owner = interleave(events, instances, r);
+		String[] words = collidingWords(Math.max(1, (events + 1) / 2));
+		int[] added = new int[instances];
+		for (int i = 0; i < events; ++i) {
+			int k = owner[i];
+			if (added[k] == 0 || r.nextBoolean())
+				trace.add(ids[k], Op.MULTISET_ADD, 0, words[Math.min(added[k]++, words.length - 1)]);
+			else
+				trace.add(ids[k], Op.MULTISET_GET, 0, words[r.nextInt(added[k])]);
+		}
+		return trace;
+	}
+
+	/**
+	 * Generate a trace of the given kind.
+	 *
+	 * @param kind      name of the generator, as in the usage
+	 * @param events    number of events, not counting creation
+	 * @param instances number of instances
+	 * @param seed      seed of the generator
+	 * @return new trace
+	 * @throws IllegalArgumentException if the kind or probing is unknown
+	 */
+	public static Trace generate(String kind, int events, int instances, long seed) {
+		if (events < 0 || instances < 1)
+			throw new IllegalArgumentException("need events >= 0 and instances >= 1");
+		int colon = kind.indexOf(':');
+		Probing probing = colon < 0 ? Probing.DOUBLE_HASHING : Probing.valueOf(kind.substring(colon + 1).toUpperCase());
+		switch (colon < 0 ? kind : kind.substring(0, colon)) {
+		case "lexicon-zipf":
+			return lexiconZipf(events, instances, seed);
+		case "multiset-zipf":
+			return multisetZipf(events, instances, probing, seed);
+		case "sequence-edits":
+			return sequenceEdits(events, instances, seed);
+		case "lexicon-sorted":
+			return lexiconSorted(events, instances, seed);
+		case "multiset-colliding":
+			return multisetColliding(events, instances, probing, seed);
+		default:
+			throw new IllegalArgumentException("unknown kind of trace: " + kind);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || args.length > 5) {
+			System.err.println("usage: TraceGenerator <kind> <events> <file> [instances] [seed]");
+			System.err.println("kinds: lexicon-zipf multiset-zipf sequence-edits lexicon-sorted multiset-colliding");
+			System.exit(2);
+		}
+		int events = Integer.parseInt(args[1]);
+		int instances = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 351;
+		Trace trace = generate(args[0], events, instances, seed);
+		trace.save(Paths.get(args[2]));
+		System.out.printf("wrote %d events on %d instances to %s%n", trace.size(), trace.instances(), args[2]);
+	}
+}
@@ -0,0 +1,316 @@
+package edu.uwm.cs351.bench;
+
+import edu.uwm.cs351.Lexicon;
+import edu.uwm.cs351.LinkedSequence;
+import edu.uwm.cs351.WordMultiset;
+import edu.uwm.cs351.WordMultiset.Probing;
+import edu.uwm.cs351.bench.Trace.Op;
+
+/**
+ * Create collections that record the operations done on them into a
+ * {@link Trace}. The collections are subclasses of the real ones, so they can
+ * be used anywhere the real ones are, and they behave the same. A call is
+ * recorded before it is made, so calls that throw exceptions are recorded too
+ * (and throw again on replay). Only the outermost call is recorded: when, for
+ * instance, WordMultiset.add calls get and put, only the add appears in the
+ * trace.
+ * <p>
+ * The recorded operations are those listed in {@link Op}. Others are not
+ * recorded: those that only read (such as iteration, or size) do not matter to
+ * a replay, but a program that changes the collections in other ways (such as
+ * with LinkedSequence.sort or WordMultiset.addAll) will not replay the same.
+ * Arguments that cannot be written, such as null, are not recorded either. The
+ * clone of a recording sequence does not record. Collections from one recorder
+ * may be used by different threads, but each collection, as always, by one
+ * thread at a time.
+ */
+public final class TraceRecorder {
+	private final Trace trace;
+
+	/**
+	 * Create a recorder with a new, empty trace.
+	 */
+	public TraceRecorder() {
+		this(new Trace());
+	}
+
+	/**
+	 * Create a recorder that adds to the given trace.
+	 *
+	 * @param trace trace to record into, must not be null
+	 */
+	public TraceRecorder(Trace trace) {
+		if (trace == null)
+			throw new NullPointerException("trace is null");
+		this.trace = trace;
+	}
+
+	/**
+	 * Return the trace being recorded.
+	 *
+	 * @return trace, never null
+	 */
+	public Trace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * Create a new, empty lexicon that records its operations.
+	 *
+	 * @return new recording lexicon
+	 */
+	public Lexicon newLexicon() {
+		return new RecordingLexicon(trace, trace.create(Op.NEW_LEXICON, null));
+	}
+
+	/**
+	 * Create a new, empty multiset that records its operations.
+	 *
+	 * @param probing probing strategy, must not be null
+	 * @return new recording multiset
+	 */
+	public WordMultiset newWordMultiset(Probing probing) {
+		if (probing == null)
+			throw new NullPointerException("probing is null");
+		return new RecordingMultiset(probing, trace, trace.create(Op.NEW_MULTISET, probing.name()));
+	}
+
+	/**
+	 * Create a new, empty sequence of words that records its operations.
+	 *
+	 * @return new recording sequence
+	 */
+	public LinkedSequence<String> newSequence() {
+		return new RecordingSequence(trace, trace.create(Op.NEW_SEQUENCE, null));
+	}
+
+	// An argument that is not a string is not recorded: such calls return false
+	// or null without changing the collection.
+	private static String word(Object o) {
+		return o instanceof String ? (String) o : null;
+	}
+
+	private static class RecordingLexicon extends Lexicon {
+		private final Trace trace;
+		private final int id;
+		private int depth; // number of recorded calls in progress
+
+		RecordingLexicon(Trace trace, int id) {
+			this.trace = trace;
+			this.id = id;
+		}
+
+		private void enter(Op op, String arg) {
+			if (depth++ == 0 && arg != null)
+				trace.add(id, op, 0, arg);
+		}
+
+		@Override // implementation
+		public boolean add(String str) {
+			enter(Op.LEXICON_ADD, str);
+			try {
+				return super.add(str);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public boolean contains(Object o) {
+			enter(Op.LEXICON_CONTAINS, word(o));
+			try {
+				return super.contains(o);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public boolean remove(Object o) {
+			enter(Op.LEXICON_REMOVE, word(o));
+			try {
+				return super.remove(o);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public String getNext(String str) {
+			enter(Op.LEXICON_NEXT, str);
+			try {
+				return super.getNext(str);
+			} finally {
+				--depth;
+			}
+		}
+	}
+
+	private static class RecordingMultiset extends WordMultiset {
+		private final Trace trace;
+		private final int id;
+		private int depth;
+
+		RecordingMultiset(Probing probing, Trace trace, int id) {
+			super(probing);
+			this.trace = trace;
+			this.id = id;
+		}
+
+		private void enter(Op op, int n, String arg) {
+			if (depth++ == 0 && arg != null)
+				trace.add(id, op, n, arg);
+		}
+
+		@Override // implementation
+		public boolean add(String str) {
+			enter(Op.MULTISET_ADD, 0, str);
+			try {
+				return super.add(str);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public Integer get(Object o) {
+			enter(Op.MULTISET_GET, 0, word(o));
+			try {
+				return super.get(o);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public boolean containsKey(Object o) {
+			enter(Op.MULTISET_CONTAINS, 0, word(o));
+			try {
+				return super.containsKey(o);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public Integer remove(Object o) {
+			enter(Op.MULTISET_REMOVE, 0, word(o));
+			try {
+				return super.remove(o);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public boolean removeOne(String str) {
+			enter(Op.MULTISET_REMOVE_ONE, 0, str);
+			try {
+				return super.removeOne(str);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public Integer put(String key, Integer value) {
+			// a null value is an error that cannot be written; it throws anyway
+			enter(Op.MULTISET_PUT, value == null ? 0 : value, key);
+			try {
+				return super.put(key, value);
+			} finally {
+				--depth;
+			}
+		}
+	}
+
+	private static class RecordingSequence extends LinkedSequence<String> {
+		private Trace trace; // null in a clone, which does not record
+		private final int id;
+		private int depth;
+
+		RecordingSequence(Trace trace, int id) {
+			this.trace = trace;
+			this.id = id;
+		}
+
+		private void enter(Op op, String arg) {
+			// a null element cannot be written: it is not recorded
+			if (depth++ == 0 && trace != null && (arg != null || op.getArg() == Trace.Arg.NONE))
+				trace.add(id, op, 0, arg);
+		}
+
+		@Override // implementation
+		public void start() {
+			enter(Op.SEQUENCE_START, null);
+			try {
+				super.start();
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public void advance() {
+			enter(Op.SEQUENCE_ADVANCE, null);
+			try {
+				super.advance();
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public boolean isCurrent() {
+			enter(Op.SEQUENCE_IS_CURRENT, null);
+			try {
+				return super.isCurrent();
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public String getCurrent() {
+			enter(Op.SEQUENCE_GET_CURRENT, null);
+			try {
+				return super.getCurrent();
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public void insert(String element) {
+			enter(Op.SEQUENCE_INSERT, element);
+			try {
+				super.insert(element);
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public void removeCurrent() {
+			enter(Op.SEQUENCE_REMOVE_CURRENT, null);
+			try {
+				super.removeCurrent();
+			} finally {
+				--depth;
+			}
+		}
+
+		@Override // implementation
+		public LinkedSequence<String> clone() {
+			++depth; // clone uses isCurrent, which is not part of the trace
+			try {
+				RecordingSequence result = (RecordingSequence) super.clone();
+				result.trace = null;
+				result.depth = 0;
+				return result;
+			} finally {
+				--depth;
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package edu.uwm.cs351.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Word lists for the benchmarks, generated from a fixed seed rather than
+ * checked in. Words are built from English-like syllables, so they have
+ * realistic lengths, shared prefixes and suffixes, and hash codes; running
+ * text is drawn from a vocabulary with a Zipf distribution, as word
+ * frequencies in real text are. To write a list to a file:
+ *
+ * <pre>
+ * java edu.uwm.cs351.bench.WordFixtures 100000 words.txt
+ * </pre>
+ */
+public final class WordFixtures {
+	private static final String[] ONSETS = { "", "", "b", "c", "d", "f", "g", "h", "j", "k", "l", "m", "n", "p", "r",
+			"s", "t", "v", "w", "y", "bl", "br", "ch", "cl", "cr", "dr", "fl", "gr", "pl", "pr", "sh", "sl", "sp", "st",
+			"str", "th", "tr", "wh" };
+	private static final String[] VOWELS = { "a", "a", "e", "e", "e", "i", "i", "o", "o", "u", "ai", "ea", "ee", "ie",
+			"oo", "ou", "oa" };
+	private static final String[] CODAS = { "", "", "", "n", "r", "s", "t", "l", "d", "m", "nd", "ng", "nt", "st",
+			"ck", "rt", "ll", "ss", "th" };
+	private static final String[] SUFFIXES = { "", "", "", "", "s", "s", "ed", "ing", "er", "ly", "tion", "ness",
+			"able", "ment" };
+
+	/** Exponent of the Zipf distribution of word frequencies in text. */
+	private static final double ZIPF_EXPONENT = 1.07;
+
+	private WordFixtures() {
+	}
+
+	private static String pick(Random r, String[] choices) {
+		return choices[r.nextInt(choices.length)];
+	}
+
+	private static String word(Random r) {
+		StringBuilder sb = new StringBuilder();
+		int syllables = 1 + r.nextInt(2) + (r.nextInt(4) == 0 ? 1 + r.nextInt(2) : 0);
+		for (int i = 0; i < syllables; ++i)
+			sb.append(pick(r, ONSETS)).append(pick(r, VOWELS)).append(pick(r, CODAS));
+		return sb.append(pick(r, SUFFIXES)).toString();
+	}
+
+	/**
+	 * Generate distinct words, in the (random) order they were generated.
+	 *
+	 * @param n    number of words
+	 * @param seed seed of the generator; the same seed gives the same words
+	 * @return array of n distinct words
+	 */
+	public static String[] distinctWords(int n, long seed) {
+		Random r = new Random(seed);
+		Set<String> words = new LinkedHashSet<>();
+		while (words.size() < n) {
+			String w = word(r);
+			// once short words run out, make longer ones unique with a numeral
+			if (!words.add(w))
+				words.add(w + words.size());
+		}
+		return words.toArray(new String[n]);
+	}
+
+	/**
+	 * Generate running text: words drawn from the vocabulary with a Zipf
+	 * distribution, so that the first word of the vocabulary is the most common.
+	 *
+	 * @param vocabulary words to draw from
+	 * @param length     number of words of text
+	 * @param seed       seed of the generator
+	 * @return array of words of text
+	 */
+	public static String[] zipfText(String[] vocabulary, int length, long seed) {
+		double[] cumulative = new double[vocabulary.length];
+		double sum = 0;
+		for (int k = 0; k < vocabulary.length; ++k) {
+			sum += 1.0 / Math.pow(k + 1, ZIPF_EXPONENT);
+			cumulative[k] = sum;
+		}
+		Random r = new Random(seed);
+		String[] text = new String[length];
+		for (int i = 0; i < length; ++i) {
+			int k = Arrays.binarySearch(cumulative, r.nextDouble() * sum);
+			if (k < 0)
+				k = -k - 1;
+			text[i] = vocabulary[Math.min(k, vocabulary.length - 1)];
+		}
+		return text;
+	}
+
+	/**
+	 * Generate distinct path-like keys: file paths and URLs under a few deep
+	 * common directories, so that most keys share a long prefix with their
+	 * neighbours in sorted order.
+	 *
+	 * @param n    number of keys
+	 * @param seed seed of the generator
+	 * @return array of n distinct keys, in random order
+	 */
+	public static String[] paths(int n, long seed) {
+		String[] roots = { "/usr/share/doc/packages/", "/home/shared/projects/cs351/src/main/java/edu/uwm/",
+				"https://www.example.com/archive/2024/articles/", "https://docs.example.org/api/reference/v2/modules/" };
+		Random r = new Random(seed);
+		String[] dirs = distinctWords(Math.max(1, n / 50), seed);
+		String[] files = distinctWords(Math.max(1, n / 4), seed + 1);
+		Set<String> keys = new LinkedHashSet<>();
+		while (keys.size() < n) {
+			StringBuilder sb = new StringBuilder(pick(r, roots));
+			sb.append(dirs[r.nextInt(dirs.length)]).append('/');
+			if (r.nextBoolean())
+				sb.append(dirs[r.nextInt(dirs.length)]).append('/');
+			sb.append(files[r.nextInt(files.length)]);
+			sb.append(sb.charAt(0) == '/' ? ".txt" : ".html");
+			keys.add(sb.toString());
+		}
+		return keys.toArray(new String[n]);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: WordFixtures <count> <file>");
+			System.exit(2);
+		}
+		String[] words = distinctWords(Integer.parseInt(args[0]), 351);
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8))) {
+			for (String w : words)
+				out.println(w);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package edu.uwm.cs351.bench;
+
+import edu.uwm.cs351.WordMultiset;
+import edu.uwm.cs351.WordMultiset.Probing;
+import edu.uwm.cs351.util.Primes;
+
+/**
+ * Measure {@link WordMultiset} add, get and remove at several load factors,
+ * and the cost of rehashing. The table of a multiset is grown to four times
+ * its entries whenever it becomes half full, so the load factor of a multiset
+ * depends on how many entries it has; the sizes measured here are chosen from
+ * one period of that growth, and the load factor of each is printed. The
+ * growth policy is copied from WordMultiset (see {@link #growth}).
+ * <p>
+ * The optional argument is the number of words (default 100000).
+ */
+public class WordMultisetBenchmark {
+	/**
+	 * Follow the growth policy of a multiset as the given number of distinct
+	 * words are added one at a time.
+	 *
+	 * @return the final table size, and the number of words at which the table
+	 *         last grew to that size
+	 */
+	static int[] growth(Probing probing, int words) {
+		int size = capacityFor(probing, 0);
+		int grewAt = 0;
+		for (int used = 1; used <= words; ++used) {
+			if (used * 2 > size) {
+				size = capacityFor(probing, used);
+				grewAt = used;
+			}
+		}
+		return new int[] { size, grewAt };
+	}
+
+	private static int capacityFor(Probing probing, int entries) {
+		int size = probing == Probing.ROBIN_HOOD ? 8 : 7;
+		while (size < 4 * entries) {
+			if (probing == Probing.ROBIN_HOOD)
+				size *= 2;
+			else
+				size = Primes.nextTwinPrime(size);
+		}
+		return size;
+	}
+
+	private static WordMultiset build(Probing probing, String[] words, int n) {
+		WordMultiset m = new WordMultiset(probing);
+		for (int i = 0; i < n; ++i)
+			m.add(words[i]);
+		return m;
+	}
+
+	public static void main(String[] args) {
+		Bench.warnIfAsserting();
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		String[] words = WordFixtures.distinctWords(n, 351);
+		String[] absent = WordFixtures.distinctWords(n, 352);
+		String[] text = WordFixtures.zipfText(words, n, 353);
+		for (Probing probing : Probing.values()) {
+			// the sizes from just after the last rehash up to n have load factors
+			// from about 1/4 to 1/2
+			int[] growth = growth(probing, n);
+			int low = Math.max(1, growth[1]);
+			for (int k = 0; k < 3; ++k) {
+				int size = low + (n - low) * k / 2;
+				String load = String.format("load %.2f", (double) size / growth[0]);
+				WordMultiset m = build(probing, words, size);
+				Bench.runAllocating(probing + " get present, " + load, size, () -> {
+					long sum = 0;
+					for (int i = 0; i < size; ++i)
+						sum += m.get(words[i]);
+					return sum;
+				});
+				Bench.runAllocating(probing + " get absent, " + load, size, () -> {
+					long sum = 0;
+					for (int i = 0; i < size; ++i)
+						if (m.get(absent[i]) == null)
+							++sum;
+					return sum;
+				});
+				Bench.runAllocating(probing + " remove then add, " + load, size, () -> {
+					long sum = 0;
+					for (int i = 0; i < size; ++i) {
+						sum += m.remove(words[i]);
+						m.add(words[i]);
+					}
+					return sum;
+				});
+			}
+			Bench.runAllocating(probing + " add distinct (with rehashes)", n, () -> build(probing, words, n).size());
+			WordMultiset source = build(probing, words, n);
+			Bench.runAllocating(probing + " addAll into empty (one rehash)", n, () -> {
+				WordMultiset m = new WordMultiset(probing);
+				m.addAll(source);
+				return m.size();
+			});
+			Bench.runAllocating(probing + " add Zipf text", n, () -> {
+				WordMultiset m = new WordMultiset(probing);
+				for (String w : text)
+					m.add(w);
+				return m.size();
+			});
+		}
+	}
+}